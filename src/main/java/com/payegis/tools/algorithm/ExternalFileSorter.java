@@ -0,0 +1,360 @@
+package com.payegis.tools.algorithm;
+
+import com.payegis.tools.file.DelimiterSplitter;
+import com.payegis.tools.file.FileUtils;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/6
+ * time: 10:00
+ * description: 大文件外部排序：按内存预算把输入切成若干批，在线程池中并行排序并溢写为有序的临时文件（可gzip压缩），
+ * 最后多路归并输出；临时文件过多时分多轮归并。排序稳定：比较结果相同的行保持输入顺序
+ */
+public class ExternalFileSorter {
+    private static Logger logger = Logger.getLogger(ExternalFileSorter.class);
+    private static final long LINE_OVERHEAD = 64; // 每行String对象及集合引用的估算开销（字节）
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Comparator<String> comparator;
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int maxMergeFiles = 256;
+    private boolean compressSpill;
+    private File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+    private Charset charset = Charset.defaultCharset();
+
+    public ExternalFileSorter(Comparator<String> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * description: 按分隔后的若干列（从0开始）依次以字符串比较排序
+     * param: [delimiter, columns]
+     * return: java.util.Comparator<java.lang.String>
+     * time: 2018/8/6 10:10
+     */
+    public static Comparator<String> byColumns(String delimiter, int... columns) {
+        return (a, b) -> {
+            for (int column : columns) {
+                int c = DelimiterSplitter.field(a, delimiter, column).compareTo(DelimiterSplitter.field(b, delimiter, column));
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * description: 按自定义的key提取方法与key比较器排序，如按某列数值排序：byKey(line -> Long.parseLong(...), Comparator.naturalOrder())
+     * param: [keyExtractor, keyComparator]
+     * return: java.util.Comparator<java.lang.String>
+     * time: 2018/8/6 10:15
+     */
+    public static <K> Comparator<String> byKey(Function<String, K> keyExtractor, Comparator<? super K> keyComparator) {
+        return (a, b) -> keyComparator.compare(keyExtractor.apply(a), keyExtractor.apply(b));
+    }
+
+    /**
+     * description: 对inputPath排序，结果写入outputPath；输入可以是压缩文件，输出按outputPath扩展名决定是否压缩（见FileCodec）
+     * param: [inputPath, outputPath]
+     * return: void
+     * time: 2018/8/6 10:20
+     */
+    public void sort(String inputPath, String outputPath) throws IOException {
+        long batchBudget = Math.max(1024 * 1024, memoryBudget / (parallelism + 1)); // 读入中的一批加上正在排序的各批
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        RunSplitter splitter = new RunSplitter(inputPath, executor, new Semaphore(parallelism), batchBudget);
+        List<File> files = new ArrayList<>();
+        try {
+            FileUtils.readFile(inputPath, charset, splitter);
+            if (splitter.runs.isEmpty()) { // 内存中即可完成
+                splitter.batch.sort(comparator);
+                writeLines(splitter.batch, FileUtils.openOutputStream(outputPath));
+                return;
+            }
+            splitter.finish();
+            for (Future<File> run : splitter.runs) {
+                files.add(run.get());
+            }
+            logger.info("sort file " + inputPath + ": " + files.size() + " sorted runs spilled, merging");
+            while (files.size() > maxMergeFiles) { // 多轮归并
+                List<File> merged = new ArrayList<>();
+                for (int i = 0; i < files.size(); i += maxMergeFiles) {
+                    List<File> group = files.subList(i, Math.min(files.size(), i + maxMergeFiles));
+                    File out = createTempFile();
+                    merge(group, openSpill(out));
+                    group.forEach(File::delete);
+                    merged.add(out);
+                }
+                files = merged;
+            }
+            merge(files, FileUtils.openOutputStream(outputPath));
+        } catch (UncheckedIOException e) { // 读取输入失败或提交排序时被中断
+            throw e.getCause();
+        } catch (ExecutionException e) { // 排序或溢写失败
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("sort file " + inputPath + " exception!", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("sort file " + inputPath + " interrupted!");
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("sort file " + inputPath + " exception!", e);
+        } finally {
+            executor.shutdownNow();
+            awaitTermination(executor); // 等待排序任务结束，以便清理它们生成的临时文件
+            for (Future<File> run : splitter.runs) { // 出错时清理已生成的临时文件
+                if (run.isDone() && !run.isCancelled()) {
+                    try {
+                        run.get().delete();
+                    } catch (Exception ignore) {
+                    }
+                }
+            }
+            files.forEach(File::delete);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Future<File> submitRun(ExecutorService executor, Semaphore slots, List<String> lines) throws InterruptedException {
+        slots.acquire(); // 控制同时在内存中的批数
+        return executor.submit(() -> {
+            try {
+                lines.sort(comparator);
+                File run = createTempFile();
+                writeLines(lines, openSpill(run));
+                return run;
+            } finally {
+                slots.release();
+            }
+        });
+    }
+
+    private File createTempFile() throws IOException {
+        File file = File.createTempFile("sort-", compressSpill ? ".run.gz" : ".run", tmpDir);
+        file.deleteOnExit();
+        return file;
+    }
+
+    private void writeLines(List<String> lines, OutputStream out) throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(out, charset), BUFFER_SIZE)) {
+            for (String line : lines) {
+                bw.write(line);
+                bw.write('\n');
+            }
+        }
+    }
+
+    /**
+     * description: 多路归并有序文件，比较结果相同时按文件顺序输出，保证稳定
+     * param: [inputs, out]
+     * return: void
+     * time: 2018/8/6 10:40
+     */
+    private void merge(List<File> inputs, OutputStream out) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, inputs.size()), (a, b) -> {
+            int c = comparator.compare(a.line, b.line);
+            return c != 0 ? c : Integer.compare(a.index, b.index);
+        });
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(out, charset), BUFFER_SIZE)) {
+            for (int i = 0; i < inputs.size(); i++) {
+                RunReader reader = new RunReader(i, new BufferedReader(new InputStreamReader(openInput(inputs.get(i)), charset), BUFFER_SIZE));
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            while (!queue.isEmpty()) {
+                RunReader head = queue.poll();
+                bw.write(head.line);
+                bw.write('\n');
+                if (head.next()) {
+                    queue.add(head);
+                } else {
+                    head.close();
+                }
+            }
+        } finally {
+            for (RunReader reader : queue) {
+                reader.close();
+            }
+        }
+    }
+
+    private OutputStream openSpill(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        if (!compressSpill) {
+            return out;
+        }
+        return new GZIPOutputStream(out, BUFFER_SIZE) {
+            {
+                def.setLevel(Deflater.BEST_SPEED); // 溢写文件只求快
+            }
+        };
+    }
+
+    private InputStream openInput(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        return file.getName().endsWith(".gz") ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+    }
+
+    /**
+     * 读取输入时把行攒成批，一批达到批大小时提交到线程池排序并溢写
+     */
+    private class RunSplitter implements Consumer<String> {
+        private final String inputPath;
+        private final ExecutorService executor;
+        private final Semaphore slots;
+        private final long batchBudget;
+        private final List<Future<File>> runs = new ArrayList<>();
+        private List<String> batch = new ArrayList<>();
+        private long batchBytes;
+
+        RunSplitter(String inputPath, ExecutorService executor, Semaphore slots, long batchBudget) {
+            this.inputPath = inputPath;
+            this.executor = executor;
+            this.slots = slots;
+            this.batchBudget = batchBudget;
+        }
+
+        @Override
+        public void accept(String line) {
+            batch.add(line);
+            batchBytes += LINE_OVERHEAD + 2L * line.length();
+            if (batchBytes >= batchBudget) {
+                submit();
+            }
+        }
+
+        /**
+         * description: 提交最后一批，之后不再接收行
+         */
+        void finish() {
+            if (!batch.isEmpty()) {
+                submit();
+            }
+            batch = null;
+        }
+
+        private void submit() {
+            try {
+                runs.add(submitRun(executor, slots, batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("sort file " + inputPath + " interrupted!"));
+            }
+            batch = new ArrayList<>();
+            batchBytes = 0;
+        }
+    }
+
+    /**
+     * 归并中的一个有序文件
+     */
+    private static class RunReader {
+        private final int index;
+        private final BufferedReader br;
+        private String line;
+
+        RunReader(int index, BufferedReader br) {
+            this.index = index;
+            this.br = br;
+        }
+
+        boolean next() throws IOException {
+            line = br.readLine();
+            return line != null;
+        }
+
+        void close() {
+            try {
+                br.close();
+            } catch (IOException e) {
+                logger.error("close sorted run exception!", e);
+            }
+        }
+    }
+
+    /**
+     * description: 内存预算（字节），默认最大堆内存的1/4
+     */
+    public ExternalFileSorter setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    /**
+     * description: 并行排序的线程数，默认CPU核数
+     */
+    public ExternalFileSorter setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    /**
+     * description: 单轮最多同时归并的文件数，默认256
+     */
+    public ExternalFileSorter setMaxMergeFiles(int maxMergeFiles) {
+        this.maxMergeFiles = Math.max(2, maxMergeFiles);
+        return this;
+    }
+
+    /**
+     * description: 溢写文件是否gzip压缩，默认不压缩
+     */
+    public ExternalFileSorter setCompressSpill(boolean compressSpill) {
+        this.compressSpill = compressSpill;
+        return this;
+    }
+
+    public ExternalFileSorter setTmpDir(File tmpDir) {
+        this.tmpDir = tmpDir;
+        return this;
+    }
+
+    public ExternalFileSorter setCharset(Charset charset) {
+        this.charset = charset;
+        return this;
+    }
+
+}
@@ -0,0 +1,331 @@
+package com.payegis.tools.datetime;
+
+import com.payegis.tools.util.ColumnEtlFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/27
+ * time: 9:30
+ * description: 按列自适应的日期清洗，结果同DateTimeUtils.dateStr2DateStr。一列日期通常只有一两种格式：
+ * 先用前sampleSize个合法的值（空值、非日期值不计，最多尝试sampleSize * MAX_ATTEMPTS_FACTOR个值）完整识别格式并统计其形状（去掉首尾空白后的长度、数字位与分隔符的位置），之后锁定出现最多的形状（最多LOCKED_SHAPES个），
+ * 按固定位置直接取数字校验，与锁定形状不符或取值不合法时才回退到DateScanner完整识别（仍不合法时再用正则抽取）；
+ * 锁定的形状本身就是规整格式（如yyyy-MM-dd HH:mm:ss）时直接返回去掉首尾空白的原值，不再格式化。
+ * 统计各格式的出现次数、命中锁定形状与回退的次数，用于观察回退率。每列一个实例，线程安全
+ */
+public class ColumnDateParser implements ColumnEtlFunction {
+    public static final int DEFAULT_SAMPLE_SIZE = 100;
+    public static final int LOCKED_SHAPES = 2;
+    public static final int MAX_ATTEMPTS_FACTOR = 10;
+    private static final DateLayout[] LAYOUTS = DateLayout.values();
+    private static final char DIGIT = '0'; // 形状中数字位统一为'0'
+    private static final int[] FIELD_WIDTHS = {4, 2, 2, 2, 2, 2, 3}; // 年月日时分秒毫秒的最大位数
+    private static final int[] MDY_ORDER = {1, 2, 0};
+    private static final int[] YMD_ORDER = {0, 1, 2, 3, 4, 5, 6};
+
+    private final int sampleSize;
+    private final long maxAttempts;
+    private final Map<String, Sample> samples = new LinkedHashMap<>();
+    private int sampled; // 合法的样本数
+    private long attempts; // 学习阶段处理的值的个数
+    private volatile Shape[] shapes; // 学习结束前为null
+
+    private final LongAdder[] layoutCounts = new LongAdder[LAYOUTS.length];
+    private final LongAdder lockedCount = new LongAdder();
+    private final LongAdder fallbackCount = new LongAdder();
+    private final LongAdder invalidCount = new LongAdder();
+
+    public ColumnDateParser() {
+        this(DEFAULT_SAMPLE_SIZE);
+    }
+
+    public ColumnDateParser(int sampleSize) {
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("sample size must be positive: " + sampleSize);
+        }
+        this.sampleSize = sampleSize;
+        this.maxAttempts = (long) sampleSize * MAX_ATTEMPTS_FACTOR;
+        for (int i = 0; i < layoutCounts.length; i++) {
+            layoutCounts[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public String apply(String value) {
+        if (value == null) {
+            return null;
+        }
+        Shape[] locked = shapes;
+        if (locked == null) {
+            return learn(value);
+        }
+        for (Shape shape : locked) {
+            long fields = shape.parse(value);
+            if (fields != DateScanner.INVALID) {
+                lockedCount.increment();
+                if (shape.normalized) {
+                    layoutCounts[shape.layout.ordinal()].increment();
+                    return value.trim();
+                }
+                return format(fields);
+            }
+        }
+        fallbackCount.increment();
+        return result(value, DateScanner.scan(value));
+    }
+
+    private String learn(String value) {
+        long fields = DateScanner.scan(value);
+        synchronized (this) {
+            if (shapes == null) {
+                if (fields != DateScanner.INVALID) {
+                    String key = shapeOf(value);
+                    Sample sample = samples.get(key);
+                    if (sample == null) {
+                        samples.put(key, new Sample(value, fields));
+                    } else {
+                        sample.count++;
+                    }
+                    sampled++;
+                }
+                if (sampled >= sampleSize || ++attempts >= maxAttempts) { // 大多为空值或非日期值的列也要结束学习
+                    lock();
+                }
+            }
+        }
+        return result(value, fields);
+    }
+
+    /**
+     * description: 学习结束，按出现次数锁定形状；占样本不足十分之一的形状不锁定，只有6位纯数字等结果随取值变化的形状也不锁定
+     */
+    private void lock() {
+        List<Sample> ordered = new ArrayList<>(samples.values());
+        ordered.sort((a, b) -> b.count - a.count);
+        List<Shape> locked = new ArrayList<>();
+        for (Sample sample : ordered) {
+            if (locked.size() == LOCKED_SHAPES || sample.count * 10 < sampled) {
+                break;
+            }
+            Shape shape = Shape.of(sample.value, sample.fields);
+            if (shape != null && shape.parse(sample.value) == sample.fields) {
+                locked.add(shape);
+            }
+        }
+        samples.clear();
+        shapes = locked.toArray(new Shape[0]);
+    }
+
+    private String result(String value, long fields) {
+        fields = DateTimeUtils.scanOrExtract(value, fields);
+        if (fields == DateScanner.INVALID) {
+            invalidCount.increment();
+            return value;
+        }
+        return format(fields);
+    }
+
+    private String format(long fields) {
+        layoutCounts[(int) (fields >>> 56)].increment();
+        return DateScanner.format(fields);
+    }
+
+    /**
+     * description: 值的形状：去掉首尾空白，数字替换为'0'
+     */
+    private static String shapeOf(String value) {
+        int start = trimStart(value);
+        int end = trimEnd(value, start);
+        char[] shape = new char[end - start];
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            shape[i - start] = c >= '0' && c <= '9' ? DIGIT : c;
+        }
+        return new String(shape);
+    }
+
+    private static int trimStart(String value) {
+        int start = 0;
+        while (start < value.length() && value.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(String value, int start) {
+        int end = value.length();
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * description: 学习结束前为空
+     */
+    public List<String> getLockedShapes() {
+        List<String> locked = new ArrayList<>();
+        Shape[] current = shapes;
+        if (current != null) {
+            for (Shape shape : current) {
+                locked.add(shape.toString());
+            }
+        }
+        return locked;
+    }
+
+    /**
+     * description: 各格式出现的次数（含学习阶段与回退），不含未出现的格式
+     */
+    public Map<DateLayout, Long> getLayoutCounts() {
+        Map<DateLayout, Long> counts = new EnumMap<>(DateLayout.class);
+        for (int i = 0; i < layoutCounts.length; i++) {
+            long count = layoutCounts[i].sum();
+            if (count > 0) {
+                counts.put(LAYOUTS[i], count);
+            }
+        }
+        return counts;
+    }
+
+    public long getLockedCount() {
+        return lockedCount.sum();
+    }
+
+    public long getFallbackCount() {
+        return fallbackCount.sum();
+    }
+
+    public long getInvalidCount() {
+        return invalidCount.sum();
+    }
+
+    /**
+     * description: 锁定形状之后未命中而回退完整识别的比例，学习阶段不计
+     */
+    public double fallbackRate() {
+        long fallback = fallbackCount.sum();
+        long total = lockedCount.sum() + fallback;
+        return total == 0 ? 0 : (double) fallback / total;
+    }
+
+    @Override
+    public String toString() {
+        return "locked=" + getLockedShapes() + ", hit=" + getLockedCount() + ", fallback=" + getFallbackCount()
+                + ", fallbackRate=" + String.format("%.4f", fallbackRate()) + ", invalid=" + getInvalidCount()
+                + ", layouts=" + getLayoutCounts();
+    }
+
+    private static final class Sample {
+        private final String value;
+        private final long fields;
+        private int count = 1;
+
+        Sample(String value, long fields) {
+            this.value = value;
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * 锁定的形状：与形状逐字符比较（数字位只要求是数字），按固定位置取年月日时分秒毫秒，格式与规整格式沿用样本的
+     */
+    private static final class Shape {
+        private final DateLayout layout;
+        private final int style;
+        private final char[] chars;
+        private final boolean normalized; // 形状与规整格式相同，结果即为原值
+        private final int[] starts = new int[FIELD_WIDTHS.length]; // 各字段在形状中的位置，缺少的字段为-1
+        private final int[] ends = new int[FIELD_WIDTHS.length];
+
+        private Shape(DateLayout layout, int style, char[] chars, boolean normalized) {
+            this.layout = layout;
+            this.style = style;
+            this.chars = chars;
+            this.normalized = normalized;
+        }
+
+        /**
+         * description: 按样本建立形状，数字段按格式的字段顺序分配，连续数字（如yyyyMMdd）按各字段的位数切分
+         */
+        static Shape of(String value, long fields) {
+            DateLayout layout = DateScanner.layout(fields);
+            char[] chars = shapeOf(value).toCharArray();
+            if (layout == DateLayout.YMD && chars.length == 6) {
+                return null; // yyyyMM与yyyyMMdd共用，规整格式取决于第5位
+            }
+            Shape shape = new Shape(layout, DateScanner.style(fields), chars, shapeOf(DateScanner.format(fields)).equals(new String(chars)));
+            Arrays.fill(shape.starts, -1);
+            int[] order = layout == DateLayout.MDY2_SLASH || layout == DateLayout.MDY4_SLASH ? MDY_ORDER : YMD_ORDER;
+            int next = 0;
+            for (int i = 0; i < chars.length; ) {
+                if (chars[i] != DIGIT) {
+                    i++;
+                    continue;
+                }
+                int end = i;
+                while (end < chars.length && chars[end] == DIGIT) {
+                    end++;
+                }
+                while (i < end) {
+                    if (next == order.length) {
+                        return null;
+                    }
+                    int field = order[next++];
+                    shape.starts[field] = i;
+                    i = shape.ends[field] = Math.min(end, i + FIELD_WIDTHS[field]);
+                }
+            }
+            return shape;
+        }
+
+        /**
+         * description: 按形状解析，去掉首尾空白后与形状不符或取值不合法时返回INVALID
+         */
+        long parse(String value) {
+            int start = trimStart(value);
+            if (trimEnd(value, start) - start != chars.length) {
+                return DateScanner.INVALID;
+            }
+            for (int i = 0; i < chars.length; i++) {
+                char c = value.charAt(start + i);
+                if (chars[i] == DIGIT ? c < '0' || c > '9' : c != chars[i]) {
+                    return DateScanner.INVALID;
+                }
+            }
+            int month = field(value, start, 1, 1);
+            int day = field(value, start, 2, 1);
+            int year = field(value, start, 0, 1);
+            if (layout == DateLayout.MDY2_SLASH) {
+                year = DateScanner.twoDigitYear(year, month, day);
+            }
+            return DateScanner.pack(layout, style, year, month, day, field(value, start, 3, 0), field(value, start, 4, 0),
+                    field(value, start, 5, 0), field(value, start, 6, 0));
+        }
+
+        private int field(String value, int offset, int field, int absent) {
+            if (starts[field] < 0) {
+                return absent;
+            }
+            int number = 0;
+            for (int i = offset + starts[field]; i < offset + ends[field]; i++) {
+                number = number * 10 + (value.charAt(i) - '0');
+            }
+            return number;
+        }
+
+        @Override
+        public String toString() {
+            return layout.getPattern() + "(" + new String(chars) + ")";
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.payegis.tools.datetime;
+
+import com.payegis.tools.util.RegexUtils;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/24
+ * time: 9:30
+ * description: DateScanner支持的日期格式，与RegexUtils中的日期正则一一对应，pattern为对应的SimpleDateFormat格式
+ */
+public enum DateLayout {
+    YMD_SLASH("yyyy/MM/dd", RegexUtils.ymdSlash),
+    YM_SLASH("yyyy/MM", RegexUtils.ymSlash),
+    MDY2_SLASH("MM/dd/yy", RegexUtils.mdy2Slash),
+    MDY4_SLASH("MM/dd/yyyy", RegexUtils.mdy4Slash),
+    Y_M_D("yyyy-MM-dd", RegexUtils.y_m_d),
+    Y_M("yyyy-MM", RegexUtils.y_m),
+    Y("yyyy", RegexUtils.y),
+    YMD("yyyyMMdd", RegexUtils.ymd), // 6位时按yyyyMM
+    YM("yyyyMM", RegexUtils.ym),
+    Y_M_D_H_M_S("yyyy-MM-dd HH:mm:ss", RegexUtils.y_m_d_h_m_s),
+    Y_M_D_H_M("yyyy-MM-dd HH:mm", RegexUtils.y_m_d_h_m),
+    YMD_H_M_S("yyyyMMdd HH:mm:ss", RegexUtils.ymd_h_m_s),
+    YMDHMS("yyyyMMddHHmmss", RegexUtils.ymdhms),
+    Y_M_D_H_M_S_S("yyyy-MM-dd HH:mm:ss.SSS", RegexUtils.y_m_d_h_m_s_S),
+    YMD_CHINESE("yyyy年MM月dd日", RegexUtils.ymdchinese),
+    YMD_BLANK_HMS_CHINESE("yyyy年MM月dd日 HH时mm分ss秒", RegexUtils.ymdblankhmschinese),
+    YMD_HMS_CHINESE("yyyy年MM月dd日HH时mm分ss秒", RegexUtils.ymdhmschinese),
+    YMD_CHINESE_BLANK_HMS("yyyy年MM月dd日 HH:mm:ss", RegexUtils.ymdchineseblankhms),
+    YMD_CHINESE_HMS("yyyy年MM月dd日HH:mm:ss", RegexUtils.ymdchinesehms),
+    YMD_CHINESE_BLANK_HM("yyyy年MM月dd日 HH:mm", RegexUtils.ymdchineseblankhm),
+    YMD_CHINESE_HM("yyyy年MM月dd日HH:mm", RegexUtils.ymdchinesehm),
+    YM_CHINESE("yyyy年MM月", RegexUtils.ymchinese),
+    Y_CHINESE("yyyy年", RegexUtils.ychinese);
+
+    private final String pattern;
+    private final String regex;
+
+    DateLayout(String pattern, String regex) {
+        this.pattern = pattern;
+        this.regex = regex;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public String getRegex() {
+        return regex;
+    }
+
+}
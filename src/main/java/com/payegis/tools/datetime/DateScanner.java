@@ -0,0 +1,492 @@
+package com.payegis.tools.datetime;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/24
+ * time: 10:00
+ * description: 单遍扫描识别并解析日期字符串，支持RegexUtils中的全部日期格式（见DateLayout），取值校验同非lenient的SimpleDateFormat。
+ * 结果（格式、规整格式、年月日时分秒毫秒）压缩在一个long中返回，不合法时返回INVALID，扫描过程不分配对象；
+ * 再通过year、month等方法取字段，或转换为epoch毫秒、LocalDateTime、规整的日期字符串。无状态，线程安全
+ */
+public final class DateScanner {
+    public static final long INVALID = -1;
+
+    // 规整格式，对应原getDateFormat2的结果：年月日以横杠分隔，时分秒以冒号分隔
+    static final int STYLE_Y = 0;
+    static final int STYLE_Y_M = 1;
+    static final int STYLE_Y_M_D = 2;
+    static final int STYLE_Y_M_D_HM = 3;
+    static final int STYLE_Y_M_D_HMS = 4;
+    static final int STYLE_Y_M_D_HMS_SSS = 5;
+
+    private static final DateLayout[] LAYOUTS = DateLayout.values();
+    private static final LocalDate TWO_DIGIT_YEAR_START = LocalDate.now().minusYears(80); // 同SimpleDateFormat的yy：往前80年到往后20年
+    private static final long DAYS_0000_TO_1970 = 719528;
+
+    private DateScanner() {
+    }
+
+    /**
+     * description: 扫描日期字符串（忽略首尾空白），返回压缩的解析结果，格式或取值不合法时返回INVALID
+     * param: [s]
+     * return: long
+     * time: 2018/8/24 10:10
+     */
+    public static long scan(CharSequence s) {
+        return s == null ? INVALID : scan(s, 0, s.length());
+    }
+
+    public static long scan(CharSequence s, int start, int end) {
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int i = digitsEnd(s, start, end);
+        int n = i - start;
+        if (n == 0) {
+            return INVALID;
+        }
+        if (i == end) {
+            return scanDigits(s, start, n);
+        }
+        char c = s.charAt(i);
+        if (n == 4) {
+            int year = number(s, start, i);
+            if (c == '/') {
+                return scanYearSlash(s, year, i + 1, end);
+            } else if (c == '-') {
+                return scanYearDash(s, year, i + 1, end);
+            } else if (c == '年') {
+                return scanYearChinese(s, year, i + 1, end);
+            }
+        }
+        if (c == '/' && n <= 2) {
+            return scanMonthSlash(s, number(s, start, i), i + 1, end);
+        }
+        if (isSpace(c) && n >= 7 && n <= 8) { // yyyyMMdd HH:mm:ss，6位时dd没有数字，不合法
+            long clock = scanClock(s, i + 1, end, false);
+            if (clockParts(clock) != 3) {
+                return INVALID;
+            }
+            return pack(DateLayout.YMD_H_M_S, STYLE_Y_M_D_HMS, number(s, start, start + 4), number(s, start + 4, start + 6),
+                    number(s, start + 6, i), clock);
+        }
+        return INVALID;
+    }
+
+    /**
+     * description: 纯数字：4位年，5位年月，6到8位年月日（不合法时按yyyyMM），13到14位年月日时分秒
+     */
+    private static long scanDigits(CharSequence s, int start, int n) {
+        if (n < 4) {
+            return INVALID;
+        }
+        int year = number(s, start, start + 4);
+        switch (n) {
+            case 4:
+                return pack(DateLayout.Y, STYLE_Y, year, 1, 1, 0, 0, 0, 0);
+            case 5:
+                return pack(DateLayout.YM, STYLE_Y_M_D, year, number(s, start + 4, start + 5), 1, 0, 0, 0, 0);
+            case 6:
+            case 7:
+            case 8:
+                if (n > 6) {
+                    int month = number(s, start + 4, start + 6);
+                    int day = number(s, start + 6, start + n);
+                    if (valid(year, month, day, 0, 0, 0)) {
+                        return pack(DateLayout.YMD, STYLE_Y_M_D, year, month, day, 0, 0, 0, 0);
+                    }
+                }
+                // yyyyMMdd不合法时原来按yyyyMM解析，月份为年之后的全部数字；6位且第5位为0的规整为年-月
+                int style = n == 6 && s.charAt(start + 4) == '0' ? STYLE_Y_M : STYLE_Y_M_D;
+                return pack(DateLayout.YMD, style, year, number(s, start + 4, start + n), 1, 0, 0, 0, 0);
+            case 13:
+            case 14:
+                return pack(DateLayout.YMDHMS, STYLE_Y_M_D_HMS, year, number(s, start + 4, start + 6), number(s, start + 6, start + 8),
+                        number(s, start + 8, start + 10), number(s, start + 10, start + 12), number(s, start + 12, start + n), 0);
+            default: // 9到12位时yyyyMMddHHmmss缺少字段
+                return INVALID;
+        }
+    }
+
+    private static long scanYearSlash(CharSequence s, int year, int i, int end) {
+        int j = digitsEnd(s, i, end);
+        if (j - i < 1 || j - i > 2) {
+            return INVALID;
+        }
+        int month = number(s, i, j);
+        if (j == end) {
+            return pack(DateLayout.YM_SLASH, STYLE_Y_M, year, month, 1, 0, 0, 0, 0);
+        }
+        if (s.charAt(j) != '/') {
+            return INVALID;
+        }
+        int k = digitsEnd(s, j + 1, end);
+        if (k != end || k - j - 1 < 1 || k - j - 1 > 2) {
+            return INVALID;
+        }
+        return pack(DateLayout.YMD_SLASH, STYLE_Y_M_D, year, month, number(s, j + 1, k), 0, 0, 0, 0);
+    }
+
+    private static long scanMonthSlash(CharSequence s, int month, int i, int end) {
+        int j = digitsEnd(s, i, end);
+        if (j - i < 1 || j - i > 2 || j == end || s.charAt(j) != '/') {
+            return INVALID;
+        }
+        int day = number(s, i, j);
+        int k = digitsEnd(s, j + 1, end);
+        if (k != end) {
+            return INVALID;
+        }
+        if (k - j - 1 == 4) {
+            return pack(DateLayout.MDY4_SLASH, STYLE_Y_M_D, number(s, j + 1, k), month, day, 0, 0, 0, 0);
+        } else if (k - j - 1 == 2) {
+            return pack(DateLayout.MDY2_SLASH, STYLE_Y_M_D, twoDigitYear(number(s, j + 1, k), month, day), month, day, 0, 0, 0, 0);
+        }
+        return INVALID;
+    }
+
+    /**
+     * description: 两位年份还原为四位：取TWO_DIGIT_YEAR_START起的100年内的日期
+     */
+    static int twoDigitYear(int yy, int month, int day) {
+        int startYear = TWO_DIGIT_YEAR_START.getYear();
+        int year = startYear / 100 * 100 + yy;
+        if (year < startYear || (year == startYear && month * 32 + day < TWO_DIGIT_YEAR_START.getMonthValue() * 32 + TWO_DIGIT_YEAR_START.getDayOfMonth())) {
+            year += 100;
+        }
+        return year;
+    }
+
+    private static long scanYearDash(CharSequence s, int year, int i, int end) {
+        int j = digitsEnd(s, i, end);
+        if (j - i < 1 || j - i > 2) {
+            return INVALID;
+        }
+        int month = number(s, i, j);
+        if (j == end) {
+            return pack(DateLayout.Y_M, STYLE_Y_M, year, month, 1, 0, 0, 0, 0);
+        }
+        if (s.charAt(j) != '-') {
+            return INVALID;
+        }
+        int k = digitsEnd(s, j + 1, end);
+        if (k - j - 1 < 1 || k - j - 1 > 2) {
+            return INVALID;
+        }
+        int day = number(s, j + 1, k);
+        if (k == end) {
+            return pack(DateLayout.Y_M_D, STYLE_Y_M_D, year, month, day, 0, 0, 0, 0);
+        }
+        if (!isSpace(s.charAt(k))) {
+            return INVALID;
+        }
+        long clock = scanClock(s, k + 1, end, true);
+        switch (clockParts(clock)) {
+            case 2:
+                return pack(DateLayout.Y_M_D_H_M, STYLE_Y_M_D_HM, year, month, day, clock);
+            case 3:
+                return pack(DateLayout.Y_M_D_H_M_S, STYLE_Y_M_D_HMS, year, month, day, clock);
+            case 4:
+                return pack(DateLayout.Y_M_D_H_M_S_S, STYLE_Y_M_D_HMS_SSS, year, month, day, clock);
+            default:
+                return INVALID;
+        }
+    }
+
+    private static long scanYearChinese(CharSequence s, int year, int i, int end) {
+        if (i == end) {
+            return pack(DateLayout.Y_CHINESE, STYLE_Y, year, 1, 1, 0, 0, 0, 0);
+        }
+        int j = digitsEnd(s, i, end);
+        if (j - i < 1 || j - i > 2 || j == end || s.charAt(j) != '月') {
+            return INVALID;
+        }
+        int month = number(s, i, j);
+        if (j + 1 == end) {
+            return j - i == 2 ? pack(DateLayout.YM_CHINESE, STYLE_Y_M, year, month, 1, 0, 0, 0, 0) : INVALID;
+        }
+        int k = digitsEnd(s, j + 1, end);
+        if (k - j - 1 < 1 || k - j - 1 > 2 || k == end || s.charAt(k) != '日') {
+            return INVALID;
+        }
+        int day = number(s, j + 1, k);
+        i = k + 1;
+        if (i == end) {
+            return pack(DateLayout.YMD_CHINESE, STYLE_Y_M_D, year, month, day, 0, 0, 0, 0);
+        }
+        boolean blank = isSpace(s.charAt(i));
+        if (blank) {
+            i++;
+        }
+        j = digitsEnd(s, i, end);
+        if (j < end && s.charAt(j) == '时') { // HH时mm分ss秒
+            int hour = j - i >= 1 && j - i <= 2 ? number(s, i, j) : -1;
+            k = digitsEnd(s, j + 1, end);
+            if (hour < 0 || k - j - 1 < 1 || k - j - 1 > 2 || k == end || s.charAt(k) != '分') {
+                return INVALID;
+            }
+            int minute = number(s, j + 1, k);
+            int m = digitsEnd(s, k + 1, end);
+            if (m - k - 1 < 1 || m - k - 1 > 2 || m + 1 != end || s.charAt(m) != '秒') {
+                return INVALID;
+            }
+            return pack(blank ? DateLayout.YMD_BLANK_HMS_CHINESE : DateLayout.YMD_HMS_CHINESE, STYLE_Y_M_D_HMS,
+                    year, month, day, hour, minute, number(s, k + 1, m), 0);
+        }
+        long clock = scanClock(s, i, end, false);
+        switch (clockParts(clock)) {
+            case 2:
+                return pack(blank ? DateLayout.YMD_CHINESE_BLANK_HM : DateLayout.YMD_CHINESE_HM, STYLE_Y_M_D_HM, year, month, day, clock);
+            case 3:
+                return pack(blank ? DateLayout.YMD_CHINESE_BLANK_HMS : DateLayout.YMD_CHINESE_HMS, STYLE_Y_M_D_HMS, year, month, day, clock);
+            default:
+                return INVALID;
+        }
+    }
+
+    /**
+     * description: 扫描到结尾的H:m[:s[.S]]，返回时分秒毫秒与段数（2到4）压缩的值，不合法时返回INVALID
+     */
+    private static long scanClock(CharSequence s, int i, int end, boolean millis) {
+        int j = digitsEnd(s, i, end);
+        if (j - i < 1 || j - i > 2 || j == end || s.charAt(j) != ':') {
+            return INVALID;
+        }
+        int hour = number(s, i, j);
+        i = j + 1;
+        j = digitsEnd(s, i, end);
+        if (j - i < 1 || j - i > 2) {
+            return INVALID;
+        }
+        int minute = number(s, i, j);
+        if (j == end) {
+            return clock(2, hour, minute, 0, 0);
+        }
+        if (s.charAt(j) != ':') {
+            return INVALID;
+        }
+        i = j + 1;
+        j = digitsEnd(s, i, end);
+        if (j - i < 1 || j - i > 2) {
+            return INVALID;
+        }
+        int second = number(s, i, j);
+        if (j == end) {
+            return clock(3, hour, minute, second, 0);
+        }
+        if (!millis || s.charAt(j) != '.') {
+            return INVALID;
+        }
+        i = j + 1;
+        j = digitsEnd(s, i, end);
+        if (j != end || j - i < 1 || j - i > 3) {
+            return INVALID;
+        }
+        return clock(4, hour, minute, second, number(s, i, j)); // 同SimpleDateFormat的SSS，按数值而不是小数
+    }
+
+    private static long clock(int parts, int hour, int minute, int second, int millis) {
+        return ((((long) hour * 128 + minute) * 128 + second) * 1024 + millis) * 8 + parts;
+    }
+
+    private static int clockParts(long clock) {
+        return clock == INVALID ? 0 : (int) (clock & 7);
+    }
+
+    private static long pack(DateLayout layout, int style, int year, int month, int day, long clock) {
+        return pack(layout, style, year, month, day, (int) (clock >>> 27), (int) (clock >>> 20) & 127,
+                (int) (clock >>> 13) & 127, (int) (clock >>> 3) & 1023);
+    }
+
+    /**
+     * description: 校验取值并压缩：格式5位、规整格式3位、年14位、月4位、日5位、时5位、分6位、秒6位、毫秒10位
+     */
+    static long pack(DateLayout layout, int style, int year, int month, int day, int hour, int minute, int second, int millis) {
+        if (!valid(year, month, day, hour, minute, second)) {
+            return INVALID;
+        }
+        return (long) layout.ordinal() << 56 | (long) style << 53 | (long) year << 39 | (long) month << 35 | (long) day << 30
+                | (long) hour << 25 | (long) minute << 19 | (long) second << 13 | (long) millis << 3;
+    }
+
+    private static boolean valid(int year, int month, int day, int hour, int minute, int second) {
+        return year >= 1 && year <= 9999 && month >= 1 && month <= 12 && day >= 1 && day <= lengthOfMonth(year, month)
+                && hour <= 23 && minute <= 59 && second <= 59;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int digitsEnd(CharSequence s, int i, int end) {
+        while (i < end && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int number(CharSequence s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static boolean isSpace(char c) { // 正则为\s，但SimpleDateFormat的格式中是空格，其他空白字符原来解析失败
+        return c == ' ';
+    }
+
+    public static DateLayout layout(long fields) {
+        return LAYOUTS[(int) (fields >>> 56)];
+    }
+
+    static int style(long fields) {
+        return (int) (fields >>> 53) & 7;
+    }
+
+    public static int year(long fields) {
+        return (int) (fields >>> 39) & 16383;
+    }
+
+    public static int month(long fields) {
+        return (int) (fields >>> 35) & 15;
+    }
+
+    public static int day(long fields) {
+        return (int) (fields >>> 30) & 31;
+    }
+
+    public static int hour(long fields) {
+        return (int) (fields >>> 25) & 31;
+    }
+
+    public static int minute(long fields) {
+        return (int) (fields >>> 19) & 63;
+    }
+
+    public static int second(long fields) {
+        return (int) (fields >>> 13) & 63;
+    }
+
+    public static int millis(long fields) {
+        return (int) (fields >>> 3) & 1023;
+    }
+
+    public static LocalDateTime toLocalDateTime(long fields) {
+        return LocalDateTime.of(year(fields), month(fields), day(fields), hour(fields), minute(fields), second(fields), millis(fields) * 1000000);
+    }
+
+    /**
+     * description: 按时区转换为epoch毫秒；固定偏移的时区（如UTC）直接计算，不分配对象
+     * param: [fields, zone]
+     * return: long
+     * time: 2018/8/24 11:00
+     */
+    public static long toEpochMillis(long fields, ZoneId zone) {
+        ZoneRules rules = zone.getRules();
+        if (!rules.isFixedOffset()) {
+            return toLocalDateTime(fields).atZone(zone).toInstant().toEpochMilli();
+        }
+        long seconds = epochDay(year(fields), month(fields), day(fields)) * 86400
+                + hour(fields) * 3600 + minute(fields) * 60 + second(fields)
+                - rules.getOffset(java.time.Instant.EPOCH).getTotalSeconds();
+        return seconds * 1000 + millis(fields);
+    }
+
+    /**
+     * description: 按系统默认时区转换为epoch毫秒，与原SimpleDateFormat解析得到的Date.getTime()一致
+     */
+    public static long toEpochMillis(long fields) {
+        return toEpochMillis(fields, ZoneId.systemDefault());
+    }
+
+    private static long epochDay(int year, int month, int day) { // 同LocalDate.toEpochDay，year大于0
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12 + day - 1;
+        if (month > 2) {
+            total -= isLeapYear(year) ? 1 : 2;
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * description: 规整的日期字符串：年月日以横杠分隔，时分秒以冒号分隔，精度与原格式相同（同原getDateFormat2）
+     * param: [fields]
+     * return: java.lang.String
+     * time: 2018/8/24 11:10
+     */
+    public static String format(long fields) {
+        StringBuilder sb = new StringBuilder(23);
+        appendTo(fields, style(fields), sb);
+        return sb.toString();
+    }
+
+    /**
+     * description: yyyy-MM-dd HH:mm:ss格式
+     */
+    public static String formatDateTime(long fields) {
+        StringBuilder sb = new StringBuilder(19);
+        appendTo(fields, STYLE_Y_M_D_HMS, sb);
+        return sb.toString();
+    }
+
+    /**
+     * description: yyyy-MM-dd格式
+     */
+    public static String formatDate(long fields) {
+        StringBuilder sb = new StringBuilder(10);
+        appendTo(fields, STYLE_Y_M_D, sb);
+        return sb.toString();
+    }
+
+    static void appendTo(long fields, int style, StringBuilder sb) {
+        appendDigits(sb, year(fields), 4);
+        if (style >= STYLE_Y_M) {
+            appendDigits(sb.append('-'), month(fields), 2);
+        }
+        if (style >= STYLE_Y_M_D) {
+            appendDigits(sb.append('-'), day(fields), 2);
+        }
+        if (style >= STYLE_Y_M_D_HM) {
+            appendDigits(sb.append(' '), hour(fields), 2);
+            appendDigits(sb.append(':'), minute(fields), 2);
+        }
+        if (style >= STYLE_Y_M_D_HMS) {
+            appendDigits(sb.append(':'), second(fields), 2);
+        }
+        if (style >= STYLE_Y_M_D_HMS_SSS) {
+            appendDigits(sb.append('.'), millis(fields), 3);
+        }
+    }
+
+    private static void appendDigits(StringBuilder sb, int value, int width) {
+        for (int divisor = width == 4 ? 1000 : width == 3 ? 100 : 10; divisor > 0; divisor /= 10) {
+            sb.append((char) ('0' + value / divisor % 10));
+        }
+    }
+
+}
@@ -5,6 +5,10 @@ import net.sf.json.JSONObject;
 import org.apache.log4j.Logger;
 
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.regex.Matcher;
@@ -15,7 +19,8 @@ import java.util.regex.Pattern;
  * user: chenzuoli
  * date: 2018/6/13
  * time: 13:07
- * description: 日期转换工具类
+ * description: 日期转换工具类，日期的识别与解析见DateScanner（线程安全）；
+ * 下面公开的SimpleDateFormat实例保留给原有调用方，非线程安全，多线程下不要共用
  */
 public class DateTimeUtils {
     public static SimpleDateFormat formatYMDSlash = new SimpleDateFormat("yyyy/MM/dd");
@@ -42,6 +47,33 @@ public class DateTimeUtils {
     public static SimpleDateFormat formatYMChinese = new SimpleDateFormat("yyyy年MM月");
     public static SimpleDateFormat formatYChinese = new SimpleDateFormat("yyyy年");
     private static Logger logger = Logger.getLogger(DateTimeUtils.class);
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final Pattern[] DATE_PATTERNS = { // getDateStrFromStr的查找顺序
+            Pattern.compile(RegexUtils.ymdSlashRegex),
+            Pattern.compile(RegexUtils.ymSlashRegex),
+            Pattern.compile(RegexUtils.mdy4SlashRegex),
+            Pattern.compile(RegexUtils.mdy2SlashRegex),
+            Pattern.compile(RegexUtils.y_m_d_h_m_s_SRegex),
+            Pattern.compile(RegexUtils.y_m_d_h_m_sRegex),
+            Pattern.compile(RegexUtils.ymd_h_m_sRegex),
+            Pattern.compile(RegexUtils.y_m_d_h_mRegex),
+            Pattern.compile(RegexUtils.y_m_dRegex),
+            Pattern.compile(RegexUtils.y_mRegex),
+            Pattern.compile(RegexUtils.ymdblankhmschineseRegex),
+            Pattern.compile(RegexUtils.ymdhmschineseRegex),
+            Pattern.compile(RegexUtils.ymdchineseblankhmsRegex),
+            Pattern.compile(RegexUtils.ymdchineseblankhmRegex),
+            Pattern.compile(RegexUtils.ymdchinesehmsRegex),
+            Pattern.compile(RegexUtils.ymdchinesehmRegex),
+            Pattern.compile(RegexUtils.ymdchineseRegex),
+            Pattern.compile(RegexUtils.ymchineseRegex),
+            Pattern.compile(RegexUtils.ychineseRegex),
+            Pattern.compile(RegexUtils.ymdhmsRegex),
+            Pattern.compile(RegexUtils.ymdRegex),
+            Pattern.compile(RegexUtils.ymRegex),
+            Pattern.compile(RegexUtils.yRegex)
+    };
 
     static {
         formatYMDSlash.setLenient(false);//这个的功能是不把1996/13/3 转换为1997/1/3
@@ -70,95 +102,63 @@ public class DateTimeUtils {
     }
 
     /**
-     * description: dateStr中可能包含不需要的内容，抽取日期时间字符串，并格式化成规整的字符串，年月日一律用横杠分隔，时分秒一律用冒号分隔
+     * description: dateStr中可能包含不需要的内容，抽取日期时间字符串，并格式化成规整的字符串，年月日一律用横杠分隔，时分秒一律用冒号分隔；
+     * 不合法时返回原字符串
      * param: [dateStr]
      * return: java.lang.String
      * date: 2018/6/7 14:04
      */
     public static String dateStr2DateStr(String dateStr) {
-        String returnStr = dateStr;
-        try {
-            String dateTimeFromStr = getDateStrFromStr(dateStr);
-            Date date = parseStringToDate(dateTimeFromStr);
-            if (date != null) {
-                returnStr = getDateFormat2(dateTimeFromStr).format(date);
-            }
-        } catch (Exception e) {
-            logger.error("date string " + dateStr + " transform to format date string exception!", e);
-        }
-        return returnStr;
+        if (dateStr == null) return null;
+        long fields = scanOrExtract(dateStr, DateScanner.scan(dateStr));
+        return fields == DateScanner.INVALID ? dateStr : DateScanner.format(fields);
+    }
+
+    /**
+     * description: fields为整个字符串的扫描结果，不合法时再用正则从中抽取日期扫描
+     */
+    static long scanOrExtract(String dateStr, long fields) {
+        return fields == DateScanner.INVALID ? DateScanner.scan(getDateStrFromStr(dateStr)) : fields;
     }
 
     /**
-     * description: 检验日期字符串合法性，日期格式正则表达式不全，可补充
+     * description: 检验日期字符串合法性，支持RegexUtils中的全部日期格式，单遍扫描识别格式与字段（见DateScanner），线程安全
      * param: [dateStr]
      * return: java.util.Date
      * date: 2018/4/11 11:42
-     * ps: 当日期类型字符串格式正确，但是数值不合法（秒的值达到66）时，会抛异常
+     * ps: 当日期类型字符串格式正确，但是数值不合法（秒的值达到66）时，返回null
      */
     public static Date parseStringToDate(String dateStr) {
         if (dateStr == null || "".equals(dateStr.trim()))
             return null;
-        dateStr = dateStr.trim();
-        Date date = null;
-        try {
-            if (dateStr.matches(RegexUtils.ymdSlash)) {
-                date = formatYMDSlash.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.ymSlash)) {
-                date = formatYMSlash.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.y_m_d)) {
-                date = formatY_M_D.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.y_m)) {
-                date = formatY_M.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.y)) {
-                date = formatY.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.ymd)) {
-                try {
-                    date = formatYMD.parse(dateStr);
-                } catch (Exception e) {
-                    date = formatYM.parse(dateStr);
-                }
-            } else if (dateStr.matches(RegexUtils.ym)) {
-                date = formatYM.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.ymdhms)) {
-                date = formatYMDHMS.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.y_m_d_h_m)) {
-                date = formatY_M_D_HM.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.ymd_h_m_s)) {
-                date = formatYMD_HMS.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.y_m_d_h_m_s)) {
-                date = formatY_M_D_HMS.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.y_m_d_h_m_s_S)) {
-                date = formatY_M_D_HMSMILLS.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.mdy2Slash)) {
-                date = formatMDY2Slash.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.mdy4Slash)) {
-                date = formatMDY4Slash.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.ymdchinese)) {
-                date = formatYMDChinese.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.ymdhmschinese)) {
-                date = formatYMDHMSChinese.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.ymdblankhmschinese)) {
-                date = formatYMDBlankHMSChinese.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.ymdchinesehms)) {
-                date = formatYMDChineseHMS.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.ymdchineseblankhms)) {
-                date = formatYMDChineseBlankHMS.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.ymdchinesehm)) {
-                date = formatYMDChineseHM.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.ymdchineseblankhm)) {
-                date = formatYMDChineseBlankHM.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.ymchinese)) {
-                date = formatYMChinese.parse(dateStr);
-            } else if (dateStr.matches(RegexUtils.ychinese)) {
-                date = formatYChinese.parse(dateStr);
-            } else {
-                logger.info("please enter the normal date string: " + dateStr);
-            }
-        } catch (Exception e) {
-            logger.error("exception: " + e + ", date string " + dateStr + " is not valid!");
+        long fields = DateScanner.scan(dateStr);
+        if (fields == DateScanner.INVALID) {
+            logger.info("please enter the normal date string: " + dateStr);
+            return null;
         }
-        return date;
+        return new Date(DateScanner.toEpochMillis(fields));
+    }
+
+    /**
+     * description: 解析日期字符串为epoch毫秒（系统默认时区），支持的格式同parseStringToDate，不合法时返回defaultValue
+     * param: [dateStr, defaultValue]
+     * return: long
+     * time: 2018/8/24 14:00
+     */
+    public static long parseStringToEpochMillis(String dateStr, long defaultValue) {
+        long fields = DateScanner.scan(dateStr);
+        return fields == DateScanner.INVALID ? defaultValue : DateScanner.toEpochMillis(fields);
+    }
+
+    /**
+     * description: 解析日期字符串为LocalDateTime，支持的格式同parseStringToDate，不合法时返回null
+     * param: [dateStr]
+     * return: java.time.LocalDateTime
+     * time: 2018/8/24 14:05
+     */
+    public static LocalDateTime parseStringToLocalDateTime(String dateStr) {
+        long fields = DateScanner.scan(dateStr);
+        return fields == DateScanner.INVALID ? null : DateScanner.toLocalDateTime(fields);
     }
 
     /**
@@ -171,143 +171,12 @@ public class DateTimeUtils {
         if (str == null) return null;
         String returnStr = "";
         try {
-            Pattern ymdSlashPattern = Pattern.compile(RegexUtils.ymdSlashRegex);
-            Matcher matcher = ymdSlashPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern ymSlashPattern = Pattern.compile(RegexUtils.ymSlashRegex);
-            matcher = ymSlashPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern mdy4SlashPattern = Pattern.compile(RegexUtils.mdy4SlashRegex);
-            matcher = mdy4SlashPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern mdy2SlashPattern = Pattern.compile(RegexUtils.mdy2SlashRegex);
-            matcher = mdy2SlashPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern y_m_d_h_m_s_SPattern = Pattern.compile(RegexUtils.y_m_d_h_m_s_SRegex);
-            matcher = y_m_d_h_m_s_SPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern y_m_d_h_m_sPattern = Pattern.compile(RegexUtils.y_m_d_h_m_sRegex);
-            matcher = y_m_d_h_m_sPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern ymd_h_m_sPattern = Pattern.compile(RegexUtils.ymd_h_m_sRegex);
-            matcher = ymd_h_m_sPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern y_m_d_h_mPattern = Pattern.compile(RegexUtils.y_m_d_h_mRegex);
-            matcher = y_m_d_h_mPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern y_m_dPattern = Pattern.compile(RegexUtils.y_m_dRegex);
-            matcher = y_m_dPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern y_mPattern = Pattern.compile(RegexUtils.y_mRegex);
-            matcher = y_mPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern ymdblankhmschinesePattern = Pattern.compile(RegexUtils.ymdblankhmschineseRegex);
-            matcher = ymdblankhmschinesePattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern ymdhmschinesePattern = Pattern.compile(RegexUtils.ymdhmschineseRegex);
-            matcher = ymdhmschinesePattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern ymdchineseblankhmsPattern = Pattern.compile(RegexUtils.ymdchineseblankhmsRegex);
-            matcher = ymdchineseblankhmsPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern ymdchineseblankhmPattern = Pattern.compile(RegexUtils.ymdchineseblankhmRegex);
-            matcher = ymdchineseblankhmPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern ymdchinesehmsPattern = Pattern.compile(RegexUtils.ymdchinesehmsRegex);
-            matcher = ymdchinesehmsPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern ymdchinesehmPattern = Pattern.compile(RegexUtils.ymdchinesehmRegex);
-            matcher = ymdchinesehmPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern ymdchinesePattern = Pattern.compile(RegexUtils.ymdchineseRegex);
-            matcher = ymdchinesePattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern ymchinesePattern = Pattern.compile(RegexUtils.ymchineseRegex);
-            matcher = ymchinesePattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern ychinesePattern = Pattern.compile(RegexUtils.ychineseRegex);
-            matcher = ychinesePattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern ymdhmsPattern = Pattern.compile(RegexUtils.ymdhmsRegex);
-            matcher = ymdhmsPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern ymdPattern = Pattern.compile(RegexUtils.ymdRegex);
-            matcher = ymdPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern ymPattern = Pattern.compile(RegexUtils.ymRegex);
-            matcher = ymPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
-            }
-            Pattern yPattern = Pattern.compile(RegexUtils.yRegex);
-            matcher = yPattern.matcher(str);
-            if (matcher.find()) {
-                returnStr = matcher.group();
-                return returnStr;
+            for (Pattern pattern : DATE_PATTERNS) {
+                Matcher matcher = pattern.matcher(str);
+                if (matcher.find()) {
+                    returnStr = matcher.group();
+                    return returnStr;
+                }
             }
         } catch (Exception e) {
             logger.error("get date time from string " + str + " exception!", e);
@@ -316,7 +185,7 @@ public class DateTimeUtils {
     }
 
     /**
-     * description: 获取日期字符串格式
+     * description: 获取日期字符串格式，返回的是共享的SimpleDateFormat实例，非线程安全
      * param: [dateStr]
      * return: java.text.SimpleDateFormat
      * date: 2018/6/7 14:15
@@ -384,7 +253,7 @@ public class DateTimeUtils {
     }
 
     /**
-     * description: 获取日期字符串格式，年月日全部转换为横杠，时分秒全部转换为冒号
+     * description: 获取日期字符串格式，年月日全部转换为横杠，时分秒全部转换为冒号；返回的是共享的SimpleDateFormat实例，非线程安全
      * param: [dateStr]
      * return: java.text.SimpleDateFormat
      * date: 2018/6/7 14:31
@@ -458,14 +327,12 @@ public class DateTimeUtils {
      * date: 2018/5/4 10:25
      */
     public static String dateStrToyMdHms(String dateStr) {
-        String returnStr = "";
-        try {
-            Date date = parseStringToDate(dateStr);
-            returnStr = formatY_M_D_HMS.format(date);
-        } catch (Exception e) {
-            logger.error(dateStr + " transform to yyyy-MM-dd HH:mm:ss exception: " + e);
+        long fields = DateScanner.scan(dateStr);
+        if (fields == DateScanner.INVALID) {
+            logger.error(dateStr + " transform to yyyy-MM-dd HH:mm:ss exception: illegal date string");
+            return "";
         }
-        return returnStr;
+        return DateScanner.formatDateTime(fields);
     }
 
     /**
@@ -475,14 +342,12 @@ public class DateTimeUtils {
      * date: 2018/5/4 10:52
      */
     public static String dateStrToyMd(String dateStr) {
-        String returnStr = "";
-        try {
-            Date date = parseStringToDate(dateStr);
-            returnStr = formatY_M_D.format(date);
-        } catch (Exception e) {
-            logger.error(dateStr + " transform to yyyy-MM-dd exception: " + e);
+        long fields = DateScanner.scan(dateStr);
+        if (fields == DateScanner.INVALID) {
+            logger.error(dateStr + " transform to yyyy-MM-dd exception: illegal date string");
+            return "";
         }
-        return returnStr;
+        return DateScanner.formatDate(fields);
     }
 
     /**
@@ -591,7 +456,8 @@ public class DateTimeUtils {
     public static String timestampToDateStr(java.util.Date date) {
         String returnStr = "";
         try {
-            returnStr = formatY_M_D_HMS.format(date);
+            // java.sql.Date不支持toInstant()，统一按毫秒数转换
+            returnStr = DATE_TIME_FORMATTER.format(Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()));
         } catch (Exception e) {
             logger.error("timestamp or date " + date + " to string exception!", e);
         }
@@ -607,7 +473,7 @@ public class DateTimeUtils {
     public static String currentTimeStr() {
         String format = null;
         try {
-            format = formatY_M_D_HMS.format(new java.util.Date());
+            format = DATE_TIME_FORMATTER.format(LocalDateTime.now());
         } catch (Exception e) {
             logger.error("format current date time exception!", e);
         }
@@ -623,7 +489,7 @@ public class DateTimeUtils {
     public static String currentDateStr() {
         String format = null;
         try {
-            format = formatY_M_D.format(new java.util.Date());
+            format = DATE_FORMATTER.format(LocalDateTime.now());
         } catch (Exception e) {
             logger.error("format current date time exception!", e);
         }
@@ -1,16 +1,45 @@
 package com.payegis.tools.file;
 
+import org.apache.log4j.Logger;
 import org.apache.poi.hssf.usermodel.*;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.*;
 import java.text.DecimalFormat;
+import java.text.Format;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * company:
@@ -20,12 +49,20 @@ import java.util.List;
  * description: Excel工具类
  */
 public class ExcelUtils {
+    private static Logger logger = Logger.getLogger(ExcelUtils.class);
     // 默认单元格内容为数字时格式
-    private static DecimalFormat df = new DecimalFormat("0");
+    private static volatile DecimalFormat df = new DecimalFormat("0");
     // 默认单元格格式化日期字符串
-    private static SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private static volatile SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
     // 格式化数字
-    private static DecimalFormat nf = new DecimalFormat("0.00");
+    private static volatile DecimalFormat nf = new DecimalFormat("0.00");
+    // df、sdf、nf非线程安全，只作为原型，每个线程格式化时使用各自的副本：[原型, 副本]按df、nf、sdf顺序存放
+    private static final ThreadLocal<Format[]> localFormats = ThreadLocal.withInitial(() -> new Format[6]);
+    // 多sheet并发读取时，各sheet的行经此队列交给调用线程
+    private static final int SHEET_QUEUE_SIZE = 10000;
+    private static final String[] SHEET_END = new String[0];
+    // 流式写xlsx时内存中保留的行数
+    private static final int SXSSF_WINDOW_SIZE = 100;
 
     /**
      * description: 将返回结果存储在ArrayList内，存储结构与二位数组类似，lists.get(0).get(0)表示过去Excel中0行0列单元格
@@ -47,6 +84,372 @@ public class ExcelUtils {
         }
     }
 
+    /**
+     * description: 流式读取Excel第一个sheet，每读完一行即交给rowConsumer处理；xlsx使用SAX事件模型，内存占用与sheet大小无关，
+     * xls（最多65536行）仍整表读取后逐行回调；读取xlsx失败时抛出UncheckedIOException，rowConsumer抛出的异常原样抛出
+     * param: [file, rowConsumer]
+     * return: void
+     * time: 2018/8/1 9:30
+     */
+    public static void readExcel(File file, Consumer<ArrayList<Object>> rowConsumer) {
+        if (file == null) {
+            return;
+        }
+        if (file.getName().endsWith("xlsx")) {
+            readExcel2007(file, rowConsumer);
+        } else {
+            ArrayList<ArrayList<Object>> rows = readExcel2003(file);
+            if (rows != null) {
+                rows.forEach(rowConsumer);
+            }
+        }
+    }
+
+    /**
+     * description: 基于XSSF事件模型（共享字符串表 + SAX sheet解析）流式读取excel2007第一个sheet，
+     * 单元格格式化规则与readExcel2007相同；内存中只保留共享字符串表、样式表和当前行。
+     * 读取失败时抛出UncheckedIOException（文件格式错误时为IllegalStateException），rowConsumer抛出的异常原样抛出
+     * param: [file, rowConsumer]
+     * return: void
+     * time: 2018/8/1 9:40
+     */
+    public static void readExcel2007(File file, Consumer<ArrayList<Object>> rowConsumer) {
+        OPCPackage pkg = null;
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    readSheet(sheet, sharedStrings, styles, rowConsumer);
+                }
+            }
+        } catch (Exception e) {
+            throw readFailure("stream read excel file " + file + " exception", e);
+        } finally {
+            if (pkg != null) {
+                pkg.revert(); // 只读打开，不保存
+            }
+        }
+    }
+
+    /**
+     * description: 流式读取失败时抛给调用方的异常：RuntimeException（含rowConsumer抛出的）原样返回，IOException包装为UncheckedIOException，
+     * 其余（文件格式错误、SAX解析错误等）包装为IllegalStateException
+     * param: [message, e]
+     * return: java.lang.RuntimeException
+     * time: 2018/8/1 10:30
+     */
+    private static RuntimeException readFailure(String message, Exception e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof IOException) {
+            return new UncheckedIOException(message, (IOException) e);
+        }
+        if (e instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        return new IllegalStateException(message, e);
+    }
+
+    /**
+     * description: 并发读取Excel的所有sheet，每行以String[]交给rowConsumer，第0列为sheet名，之后为单元格值
+     * param: [file, rowConsumer]
+     * return: void
+     * time: 2018/8/3 10:00
+     */
+    public static void readExcelSheets(File file, Consumer<String[]> rowConsumer) {
+        readExcelSheets(file, null, Runtime.getRuntime().availableProcessors(), rowConsumer);
+    }
+
+    /**
+     * description: 在parallelism个线程上并发读取sheetNames指定的sheet（null表示全部），
+     * 每行以String[]交给rowConsumer（第0列为sheet名），与FileDivisionETL的行处理方式一致；
+     * rowConsumer只在调用线程中被调用，无需线程安全；同一sheet内的行保持原顺序，不同sheet的行交错输出。
+     * 任一sheet读取失败或rowConsumer抛出异常时停止读取并抛给调用方（I/O错误为UncheckedIOException），返回前所有读取线程均已结束
+     * param: [file, sheetNames, parallelism, rowConsumer]
+     * return: void
+     * time: 2018/8/3 10:05
+     */
+    public static void readExcelSheets(File file, Collection<String> sheetNames, int parallelism, Consumer<String[]> rowConsumer) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        BlockingQueue<String[]> queue = new ArrayBlockingQueue<>(SHEET_QUEUE_SIZE);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        OPCPackage pkg = null;
+        HSSFWorkbook wb = null;
+        int sheets = 0;
+        try {
+            if (file.getName().endsWith("xlsx")) {
+                pkg = OPCPackage.open(file, PackageAccess.READ);
+                XSSFReader reader = new XSSFReader(pkg);
+                ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+                StylesTable styles = reader.getStylesTable();
+                XSSFReader.SheetIterator iterator = (XSSFReader.SheetIterator) reader.getSheetsData();
+                Set<String> seen = new HashSet<>(); // POI 3.16的SheetIterator会重复返回同一sheet，sheet名在工作簿内唯一，按名去重
+                while (iterator.hasNext()) {
+                    InputStream sheet = iterator.next();
+                    String sheetName = iterator.getSheetName();
+                    if (!seen.add(sheetName) || sheetNames != null && !sheetNames.contains(sheetName)) {
+                        sheet.close();
+                        continue;
+                    }
+                    sheets++;
+                    executor.submit(() -> readSheetTask(sheetName, queue, failure, () -> {
+                        try (InputStream in = sheet) {
+                            readSheet(in, sharedStrings, styles, row -> putRow(queue, sheetName, row));
+                        }
+                    }));
+                }
+            } else {
+                try (InputStream in = new FileInputStream(file)) {
+                    wb = new HSSFWorkbook(in); // xls整个读入内存，读完即可关闭文件
+                }
+                for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+                    String sheetName = wb.getSheetName(i);
+                    if (sheetNames != null && !sheetNames.contains(sheetName)) {
+                        continue;
+                    }
+                    HSSFSheet sheet = wb.getSheetAt(i);
+                    sheets++;
+                    executor.submit(() -> readSheetTask(sheetName, queue, failure,
+                            () -> readHssfSheet(sheet, row -> putRow(queue, sheetName, row))));
+                }
+            }
+            while (sheets > 0) { // 调用线程消费各sheet的行
+                String[] row = queue.take();
+                if (row == SHEET_END) {
+                    sheets--;
+                    if (failure.get() != null) {
+                        throw failure.get();
+                    }
+                } else {
+                    rowConsumer.accept(row);
+                }
+            }
+        } catch (Exception e) {
+            throw readFailure("read excel file " + file + " sheets exception", e);
+        } finally {
+            executor.shutdownNow(); // 提前结束时中断阻塞在队列上的读取线程
+            awaitTermination(executor); // 读取线程结束后才能关闭文件
+            if (pkg != null) {
+                pkg.revert();
+            }
+            if (wb != null) {
+                try {
+                    wb.close();
+                } catch (IOException e) {
+                    logger.error("close excel file " + file + " exception!", e);
+                }
+            }
+        }
+    }
+
+    private interface SheetReader {
+        void read() throws Exception;
+    }
+
+    private static void readSheetTask(String sheetName, BlockingQueue<String[]> queue, AtomicReference<Exception> failure,
+                                      SheetReader sheetReader) {
+        try {
+            sheetReader.read();
+        } catch (Exception e) {
+            failure.compareAndSet(null, e); // 只保留第一个失败，由调用线程抛出
+        } finally {
+            try {
+                queue.put(SHEET_END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * description: 等待线程池中的任务全部结束，等待期间被中断时继续等待，结束后恢复中断状态
+     * param: [executor]
+     * return: void
+     * time: 2018/8/3 10:20
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+                logger.warn("still waiting for excel sheet readers to finish");
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void putRow(BlockingQueue<String[]> queue, String sheetName, ArrayList<Object> row) {
+        String[] columns = new String[row.size() + 1];
+        columns[0] = sheetName;
+        for (int i = 0; i < row.size(); i++) {
+            Object value = row.get(i);
+            columns[i + 1] = value == null ? "" : value.toString();
+        }
+        try {
+            queue.put(columns); // 调用线程处理不过来时阻塞
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("read excel sheet " + sheetName + " interrupted!", e);
+        }
+    }
+
+    /**
+     * description: 获取当前线程的格式化器副本，原型被setDf等替换后重新复制
+     * param: [prototype, slot]
+     * return: java.text.Format
+     * time: 2018/8/3 9:50
+     */
+    private static Format localFormat(Format prototype, int slot) {
+        Format[] formats = localFormats.get();
+        if (formats[slot] != prototype) {
+            formats[slot] = prototype;
+            formats[slot + 1] = (Format) prototype.clone();
+        }
+        return formats[slot + 1];
+    }
+
+    /**
+     * description: SAX解析一个sheet的xml，逐行回调
+     * param: [sheet, sharedStrings, styles, rowConsumer]
+     * return: void
+     * time: 2018/8/1 9:50
+     */
+    static void readSheet(InputStream sheet, ReadOnlySharedStringsTable sharedStrings, StylesTable styles,
+                          Consumer<ArrayList<Object>> rowConsumer) throws Exception {
+        XMLReader parser = SAXHelper.newXMLReader();
+        parser.setContentHandler(new SheetHandler(sharedStrings, styles, rowConsumer));
+        parser.parse(new InputSource(sheet));
+    }
+
+    /**
+     * description: 按readExcel2007的规则格式化数值单元格：文本格式(@)取整，常规格式保留两位小数，其余按日期格式化
+     * param: [value, formatString]
+     * return: java.lang.Object
+     * time: 2018/8/1 10:00
+     */
+    static Object formatNumeric(double value, String formatString) {
+        if ("@".equals(formatString)) {
+            return localFormat(df, 0).format(value);
+        } else if ("General".equals(formatString)) {
+            return localFormat(nf, 2).format(value);
+        } else {
+            return localFormat(sdf, 4).format(HSSFDateUtil.getJavaDate(value));
+        }
+    }
+
+    /**
+     * sheet xml的SAX处理器：跟踪当前行与单元格，行结束时按列号补齐空单元格后回调
+     */
+    private static class SheetHandler extends DefaultHandler {
+        private final ReadOnlySharedStringsTable sharedStrings;
+        private final StylesTable styles;
+        private final Consumer<ArrayList<Object>> rowConsumer;
+        private final StringBuilder text = new StringBuilder();
+        private ArrayList<Object> row;
+        private int nextRowNum = -1; // 下一个期望的行号（从0开始），缺失的行以空行补齐；与readExcel2007一致，第一行之前的空行不输出
+        private int firstColumn;
+        private int column;
+        private String cellType;
+        private String formatString;
+        private boolean inValue;
+
+        SheetHandler(ReadOnlySharedStringsTable sharedStrings, StylesTable styles, Consumer<ArrayList<Object>> rowConsumer) {
+            this.sharedStrings = sharedStrings;
+            this.styles = styles;
+            this.rowConsumer = rowConsumer;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("row".equals(localName)) {
+                String r = attributes.getValue("r");
+                int rowNum = r == null ? Math.max(nextRowNum, 0) : Integer.parseInt(r) - 1;
+                while (nextRowNum >= 0 && nextRowNum < rowNum) { // 中间的空行
+                    rowConsumer.accept(new ArrayList<>());
+                    nextRowNum++;
+                }
+                nextRowNum = rowNum + 1;
+                row = new ArrayList<>();
+                firstColumn = -1;
+                column = -1;
+            } else if ("c".equals(localName)) {
+                String ref = attributes.getValue("r");
+                column = ref == null ? column + 1 : columnIndex(ref);
+                if (firstColumn < 0) {
+                    firstColumn = column;
+                }
+                while (firstColumn + row.size() < column) { // 中间的空单元格
+                    row.add("");
+                }
+                cellType = attributes.getValue("t");
+                String styleIndex = attributes.getValue("s");
+                XSSFCellStyle style = styles == null ? null
+                        : styles.getStyleAt(styleIndex == null ? 0 : Integer.parseInt(styleIndex));
+                formatString = style == null ? "General" : style.getDataFormatString();
+                text.setLength(0);
+            } else if ("v".equals(localName) || "t".equals(localName)) {
+                inValue = true;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if ("v".equals(localName) || "t".equals(localName)) {
+                inValue = false;
+            } else if ("c".equals(localName)) {
+                row.add(cellValue());
+            } else if ("row".equals(localName)) {
+                rowConsumer.accept(row);
+                row = null;
+            }
+        }
+
+        private Object cellValue() {
+            String value = text.toString();
+            if (value.isEmpty()) {
+                return "";
+            }
+            if ("s".equals(cellType)) {
+                return sharedStrings.getEntryAt(Integer.parseInt(value));
+            } else if ("inlineStr".equals(cellType) || "str".equals(cellType) || "e".equals(cellType)) {
+                return value;
+            } else if ("b".equals(cellType)) {
+                return Boolean.valueOf("1".equals(value));
+            }
+            return formatNumeric(Double.parseDouble(value), formatString);
+        }
+
+        private static int columnIndex(String ref) {
+            int index = 0;
+            for (int i = 0; i < ref.length(); i++) {
+                char c = ref.charAt(i);
+                if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                index = index * 26 + (c - 'A' + 1);
+            }
+            return index - 1;
+        }
+    }
+
     /**
      * description: 读取excel2003
      * param: [file]
@@ -57,73 +460,81 @@ public class ExcelUtils {
     private static ArrayList<ArrayList<Object>> readExcel2003(File file) {
         try {
             ArrayList<ArrayList<Object>> rowList = new ArrayList<ArrayList<Object>>();
-            ArrayList<Object> colList;
             HSSFWorkbook wb = new HSSFWorkbook(new FileInputStream(file));
-            HSSFSheet sheet = wb.getSheetAt(0);
-            HSSFRow row;
-            HSSFCell cell;
-            Object value;
-            for (int i = sheet.getFirstRowNum(), rowCount = 0; rowCount < sheet.getPhysicalNumberOfRows(); i++) {
-                row = sheet.getRow(i);
-                colList = new ArrayList<Object>();
-                if (row == null) {
-                    //当读取行为空时
-                    if (i != sheet.getPhysicalNumberOfRows()) {//判断是否是最后一行
-                        rowList.add(colList);
+            readHssfSheet(wb.getSheetAt(0), rowList::add);
+            return rowList;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * description: 逐行读取excel2003的一个sheet
+     * param: [sheet, rowConsumer]
+     * return: void
+     * time: 2018/8/3 9:30
+     */
+    private static void readHssfSheet(HSSFSheet sheet, Consumer<ArrayList<Object>> rowConsumer) {
+        ArrayList<Object> colList;
+        HSSFRow row;
+        HSSFCell cell;
+        Object value;
+        for (int i = sheet.getFirstRowNum(), rowCount = 0; rowCount < sheet.getPhysicalNumberOfRows(); i++) {
+            row = sheet.getRow(i);
+            colList = new ArrayList<Object>();
+            if (row == null) {
+                //当读取行为空时
+                if (i != sheet.getPhysicalNumberOfRows()) {//判断是否是最后一行
+                    rowConsumer.accept(colList);
+                }
+                continue;
+            } else {
+                rowCount++;
+            }
+            for (int j = row.getFirstCellNum(); j <= row.getLastCellNum(); j++) {
+                cell = row.getCell(j);
+                if (cell == null || cell.getCellType() == HSSFCell.CELL_TYPE_BLANK) {
+                    //当该单元格为空
+                    if (j != row.getLastCellNum()) {//判断是否是该行中最后一个单元格
+                        colList.add("");
                     }
                     continue;
-                } else {
-                    rowCount++;
                 }
-                for (int j = row.getFirstCellNum(); j <= row.getLastCellNum(); j++) {
-                    cell = row.getCell(j);
-                    if (cell == null || cell.getCellType() == HSSFCell.CELL_TYPE_BLANK) {
-                        //当该单元格为空
-                        if (j != row.getLastCellNum()) {//判断是否是该行中最后一个单元格
-                            colList.add("");
-                        }
-                        continue;
-                    }
-                    switch (cell.getCellType()) {
-                        case XSSFCell.CELL_TYPE_STRING:
+                switch (cell.getCellType()) {
+                    case XSSFCell.CELL_TYPE_STRING:
 //		                    System.out.println(i + "行" + j + " 列 is String type");
-                            value = cell.getStringCellValue();
-                            break;
-                        case XSSFCell.CELL_TYPE_NUMERIC:
-                            if ("@".equals(cell.getCellStyle().getDataFormatString())) {
-                                value = df.format(cell.getNumericCellValue());
-                            } else if ("General".equals(cell.getCellStyle()
-                                    .getDataFormatString())) {
-                                value = nf.format(cell.getNumericCellValue());
-                            } else {
-                                value = sdf.format(HSSFDateUtil.getJavaDate(cell
-                                        .getNumericCellValue()));
-                            }
+                        value = cell.getStringCellValue();
+                        break;
+                    case XSSFCell.CELL_TYPE_NUMERIC:
+                        if ("@".equals(cell.getCellStyle().getDataFormatString())) {
+                            value = localFormat(df, 0).format(cell.getNumericCellValue());
+                        } else if ("General".equals(cell.getCellStyle()
+                                .getDataFormatString())) {
+                            value = localFormat(nf, 2).format(cell.getNumericCellValue());
+                        } else {
+                            value = localFormat(sdf, 4).format(HSSFDateUtil.getJavaDate(cell
+                                    .getNumericCellValue()));
+                        }
 		                    /*System.out.println(i + "行" + j
 		                            + " 列 is Number type ; DateFormt:"  
 		                            + value.toString()); */
-                            break;
-                        case XSSFCell.CELL_TYPE_BOOLEAN:
+                        break;
+                    case XSSFCell.CELL_TYPE_BOOLEAN:
 //		                    System.out.println(i + "行" + j + " 列 is Boolean type");
-                            value = Boolean.valueOf(cell.getBooleanCellValue());
-                            break;
-                        case XSSFCell.CELL_TYPE_BLANK:
+                        value = Boolean.valueOf(cell.getBooleanCellValue());
+                        break;
+                    case XSSFCell.CELL_TYPE_BLANK:
 //		                    System.out.println(i + "行" + j + " 列 is Blank type");
-                            value = "";
-                            break;
-                        default:
+                        value = "";
+                        break;
+                    default:
 //		                    System.out.println(i + "行" + j + " 列 is default type");
-                            value = cell.toString();
-                    }// end switch
-                    colList.add(value);
-                }//end for j
-                rowList.add(colList);
-            }//end for i
-
-            return rowList;
-        } catch (Exception e) {
-            return null;
-        }
+                        value = cell.toString();
+                }// end switch
+                colList.add(value);
+            }//end for j
+            rowConsumer.accept(colList);
+        }//end for i
     }
 
     /**
@@ -172,12 +583,12 @@ public class ExcelUtils {
                             break;
                         case XSSFCell.CELL_TYPE_NUMERIC:
                             if ("@".equals(cell.getCellStyle().getDataFormatString())) {
-                                value = df.format(cell.getNumericCellValue());
+                                value = localFormat(df, 0).format(cell.getNumericCellValue());
                             } else if ("General".equals(cell.getCellStyle()
                                     .getDataFormatString())) {
-                                value = nf.format(cell.getNumericCellValue());
+                                value = localFormat(nf, 2).format(cell.getNumericCellValue());
                             } else {
-                                value = sdf.format(HSSFDateUtil.getJavaDate(cell
+                                value = localFormat(sdf, 4).format(HSSFDateUtil.getJavaDate(cell
                                         .getNumericCellValue()));
                             }
 		                    /*System.out.println(i + "行" + j
@@ -220,6 +631,14 @@ public class ExcelUtils {
         if (result == null) {
             return;
         }
+        if (path.endsWith("xlsx")) {
+            try {
+                writeExcel(result.iterator(), path); // xlsx走流式写出
+            } catch (RuntimeException e) {
+                logger.error("write excel file " + path + " exception!", e);
+            }
+            return;
+        }
         HSSFWorkbook wb = new HSSFWorkbook();
         HSSFSheet sheet = wb.createSheet("sheet1");
         for (int i = 0; i < result.size(); i++) {
@@ -236,21 +655,70 @@ public class ExcelUtils {
                 }
             }
         }
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        try {
-            wb.write(os);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        byte[] content = os.toByteArray();
         File file = new File(path);//Excel文件生成后存储的位置。
-        try {
-            OutputStream fos = new FileOutputStream(file);
-            fos.write(content);
-            os.close();
-            fos.close();
+        try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(file))) {
+            wb.write(fos); // 直接写文件，不再经过ByteArrayOutputStream和byte[]两次拷贝
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("write excel file " + path + " exception!", e);
+        }
+    }
+
+    /**
+     * description: 流式写出xlsx，行来自Stream
+     * param: [rows, path]
+     * return: void
+     * time: 2018/8/2 9:40
+     */
+    public static void writeExcel(Stream<? extends List<?>> rows, String path) {
+        writeExcel(rows.iterator(), path);
+    }
+
+    /**
+     * description: 流式写出xlsx，使用默认的行窗口大小
+     * param: [rows, path]
+     * return: void
+     * time: 2018/8/2 9:42
+     */
+    public static void writeExcel(Iterator<? extends List<?>> rows, String path) {
+        writeExcel(rows, path, SXSSF_WINDOW_SIZE);
+    }
+
+    /**
+     * description: 基于SXSSF流式写出xlsx：内存中只保留最近windowSize行，更早的行刷到临时文件，最后直接写入目标文件；
+     * 超过xlsx单sheet行数上限时自动新建sheet；写出失败时抛出UncheckedIOException，rows抛出的异常原样抛出
+     * param: [rows, path, windowSize]
+     * return: void
+     * time: 2018/8/2 9:45
+     */
+    public static void writeExcel(Iterator<? extends List<?>> rows, String path, int windowSize) {
+        SXSSFWorkbook wb = new SXSSFWorkbook(windowSize);
+        wb.setCompressTempFiles(true);
+        try {
+            int maxRows = SpreadsheetVersion.EXCEL2007.getMaxRows();
+            int sheetNum = 1;
+            Sheet sheet = wb.createSheet("sheet" + sheetNum);
+            int rowNum = 0;
+            while (rows.hasNext()) {
+                if (rowNum == maxRows) {
+                    sheet = wb.createSheet("sheet" + (++sheetNum));
+                    rowNum = 0;
+                }
+                List<?> values = rows.next();
+                Row row = sheet.createRow(rowNum++);
+                if (values != null) {
+                    for (int j = 0; j < values.size(); j++) {
+                        Object cellObj = values.get(j);
+                        row.createCell(j).setCellValue(cellObj == null ? "" : cellObj.toString());
+                    }
+                }
+            }
+            try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(path))) {
+                wb.write(fos);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("stream write excel file " + path + " exception", e);
+        } finally {
+            wb.dispose(); // 删除临时文件
         }
     }
 
@@ -0,0 +1,286 @@
+package com.payegis.tools.file;
+
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/31
+ * time: 9:20
+ * description: 长期打开、多线程共享的文件追加器，代替每次调用都打开、定位、关闭文件的AppendToFile。
+ * 追加的内容先拷贝到环形缓冲区，由后台线程在缓冲达到一定大小、到达刷新间隔或调用sync时成批写入文件（组提交）。
+ * 持久化级别：MEMORY-append写入缓冲区即返回；OS-append等到所在批次写入操作系统后返回；DISK-append等到所在批次fsync后返回
+ */
+public class FileAppender implements Closeable {
+    private static Logger logger = Logger.getLogger(FileAppender.class);
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+
+    public enum Durability {
+        MEMORY, OS, DISK
+    }
+
+    private final String fileName;
+    private final FileChannel channel;
+    private final Durability durability;
+    private final long flushIntervalNanos;
+    private final byte[] ring;
+    private final int flushThreshold;
+    private final ReentrantLock writerLock = new ReentrantLock(); // 保证一条内容在缓冲区中连续，不与其他线程交错
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Condition flushDone = lock.newCondition();
+    private final Thread flusher;
+    private long written; // 已放入缓冲区的字节总数
+    private long flushed; // 已写入文件的字节总数
+    private long synced; // 已fsync的字节总数
+    private long syncRequested; // 需要fsync到的位置
+    private boolean closed;
+    private IOException failure;
+
+    public FileAppender(String fileName) throws IOException {
+        this(fileName, DEFAULT_BUFFER_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS, Durability.MEMORY);
+    }
+
+    public FileAppender(String fileName, int bufferSize, long flushIntervalMillis, Durability durability) throws IOException {
+        this.fileName = fileName;
+        this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.durability = durability;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.ring = new byte[bufferSize];
+        this.flushThreshold = Math.max(1, bufferSize / 2);
+        this.flusher = new Thread(this::flushLoop, "file-appender-" + Paths.get(fileName).getFileName());
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * description: 以系统默认字符集追加字符串
+     * param: [content]
+     * return: void
+     * time: 2018/7/31 9:40
+     */
+    public void append(String content) throws IOException {
+        append(content.getBytes(Charset.defaultCharset()));
+    }
+
+    /**
+     * description: 追加字节，缓冲区满时阻塞等待；按持久化级别决定是否等待写入文件
+     * param: [bytes]
+     * return: void
+     * time: 2018/7/31 9:42
+     */
+    public void append(byte[] bytes) throws IOException {
+        long end;
+        writerLock.lock();
+        try {
+            int offset = 0;
+            while (offset < bytes.length) { // 超过缓冲区大小的内容分段放入
+                lock.lock();
+                try {
+                    int free;
+                    while ((free = ring.length - (int) (written - flushed)) == 0 && failure == null && !closed) {
+                        flushNeeded.signal();
+                        notFull.await();
+                    }
+                    checkState();
+                    int n = Math.min(free, bytes.length - offset);
+                    int pos = (int) (written % ring.length);
+                    int first = Math.min(n, ring.length - pos);
+                    System.arraycopy(bytes, offset, ring, pos, first);
+                    System.arraycopy(bytes, offset + first, ring, 0, n - first);
+                    written += n;
+                    offset += n;
+                    if (written - flushed >= flushThreshold || durability != Durability.MEMORY) {
+                        flushNeeded.signal();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            end = written;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("append to file " + fileName + " interrupted!", e);
+        } finally {
+            writerLock.unlock();
+        }
+        if (durability == Durability.OS) {
+            awaitFlushed(end, false);
+        } else if (durability == Durability.DISK) {
+            awaitFlushed(end, true);
+        }
+    }
+
+    /**
+     * description: 将目前已追加的内容全部写入文件并fsync
+     * param: []
+     * return: void
+     * time: 2018/7/31 9:50
+     */
+    public void sync() throws IOException {
+        long end;
+        lock.lock();
+        try {
+            end = written;
+        } finally {
+            lock.unlock();
+        }
+        awaitFlushed(end, true);
+    }
+
+    private void awaitFlushed(long position, boolean fsync) throws IOException {
+        lock.lock();
+        try {
+            if (fsync && syncRequested < position) {
+                syncRequested = position;
+            }
+            flushNeeded.signal();
+            while ((fsync ? synced : flushed) < position) {
+                if (failure != null) {
+                    throw new IOException("flush file " + fileName + " failed!", failure);
+                }
+                if (!flusher.isAlive()) {
+                    throw new IOException("file appender " + fileName + " is closed!");
+                }
+                flushDone.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("wait for flush file " + fileName + " interrupted!", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkState() throws IOException {
+        if (failure != null) {
+            throw new IOException("flush file " + fileName + " failed!", failure);
+        }
+        if (closed) {
+            throw new IOException("file appender " + fileName + " is closed!");
+        }
+    }
+
+    /**
+     * description: 后台刷新线程：成批将缓冲区内容写入文件，写入时不持有锁，生产者可继续追加
+     * param: []
+     * return: void
+     * time: 2018/7/31 10:05
+     */
+    private void flushLoop() {
+        while (true) {
+            long start;
+            long end;
+            boolean fsync;
+            lock.lock();
+            try {
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (!closed && written - flushed < flushThreshold && syncRequested <= synced
+                        && (durability == Durability.MEMORY || written == flushed)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break; // 到达刷新间隔
+                    }
+                    flushNeeded.awaitNanos(remaining);
+                }
+                start = flushed;
+                end = written;
+                fsync = durability == Durability.DISK || syncRequested > synced || closed;
+                if (closed && start == end && synced == end) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                writeRing(start, end);
+                if (fsync && end > synced) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                logger.error("flush file " + fileName + " exception!", e);
+                lock.lock();
+                try {
+                    failure = e;
+                    notFull.signalAll();
+                    flushDone.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            lock.lock();
+            try {
+                flushed = end;
+                if (fsync) {
+                    synced = end;
+                }
+                notFull.signalAll();
+                flushDone.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void writeRing(long start, long end) throws IOException {
+        while (start < end) {
+            int pos = (int) (start % ring.length);
+            int n = (int) Math.min(end - start, ring.length - pos);
+            ByteBuffer buffer = ByteBuffer.wrap(ring, pos, n);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            start += n;
+        }
+    }
+
+    /**
+     * description: 写出并fsync剩余内容后关闭文件
+     * param: []
+     * return: void
+     * time: 2018/7/31 10:20
+     */
+    @Override
+    public void close() throws IOException {
+        writerLock.lock();
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flushNeeded.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+            writerLock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw new IOException("flush file " + fileName + " failed!", failure);
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.payegis.tools.file;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.apache.commons.compress.compressors.snappy.FramedSnappyCompressorInputStream;
+import org.xerial.snappy.SnappyInputStream;
+import org.xerial.snappy.SnappyOutputStream;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/8
+ * time: 9:30
+ * description: 文件压缩格式，读取时按文件头魔数识别（识别不出再看扩展名），写出时按扩展名或指定格式压缩。
+ * gzip使用JDK实现；snappy使用xerial snappy-java的流格式，读取时兼容snappy framing格式（commons-compress）；
+ * lz4使用lz4-java的lz4 frame格式（lz4命令行工具的格式），commons-compress的纯Java lz4压缩每秒只有几十KB，不使用
+ */
+public enum FileCodec {
+    NONE(""),
+    GZIP(".gz"),
+    SNAPPY(".snappy"),
+    LZ4(".lz4");
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] GZIP_MAGIC = {0x1f, (byte) 0x8b};
+    private static final byte[] SNAPPY_MAGIC = {(byte) 0x82, 'S', 'N', 'A', 'P', 'P', 'Y', 0};
+    private static final byte[] SNAPPY_FRAMED_MAGIC = {(byte) 0xff, 0x06, 0x00, 0x00, 's', 'N', 'a', 'P', 'p', 'Y'};
+    private static final byte[] LZ4_MAGIC = {0x04, 0x22, 0x4d, 0x18};
+    private static final int MAGIC_LENGTH = SNAPPY_FRAMED_MAGIC.length;
+
+    private final String extension;
+
+    FileCodec(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * description: 按扩展名判断压缩格式（.gz、.gzip、.snappy、.sz、.lz4），其他为NONE
+     * param: [fileName]
+     * return: com.payegis.tools.file.FileCodec
+     * time: 2018/8/8 9:40
+     */
+    public static FileCodec fromFileName(String fileName) {
+        String name = fileName.toLowerCase();
+        if (name.endsWith(".gz") || name.endsWith(".gzip")) {
+            return GZIP;
+        } else if (name.endsWith(".snappy") || name.endsWith(".sz")) {
+            return SNAPPY;
+        } else if (name.endsWith(".lz4")) {
+            return LZ4;
+        }
+        return NONE;
+    }
+
+    /**
+     * description: 识别文件的压缩格式：先读文件头魔数，识别不出时按扩展名判断
+     * param: [filePath]
+     * return: com.payegis.tools.file.FileCodec
+     * time: 2018/8/8 9:45
+     */
+    public static FileCodec detect(String filePath) throws IOException {
+        byte[] head = new byte[MAGIC_LENGTH];
+        int n = 0;
+        try (InputStream in = new FileInputStream(filePath)) {
+            int r;
+            while (n < head.length && (r = in.read(head, n, head.length - n)) > 0) {
+                n += r;
+            }
+        }
+        FileCodec codec = fromMagic(Arrays.copyOf(head, n));
+        return codec != NONE ? codec : fromFileName(filePath);
+    }
+
+    private static FileCodec fromMagic(byte[] head) {
+        if (startsWith(head, GZIP_MAGIC)) {
+            return GZIP;
+        } else if (startsWith(head, SNAPPY_MAGIC) || startsWith(head, SNAPPY_FRAMED_MAGIC)) {
+            return SNAPPY;
+        } else if (startsWith(head, LZ4_MAGIC)) {
+            return LZ4;
+        }
+        return NONE;
+    }
+
+    private static boolean startsWith(byte[] head, byte[] magic) {
+        if (head.length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (head[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * description: 包装为流式解压的输入流
+     * param: [in]
+     * return: java.io.InputStream
+     * time: 2018/8/8 9:50
+     */
+    public InputStream decode(InputStream in) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(in, BUFFER_SIZE); // 支持多个gzip成员拼接的文件
+            case SNAPPY:
+                BufferedInputStream bin = new BufferedInputStream(in, BUFFER_SIZE);
+                bin.mark(MAGIC_LENGTH);
+                byte[] head = new byte[MAGIC_LENGTH];
+                int n = 0;
+                int r;
+                while (n < head.length && (r = bin.read(head, n, head.length - n)) > 0) {
+                    n += r;
+                }
+                bin.reset();
+                if (startsWith(Arrays.copyOf(head, n), SNAPPY_FRAMED_MAGIC)) {
+                    return new FramedSnappyCompressorInputStream(bin);
+                }
+                return new SnappyInputStream(bin);
+            case LZ4:
+                return new LZ4FrameInputStream(new BufferedInputStream(in, BUFFER_SIZE)); // 支持多个frame拼接的文件
+            default:
+                return in;
+        }
+    }
+
+    /**
+     * description: 包装为流式压缩的输出流，关闭时写出压缩尾部
+     * param: [out]
+     * return: java.io.OutputStream
+     * time: 2018/8/8 9:55
+     */
+    public OutputStream encode(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE);
+            case SNAPPY:
+                return new SnappyOutputStream(out);
+            case LZ4:
+                return new LZ4FrameOutputStream(out, LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB); // 默认4MB的块缓冲对同时打开的多个文件太大
+            default:
+                return out;
+        }
+    }
+
+}
@@ -1 +1 @@
-package com.payegis.tools.file;import org.apache.log4j.Logger;import java.util.*;/** * company: * user: chenzuoli * date: 2018/6/14 * time: 14:36 * description: 文本文件分隔符识别器 * 1.首先自定义一个分隔符库，比如默认分隔符为,; \t，首先根据这几个分隔符去一一对文件的每一行进行切分，得到每行的列数，可以得出这个文件的列数离散图， * 列数越集中，即标准差越小，并且分出的列数最多，则该分隔符极有可能是该文件的分隔符。 * 2.如果分隔符库中对文件分隔后的情况都不太好，那么可以手动指定分隔符，并添加到分隔符库中。 */public class FileDelimiterRecognizer {    private static Logger logger = Logger.getLogger(FileDelimiterRecognizer.class);    /**     * description: 从数据文件中自动判断分隔符，丰富文件行分隔符库，然后返回最优分隔符     * param: [delimiterDbPath, dataFilePath]     * return: java.lang.String     * time: 2018/6/19 10:53     */    public static String bestDelimiter(String delimiterDbPath, String dataFilePath) {        Map<String, String> delimiter_SD_AvgC = new HashMap<>(); // 分隔符,标准差_字段均数        List<String> delimiterList = FileUtils.readFile(delimiterDbPath);        delimiterList.forEach(delimiter -> {            String SD_Avg = fileStandardDeviation(dataFilePath, delimiter);            delimiter_SD_AvgC.put(delimiter, SD_Avg);            System.out.println("delimiter: " + delimiter + ", standard deviation and average column number: " + SD_Avg);        });        String bestDelimiter = bestDelimiter(delimiter_SD_AvgC);        System.out.println("best delimiter is " + bestDelimiter);        FileDivisionETL.saveDelimiter(delimiterDbPath, bestDelimiter); // 保存分隔符到分隔符库        return bestDelimiter;    }    /**     * description: 从计算的每个分隔符对该文件的标准差和平均字段数中获取标准差最小，平均字段数最大的分隔符     * param: [delimiter_SD_AvgC]     * return: java.lang.String     * date: 2018/6/14     * time: 17:08     */    private static String bestDelimiter(Map<String, String> delimiter_SD_AvgC) {        String bestDelimiter = "";        try {            double maxSD = 0;            double maxAvgC = 0;            Set<String> delimiters = delimiter_SD_AvgC.keySet();            for (String delimiter : delimiters) {                String sd_avgc = delimiter_SD_AvgC.getOrDefault(delimiter, "");                if (sd_avgc == null) continue;                String[] split = sd_avgc.split("_");                if (split.length == 2) {                    double avgColumnNum = Double.parseDouble(split[1]);                    double standardDeviation = Double.parseDouble(split[0]);                    if (maxSD < standardDeviation) {                        maxSD = standardDeviation;                        bestDelimiter = delimiter;                    } else if (maxSD == standardDeviation && maxAvgC < avgColumnNum) {                        bestDelimiter = delimiter;                    } else if (maxSD == standardDeviation && maxAvgC == avgColumnNum) {                        bestDelimiter = delimiter;                    }                }            }        } catch (Exception e){            logger.error("get best delimiter from " + delimiter_SD_AvgC + " exception!", e);        }        return bestDelimiter;    }    /**     * description: 根据指定的分隔符对文件的每行进行切分，得到的列数求标准差、列数均值     * param: [filePath, delimiter]     * return: double     * date: 2018/6/14     * time: 15:25     */    private static String fileStandardDeviation(String filePath, String delimiter) {        double sd = 0.0;        double avg = 0.0;        try {            Set<String> lines = FileUtils.readFileDeDuplByTika(filePath); // tika读取文件，并进行去重            List<Double> columnNum = new ArrayList<>();            double sum = 0;            for (String line : lines) {                String[] splits = line.split(delimiter);                sum += splits.length;                columnNum.add((double) splits.length);            }            sd = standardDeviation(columnNum);            if (lines.size() != 0) {                avg = sum / lines.size();            } else {                avg = 0;            }        } catch (Exception e){            logger.error("get file " + filePath + " standard deviation by delimiter " + delimiter + " exception!", e);        }        return sd + "_" + avg;    }    /**     * description: 计算被指定分隔符分隔后的行的列数平均值     * param: [filePath, delimiter]     * return: double     * date: 2018/6/14     * time: 15:59     */    private static double avgColumnNum(String filePath, String delimiter) {        double sum = 0;        List<String> lines = new ArrayList<>();        try {            lines = FileUtils.readFile(filePath);            for (String line : lines) {                String[] splits = line.split(delimiter);                sum += splits.length;            }        } catch (Exception e){            logger.error("get file " + filePath + " average column num by delimiter " + delimiter + " exception!", e);        }        if (lines.size() != 0) {            return sum / lines.size(); // 求平均值        } else return 0;    }    /**     * description: 方差s^2=[(x1-x)^2 +...(xn-x)^2]/n     * param: [x]     * return: double     * date: 2018/6/14     * time: 15:12     */    private static double variance(List<Double> x) {        int m = x.size();        double sum = 0;        for (double d : x) { // 求和            sum += d;        }        double dAve = sum / m; // 求平均值        double dVar = 0;        for (double d : x) { // 求方差            dVar += (d - dAve) * (d - dAve);        }        return dVar / m;    }    /**     * description: 标准差σ=sqrt(s^2)     * param: [x]     * return: double     * date: 2018/6/14     * time: 15:12     */    private static double standardDeviation(List<Double> x) {        int m = x.size();        double sum = 0;        for (double d : x) { // 求和            sum += d;        }        double dAve = sum / m; // 求平均值        double dVar = 0;        for (double d : x) { // 求方差            dVar += (d - dAve) * (d - dAve);        }        return Math.sqrt(dVar / m);    }}
\ No newline at end of file
+package com.payegis.tools.file;import org.apache.log4j.Logger;import java.nio.charset.Charset;import java.util.ArrayList;import java.util.Collection;import java.util.List;import java.util.Random;import java.util.Set;/** * company: * user: chenzuoli * date: 2018/6/19 * time: 10:20 * description: 文件行分隔符自动识别：从分隔符库中选出使每行列数最稳定的分隔符。 * 只读取有界的样本行（文件头部若干行 + 其余行的蓄水池抽样），一遍扫描同时统计所有候选分隔符的列数均值和标准差， * 头部样本已能明显区分时不再读取文件其余部分。 * 选择规则与旧版本不同：旧版本用tika读取整个文件，选列数标准差最大的分隔符（与"标准差越小越可能"的设计说明相反）； * 现在按置信度(列数均值 - 1) / (1 + 标准差)选最大者，即列数越多、越稳定越优，不能切分的分隔符（均值为1）置信度为0。 * 同一文件新旧版本可能识别出不同的分隔符，依赖旧结果的调用方需要重新核对 */public class FileDelimiterRecognizer {    private static Logger logger = Logger.getLogger(FileDelimiterRecognizer.class);    private static final int HEAD_SAMPLE_SIZE = 1000; // 头部样本行数    private static final int RESERVOIR_SAMPLE_SIZE = 10000; // 蓄水池样本行数    private static final double CLEAR_LEAD_RATIO = 2.0; // 最优候选置信度达到次优的倍数时提前结束    /**     * description: 从数据文件中自动判断分隔符，丰富文件行分隔符库，然后返回最优分隔符，无法识别时返回""     * param: [delimiterDbPath, dataFilePath]     * return: java.lang.String     * time: 2018/6/19 10:25     */    public static String bestDelimiter(String delimiterDbPath, String dataFilePath) {        Set<String> delimiters = FileUtils.readFileDeduplication(delimiterDbPath);        delimiters.remove("");        String bestDelimiter = bestDelimiter(delimiters, dataFilePath);        if (bestDelimiter == null) {            return "";        }        FileDivisionETL.saveDelimiter(delimiterDbPath, bestDelimiter); // 保存分隔符到分隔符库        return bestDelimiter;    }    /**     * description: 从候选分隔符中选出数据文件的最佳行分隔符，不读写分隔符库，无法识别时返回null     * param: [candidates, dataFilePath]     * return: java.lang.String     * time: 2018/7/25 9:40     */    public static String bestDelimiter(Collection<String> candidates, String dataFilePath) {        String[] delimiters = candidates.toArray(new String[0]);        if (delimiters.length == 0) {            logger.error("there is no candidate delimiter to recognize file " + dataFilePath + "!");            return null;        }        LineReader reader = null;        try {            reader = FileUtils.openLineReader(dataFilePath, Charset.defaultCharset());            List<String> head = new ArrayList<>();            String line = reader.readLine();            while (line != null && head.size() < HEAD_SAMPLE_SIZE) {                head.add(line);                line = reader.readLine();            }            double[] scores = scores(delimiters, head);            if (line == null || hasClearLead(scores)) {                return best(delimiters, scores, dataFilePath);            }            // 头部样本无法明显区分，对其余行做蓄水池抽样            List<String> reservoir = new ArrayList<>(RESERVOIR_SAMPLE_SIZE);            Random random = new Random(dataFilePath.hashCode());            long seen = 0;            while (line != null) {                if (reservoir.size() < RESERVOIR_SAMPLE_SIZE) {                    reservoir.add(line);                } else {                    long r = (long) (random.nextDouble() * (seen + 1));                    if (r < RESERVOIR_SAMPLE_SIZE) {                        reservoir.set((int) r, line);                    }                }                seen++;                line = reader.readLine();            }            head.addAll(reservoir);            return best(delimiters, scores(delimiters, head), dataFilePath);        } catch (Exception e) {            logger.error("recognize delimiter of file " + dataFilePath + " exception!", e);        } finally {            try {                if (reader != null) {                    reader.close();                }            } catch (Exception e) {                logger.error("close file " + dataFilePath + " exception!", e);            }        }        return null;    }    /**     * description: 一遍扫描样本行，同时统计每个候选分隔符的列数均值与标准差，返回置信度：     * 列数均值不大于1时为0，否则为(均值 - 1) / (1 + 标准差)     * param: [delimiters, lines]     * return: double[]     * time: 2018/7/25 9:55     */    private static double[] scores(String[] delimiters, List<String> lines) {        int n = delimiters.length;        double[] sum = new double[n];        double[] sumSquare = new double[n];        int[] counts = new int[n];        int[] nextAllowed = new int[n]; // 同一分隔符的匹配不重叠        for (String line : lines) {            for (int d = 0; d < n; d++) {                counts[d] = 0;                nextAllowed[d] = 0;            }            int length = line.length();            for (int i = 0; i < length; i++) {                char c = line.charAt(i);                for (int d = 0; d < n; d++) {                    String delimiter = delimiters[d];                    if (delimiter.charAt(0) == c && i >= nextAllowed[d]                            && (delimiter.length() == 1 || line.startsWith(delimiter, i))) {                        counts[d]++;                        nextAllowed[d] = i + delimiter.length();                    }                }            }            for (int d = 0; d < n; d++) {                double columns = counts[d] + 1;                sum[d] += columns;                sumSquare[d] += columns * columns;            }        }        double[] scores = new double[n];        if (lines.isEmpty()) {            return scores;        }        for (int d = 0; d < n; d++) {            double mean = sum[d] / lines.size();            double deviation = Math.sqrt(Math.max(0, sumSquare[d] / lines.size() - mean * mean));            scores[d] = mean <= 1 ? 0 : (mean - 1) / (1 + deviation);        }        return scores;    }    private static boolean hasClearLead(double[] scores) {        double first = 0;        double second = 0;        for (double score : scores) {            if (score > first) {                second = first;                first = score;            } else if (score > second) {                second = score;            }        }        return first > 0 && first >= second * CLEAR_LEAD_RATIO;    }    private static String best(String[] delimiters, double[] scores, String dataFilePath) {        int best = -1;        for (int d = 0; d < delimiters.length; d++) {            if (scores[d] > 0 && (best < 0 || scores[d] > scores[best])) {                best = d;            }        }        if (best < 0) {            logger.error("can not recognize delimiter of file " + dataFilePath + "!");            return null;        }        logger.info("recognize delimiter " + delimiters[best] + " of file " + dataFilePath + ", confidence " + scores[best]);        return delimiters[best];    }}
\ No newline at end of file
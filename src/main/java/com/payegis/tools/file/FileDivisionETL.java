@@ -1,10 +1,24 @@
 package com.payegis.tools.file;
 
-import com.payegis.tools.util.ColumnValueEtl;
+import com.payegis.tools.sink.DelimitedFileSink;
+import com.payegis.tools.sink.RowSink;
+import com.payegis.tools.util.ColumnEtlPlan;
 import org.apache.log4j.Logger;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * company:
@@ -15,6 +29,8 @@ import java.util.Set;
  */
 public class FileDivisionETL {
     private static Logger logger = Logger.getLogger(FileDivisionETL.class);
+    private static final long MAX_CHUNK_SIZE = 32L * 1024 * 1024; // 并行切分时每个区间的最大字节数
+    private static final long MIN_CHUNK_SIZE = 1024L * 1024;
 
     /**
      * description: 按照指定文件行分隔符切分，并对每个字段进行清洗
@@ -24,9 +40,13 @@ public class FileDivisionETL {
      * time: 13:12
      */
     public static ArrayList<String[]> etl(String filePath, String delimiter, String... etlMethods) {
-        ArrayList<String[]> division = division(filePath, delimiter); // 按照分隔符对文件行进行切分
-        etlColumn(division, etlMethods); // 清洗每个字段
-        return division;
+        ArrayList<String[]> returnCollection = new ArrayList<>();
+        try {
+            etl(filePath, delimiter, true, returnCollection::add, etlMethods); // 切分并清洗，结果收集到集合中
+        } catch (UncheckedIOException e) {
+            logger.error("file " + filePath + " division and etl exception!", e.getCause());
+        }
+        return returnCollection;
     }
 
     /**
@@ -36,12 +56,194 @@ public class FileDivisionETL {
      * time: 2018/6/19 10:41
      */
     public static ArrayList<String[]> etl(String delimiterDbPath, String dataFilePath, String delimiter, String... etlMethods) {
-        ArrayList<String[]> division = division(dataFilePath, delimiter); // 按照分隔符对文件行进行切分
-        etlColumn(division, etlMethods); // 清洗每个字段
+        ArrayList<String[]> division = etl(dataFilePath, delimiter, etlMethods); // 切分并清洗每个字段
         saveDelimiter(delimiterDbPath, delimiter); // 保存分隔符到分隔符库
         return division;
     }
 
+    /**
+     * description: 流式切分并清洗文件，每清洗完一行即交给rowConsumer处理，不去重，内存占用与文件大小无关；
+     * 读取失败时抛出UncheckedIOException，rowConsumer抛出的异常原样抛出
+     * param: [filePath, delimiter, rowConsumer, etlMethods]
+     * return: void
+     * time: 2018/7/19 10:30
+     */
+    public static void etl(String filePath, String delimiter, Consumer<String[]> rowConsumer, String... etlMethods) {
+        etl(filePath, delimiter, false, rowConsumer, etlMethods);
+    }
+
+    /**
+     * description: 流式切分并清洗文件，deduplicate为true时跳过重复行（按128位指纹去重，超出内存预算时溢写磁盘）
+     * param: [filePath, delimiter, deduplicate, rowConsumer, etlMethods]
+     * return: void
+     * time: 2018/7/19 10:35
+     */
+    public static void etl(String filePath, String delimiter, boolean deduplicate, Consumer<String[]> rowConsumer, String... etlMethods) {
+        etl(filePath, DelimiterSplitter.compile(delimiter), deduplicate, rowConsumer, etlMethods);
+    }
+
+    /**
+     * description: 流式切分并清洗文件，使用预先编译的切分器（可开启引号模式）
+     * param: [filePath, splitter, deduplicate, rowConsumer, etlMethods]
+     * return: void
+     * time: 2018/7/24 10:20
+     */
+    public static void etl(String filePath, DelimiterSplitter splitter, boolean deduplicate, Consumer<String[]> rowConsumer, String... etlMethods) {
+        etl(filePath, splitter, deduplicate, rowConsumer, ColumnEtlPlan.compile(etlMethods));
+    }
+
+    /**
+     * description: 流式切分并清洗文件，使用预先编译的切分器和清洗计划，清洗方法只在编译计划时解析一次
+     * param: [filePath, splitter, deduplicate, rowConsumer, plan]
+     * return: void
+     * time: 2018/7/26 10:40
+     */
+    public static void etl(String filePath, DelimiterSplitter splitter, boolean deduplicate, Consumer<String[]> rowConsumer, ColumnEtlPlan plan) {
+        division(filePath, splitter, deduplicate, columns -> {
+            plan.apply(columns); // 清洗每个字段
+            rowConsumer.accept(columns);
+        });
+    }
+
+    /**
+     * description: 流式切分并清洗文件，清洗结果以原分隔符写出到outputPath，按outputPath扩展名决定是否压缩（.gz、.snappy、.lz4）
+     * param: [filePath, delimiter, outputPath, etlMethods]
+     * return: void
+     * time: 2018/8/8 10:40
+     */
+    public static void etlToFile(String filePath, String delimiter, String outputPath, String... etlMethods) {
+        etlToFile(filePath, delimiter, outputPath, FileCodec.fromFileName(outputPath), etlMethods);
+    }
+
+    /**
+     * description: 流式切分并清洗文件，清洗结果以原分隔符、指定压缩格式写出到outputPath，不去重；输入文件可以是压缩文件
+     * param: [filePath, delimiter, outputPath, codec, etlMethods]
+     * return: void
+     * time: 2018/8/8 10:45
+     */
+    public static void etlToFile(String filePath, String delimiter, String outputPath, FileCodec codec, String... etlMethods) {
+        try (DelimitedFileSink sink = new DelimitedFileSink(outputPath, delimiter, codec, Charset.defaultCharset())) {
+            etl(filePath, delimiter, sink, etlMethods);
+            logger.info("etl file " + filePath + " to " + outputPath + " (" + codec + "), " + sink.getWritten() + " rows!");
+        } catch (Exception e) {
+            logger.error("etl file " + filePath + " to " + outputPath + " exception!", e);
+        }
+    }
+
+    /**
+     * description: 流式切分并清洗文件，清洗后的行直接写入sink，不去重；sink写入阻塞时读取随之暂停，写入失败时停止读取并抛出异常。
+     * 结束时flush但不关闭sink
+     * param: [filePath, delimiter, sink, etlMethods]
+     * return: void
+     * time: 2018/8/10 14:10
+     */
+    public static void etl(String filePath, String delimiter, RowSink sink, String... etlMethods) throws IOException {
+        etl(filePath, DelimiterSplitter.compile(delimiter), false, sink, ColumnEtlPlan.compile(etlMethods));
+    }
+
+    /**
+     * description: 流式切分并清洗文件写入sink，使用预先编译的切分器和清洗计划
+     * param: [filePath, splitter, deduplicate, sink, plan]
+     * return: void
+     * time: 2018/8/10 14:15
+     */
+    public static void etl(String filePath, DelimiterSplitter splitter, boolean deduplicate, RowSink sink, ColumnEtlPlan plan) throws IOException {
+        try {
+            etl(filePath, splitter, deduplicate, sink.asConsumer(), plan); // 写入或读取失败时中止读取
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        sink.flush();
+    }
+
+    /**
+     * description: 并行切分并清洗文件，使用与CPU核数相同的线程，结果收集到集合中；失败时抛出异常，同etlParallel。
+     * 注意与etl(filePath, delimiter, etlMethods)不同，此方法不去重，重复行会原样保留（各区间并行读取，去重需在调用线程中另行处理）
+     * param: [filePath, delimiter, keepOrder, etlMethods]
+     * return: java.util.ArrayList<java.lang.String[]>
+     * time: 2018/7/20 10:05
+     */
+    public static ArrayList<String[]> etlParallel(String filePath, String delimiter, boolean keepOrder, String... etlMethods) {
+        ArrayList<String[]> returnCollection = new ArrayList<>();
+        etlParallel(filePath, delimiter, keepOrder, Runtime.getRuntime().availableProcessors(), returnCollection::add, etlMethods);
+        return returnCollection;
+    }
+
+    /**
+     * description: 并行切分并清洗文件：将文件按换行符对齐切分为若干字节区间，在fork-join线程池中切分清洗每个区间，
+     * rowConsumer始终在调用线程中被调用，无需线程安全；keepOrder为true时按原文件行序输出，否则按区间完成先后输出，不去重。
+     * 任一区间读取或清洗失败、或rowConsumer抛出异常时取消其余区间并抛出该异常（读取失败为UncheckedIOException），不会只返回部分结果
+     * param: [filePath, delimiter, keepOrder, parallelism, rowConsumer, etlMethods]
+     * return: void
+     * time: 2018/7/20 10:10
+     */
+    public static void etlParallel(String filePath, String delimiter, boolean keepOrder, int parallelism, Consumer<String[]> rowConsumer, String... etlMethods) {
+        etlParallel(filePath, DelimiterSplitter.compile(delimiter), keepOrder, parallelism, rowConsumer, ColumnEtlPlan.compile(etlMethods));
+    }
+
+    /**
+     * description: 并行切分并清洗文件，每个区间任务使用splitter的副本，清洗计划在各任务间共享
+     * param: [filePath, splitter, keepOrder, parallelism, rowConsumer, plan]
+     * return: void
+     * time: 2018/7/24 10:25
+     */
+    public static void etlParallel(String filePath, DelimiterSplitter splitter, boolean keepOrder, int parallelism, Consumer<String[]> rowConsumer, ColumnEtlPlan plan) {
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, new File(filePath).length() / parallelism));
+        List<long[]> ranges = FileUtils.splitFileRanges(filePath, chunkSize);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ExecutorCompletionService<List<String[]>> completionService = new ExecutorCompletionService<>(pool);
+        ArrayDeque<Future<List<String[]>>> inFlight = new ArrayDeque<>();
+        int maxInFlight = parallelism * 2; // 限制同时在内存中的区间数
+        try {
+            int next = 0;
+            while (next < ranges.size() || !inFlight.isEmpty()) {
+                while (next < ranges.size() && inFlight.size() < maxInFlight) {
+                    long[] range = ranges.get(next++);
+                    Callable<List<String[]>> task = () -> etlRange(filePath, range[0], range[1], splitter.copy(), plan);
+                    inFlight.add(keepOrder ? pool.submit(task) : completionService.submit(task));
+                }
+                Future<List<String[]>> done;
+                if (keepOrder) {
+                    done = inFlight.poll(); // 按提交顺序等待
+                } else {
+                    done = completionService.take(); // 按完成顺序
+                    inFlight.remove(done);
+                }
+                done.get().forEach(rowConsumer);
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("parallel etl file " + filePath + " exception", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("parallel etl file " + filePath + " interrupted", e);
+        } finally {
+            pool.shutdownNow(); // 出错时取消尚未完成的区间
+        }
+    }
+
+    /**
+     * description: 切分并清洗文件中[start, end)区间的行
+     * param: [filePath, start, end, splitter, plan]
+     * return: java.util.List<java.lang.String[]>
+     * time: 2018/7/20 10:12
+     */
+    private static List<String[]> etlRange(String filePath, long start, long end, DelimiterSplitter splitter, ColumnEtlPlan plan) {
+        List<String[]> rows = new ArrayList<>();
+        FileUtils.readFileRange(filePath, start, end, line -> {
+            String[] columns = splitter.split(line);
+            plan.apply(columns);
+            rows.add(columns);
+        });
+        return rows;
+    }
+
     /**
      * description: 按照指定分隔符切分文件行，返回一个集合
      * param: [filePath, delimiter]
@@ -51,19 +253,39 @@ public class FileDivisionETL {
      */
     public static ArrayList<String[]> division(String filePath, String delimiter) {
         ArrayList<String[]> returnCollection = new ArrayList<>();
-        Set<String> lineSet = FileUtils.readFileDeduplication(filePath);
-        lineSet.forEach(line -> {
-            String[] columns;
-            if ("$".equals(delimiter)){
-                columns = line.split("[$]");
-            } else {
-                columns = line.split(delimiter);
-            }
-            returnCollection.add(columns);
-        });
+        try {
+            division(filePath, delimiter, true, returnCollection::add);
+        } catch (UncheckedIOException e) {
+            logger.error("file " + filePath + " division exception!", e.getCause());
+        }
         return returnCollection;
     }
 
+    /**
+     * description: 流式按照指定分隔符切分文件行，每切分一行即交给rowConsumer处理
+     * param: [filePath, delimiter, deduplicate, rowConsumer]
+     * return: void
+     * time: 2018/7/19 10:40
+     */
+    public static void division(String filePath, String delimiter, boolean deduplicate, Consumer<String[]> rowConsumer) {
+        division(filePath, DelimiterSplitter.compile(delimiter), deduplicate, rowConsumer);
+    }
+
+    /**
+     * description: 流式使用预先编译的切分器切分文件行，分隔符按字面量处理，不再走正则
+     * param: [filePath, splitter, deduplicate, rowConsumer]
+     * return: void
+     * time: 2018/7/24 10:30
+     */
+    public static void division(String filePath, DelimiterSplitter splitter, boolean deduplicate, Consumer<String[]> rowConsumer) {
+        Consumer<String> lineConsumer = line -> rowConsumer.accept(splitter.split(line));
+        if (deduplicate) {
+            FileUtils.readFileDeduplication(filePath, Charset.defaultCharset(), lineConsumer); // 指纹去重，超出内存预算时溢写磁盘
+        } else {
+            FileUtils.readFile(filePath, lineConsumer);
+        }
+    }
+
     /**
      * description: 对分隔后的文件的列进行不同方式的清洗
      * param: [divisionResult]
@@ -72,16 +294,18 @@ public class FileDivisionETL {
      * time: 9:47
      */
     public static void etlColumn(ArrayList<String[]> divisionResult, String... etlMethods) {
-        divisionResult.forEach(columns -> {
-            for (int i = 0; i < columns.length; i++) {
-                String columnValue = ColumnValueEtl.etl(columns[i], "default"); // 默认方式清洗
-                columns[i] = columnValue;
-                if (i < etlMethods.length) {
-                    String columnEtlMethod = etlMethods[i];
-                    columns[i] = ColumnValueEtl.etl(columnValue, columnEtlMethod); // 指定方式清洗
-                }
-            }
-        });
+        ColumnEtlPlan plan = ColumnEtlPlan.compile(etlMethods);
+        divisionResult.forEach(plan::apply);
+    }
+
+    /**
+     * description: 对一行切分后的列进行清洗，直接修改columns；计划按方法名缓存（见ColumnEtlPlan.cached），逐行调用时仍建议预先编译ColumnEtlPlan
+     * param: [columns, etlMethods]
+     * return: void
+     * time: 2018/7/19 10:45
+     */
+    public static void etlColumn(String[] columns, String... etlMethods) {
+        ColumnEtlPlan.cached(etlMethods).apply(columns);
     }
 
     /**
@@ -5,7 +5,9 @@ import org.apache.log4j.Logger;
 import org.apache.tika.Tika;
 
 import java.io.*;
+import java.nio.charset.Charset;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * company:
@@ -43,6 +45,40 @@ public class FileUtils {
         return lineSet;
     }
 
+    /**
+     * description: 以指定字符集读取文件到list中，未去重；与readFile(filePath)一致，读取异常时记录日志，返回已读取的行
+     * param: [filePath, charset]
+     * return: java.util.List<java.lang.String>
+     * time: 2018/7/20 15:10
+     */
+    public static List<String> readFile(String filePath, Charset charset) {
+        List<String> lineList = new ArrayList<>();
+        readFile(filePath, charset, lineList);
+        return lineList;
+    }
+
+    /**
+     * description: 以指定字符集读取文件到Set中，并去重；读取异常时记录日志，返回已读取的行
+     * param: [filePath, charset]
+     * return: java.util.Set<java.lang.String>
+     * time: 2018/7/20 15:12
+     */
+    public static Set<String> readFileDeduplication(String filePath, Charset charset) {
+        Set<String> lineSet = new HashSet<>();
+        readFile(filePath, charset, lineSet);
+        return lineSet;
+    }
+
+    /**
+     * description: 流式去重读取文件，按原顺序输出每行第一次出现；基于128位指纹去重，超出内存预算时溢写磁盘（见LineDeduplicator），异常同readFile
+     * param: [filePath, charset, lineConsumer]
+     * return: void
+     * time: 2018/7/23 14:05
+     */
+    public static void readFileDeduplication(String filePath, Charset charset, Consumer<String> lineConsumer) {
+        LineDeduplicator.deduplicate(filePath, charset, lineConsumer);
+    }
+
     /**
     * description: tika读取文件，返回行集合
     * param: [filePath]
@@ -63,20 +99,212 @@ public class FileUtils {
      * time: 9:15
      */
     private static void readFile(String filePath, Collection<String> collection) {
-        FileInputStream fis = null;
-        BufferedReader br = null;
+        readFile(filePath, Charset.defaultCharset(), collection);
+    }
+
+    private static void readFile(String filePath, Charset charset, Collection<String> collection) {
+        try {
+            readFile(filePath, charset, collection::add);
+        } catch (UncheckedIOException e) {
+            logger.error("read file " + filePath + " exception!", e.getCause());
+        }
+    }
+
+    /**
+     * description: 流式读取文件，每读到一行即交给lineConsumer处理，不在内存中保留文件内容，适用于超大文件；
+     * 打开或读取失败时抛出UncheckedIOException，lineConsumer抛出的异常原样抛出，两种情况都会停止读取
+     * param: [filePath, lineConsumer]
+     * return: void
+     * time: 2018/7/19 10:12
+     */
+    public static void readFile(String filePath, Consumer<String> lineConsumer) {
+        readFile(filePath, Charset.defaultCharset(), lineConsumer);
+    }
+
+    /**
+     * description: 以指定字符集流式读取文件，普通文件基于内存映射按行读取，.gz/.snappy/.lz4压缩文件流式解压读取；异常同readFile(filePath, lineConsumer)
+     * param: [filePath, charset, lineConsumer]
+     * return: void
+     * time: 2018/7/20 15:02
+     */
+    public static void readFile(String filePath, Charset charset, Consumer<String> lineConsumer) {
+        readFileRange(filePath, charset, 0, Long.MAX_VALUE, lineConsumer);
+    }
+
+    /**
+     * description: 流式读取文件中[start, end)字节区间内的行，区间边界须位于行首（见splitFileRanges）；
+     * 打开或读取失败时抛出UncheckedIOException，lineConsumer抛出的异常原样抛出
+     * param: [filePath, start, end, lineConsumer]
+     * return: void
+     * time: 2018/7/20 9:35
+     */
+    public static void readFileRange(String filePath, long start, long end, Consumer<String> lineConsumer) {
+        readFileRange(filePath, Charset.defaultCharset(), start, end, lineConsumer);
+    }
+
+    /**
+     * description: 以指定字符集流式读取文件中[start, end)字节区间内的行；压缩文件不可切分，只能从0开始整个读取（end被忽略），
+     * 从其他位置读取压缩文件时抛出IllegalArgumentException。打开或读取失败时抛出UncheckedIOException，lineConsumer抛出的异常原样抛出
+     * param: [filePath, charset, start, end, lineConsumer]
+     * return: void
+     * time: 2018/7/20 15:05
+     */
+    public static void readFileRange(String filePath, Charset charset, long start, long end, Consumer<String> lineConsumer) {
+        LineReader reader = null;
         try {
-            fis = new FileInputStream(filePath);
-            br = new BufferedReader(new InputStreamReader(fis));
-            String line = br.readLine();
+            FileCodec codec = FileCodec.detect(filePath);
+            if (codec == FileCodec.NONE) {
+                reader = new MappedLineReader(filePath, charset, start, end, MappedLineReader.DEFAULT_WINDOW_SIZE);
+            } else if (start == 0) {
+                reader = new StreamLineReader(codec.decode(new FileInputStream(filePath)), charset);
+            } else {
+                throw new IllegalArgumentException("compressed file " + filePath + " (" + codec + ") can not be read from offset " + start);
+            }
+            String line = reader.readLine();
             while (line != null) {
-                collection.add(line);
-                line = br.readLine();
+                lineConsumer.accept(line);
+                line = reader.readLine();
             }
-        } catch (Exception e) {
-            logger.error("read file " + filePath + " exception!", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("read file " + filePath + " range [" + start + ", " + end + ") exception", e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * description: 打开按行读取器，按文件头识别压缩格式，压缩文件流式解压，普通文件使用内存映射
+     * param: [filePath, charset]
+     * return: com.payegis.tools.file.LineReader
+     * time: 2018/8/8 10:10
+     */
+    public static LineReader openLineReader(String filePath, Charset charset) throws IOException {
+        FileCodec codec = FileCodec.detect(filePath);
+        if (codec == FileCodec.NONE) {
+            return new MappedLineReader(filePath, charset);
+        }
+        return new StreamLineReader(codec.decode(new FileInputStream(filePath)), charset);
+    }
+
+    /**
+     * description: 打开文件输入流，压缩文件（按文件头识别）返回解压后的流
+     * param: [filePath]
+     * return: java.io.InputStream
+     * time: 2018/8/8 10:15
+     */
+    public static InputStream openInputStream(String filePath) throws IOException {
+        return FileCodec.detect(filePath).decode(new FileInputStream(filePath));
+    }
+
+    /**
+     * description: 打开文件输出流，按扩展名决定压缩格式（.gz、.snappy、.lz4），其他扩展名不压缩
+     * param: [filePath]
+     * return: java.io.OutputStream
+     * time: 2018/8/8 10:18
+     */
+    public static OutputStream openOutputStream(String filePath) throws IOException {
+        return openOutputStream(filePath, FileCodec.fromFileName(filePath));
+    }
+
+    /**
+     * description: 打开以指定格式压缩的文件输出流，关闭时写出压缩尾部
+     * param: [filePath, codec]
+     * return: java.io.OutputStream
+     * time: 2018/8/8 10:20
+     */
+    public static OutputStream openOutputStream(String filePath, FileCodec codec) throws IOException {
+        return openOutputStream(filePath, codec, false);
+    }
+
+    /**
+     * description: 打开以指定格式压缩的文件输出流，append为true时追加到文件末尾（gzip、lz4追加为新的压缩段，读取时连续解压）
+     * param: [filePath, codec, append]
+     * return: java.io.OutputStream
+     * time: 2018/8/15 9:40
+     */
+    public static OutputStream openOutputStream(String filePath, FileCodec codec, boolean append) throws IOException {
+        FileOutputStream fos = new FileOutputStream(filePath, append);
+        try {
+            return codec.encode(new BufferedOutputStream(fos, 1 << 16));
+        } catch (IOException e) {
+            fos.close();
+            throw e;
+        }
+    }
+
+    /**
+     * description: 将文件按大约chunkSize字节切分为若干区间，每个区间的边界都对齐到换行符之后，返回[start, end)数组列表；压缩文件只返回一个区间。
+     * 读取失败时抛出UncheckedIOException
+     * param: [filePath, chunkSize]
+     * return: java.util.List<long[]>
+     * time: 2018/7/20 9:20
+     */
+    public static List<long[]> splitFileRanges(String filePath, long chunkSize) {
+        List<long[]> ranges = new ArrayList<>();
+        RandomAccessFile raf = null;
+        try {
+            if (FileCodec.detect(filePath) != FileCodec.NONE) { // 压缩文件不可按字节切分，整个作为一个区间
+                ranges.add(new long[]{0, new File(filePath).length()});
+                return ranges;
+            }
+            raf = new RandomAccessFile(filePath, "r");
+            long length = raf.length();
+            byte[] buffer = new byte[8192];
+            long start = 0;
+            while (start < length) {
+                long end = start + chunkSize;
+                if (end >= length) {
+                    end = length;
+                } else {
+                    end = nextLineStart(raf, end - 1, length, buffer); // 向后找到换行符，保证区间不切断行
+                }
+                ranges.add(new long[]{start, end});
+                start = end;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("split file " + filePath + " into ranges exception", e);
         } finally {
-            Utils.closeFileStream(fis, br, null, null);
+            closeQuietly(raf);
+        }
+        return ranges;
+    }
+
+    /**
+     * description: 从position开始（含）找到第一个换行符，返回其后一个字节的位置，没有换行符时返回length；按块读取，不逐字节读
+     */
+    private static long nextLineStart(RandomAccessFile raf, long position, long length, byte[] buffer) throws IOException {
+        raf.seek(position);
+        while (position < length) {
+            int n = raf.read(buffer);
+            if (n < 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (buffer[i] == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return length;
+    }
+
+    /**
+     * 解压流上的按行读取器
+     */
+    private static class StreamLineReader extends BufferedReader implements LineReader {
+        StreamLineReader(InputStream in, Charset charset) {
+            super(new InputStreamReader(in, charset), 1 << 16);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException e) {
+            logger.error("close stream io exception!", e);
         }
     }
 
@@ -0,0 +1,285 @@
+package com.payegis.tools.file;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/23
+ * time: 9:40
+ * description: 128位指纹集合，指纹存放在long数组中（开放寻址），每个指纹可附带一个long值（如行号），
+ * 用于代替HashSet<String>做行去重，每个元素只占16~24字节；从较小的容量开始按需翻倍扩容，直到最大容量。非线程安全
+ */
+class FingerprintSet {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    static final int INITIAL_CAPACITY = 1024;
+
+    private long[] his;
+    private long[] los;
+    private long[] values;
+    private boolean[] used;
+    private int mask;
+    private final int maxCapacity;
+    private final boolean withValues;
+    private int size;
+
+    /**
+     * description: 容量会向上取整为2的幂，初始为initialCapacity，元素个数达到容量的一半时翻倍扩容；
+     * 达到maxCapacity后不再扩容，元素个数达到maxCapacity的一半时isFull返回true
+     * param: [initialCapacity, maxCapacity, withValues]
+     */
+    FingerprintSet(int initialCapacity, int maxCapacity, boolean withValues) {
+        this.maxCapacity = roundUp(maxCapacity);
+        this.withValues = withValues;
+        allocate(Math.min(roundUp(initialCapacity), this.maxCapacity));
+    }
+
+    private static int roundUp(int capacity) {
+        int cap = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        return cap <= 0 ? 1 << 30 : cap;
+    }
+
+    private void allocate(int cap) {
+        his = new long[cap];
+        los = new long[cap];
+        values = withValues ? new long[cap] : null;
+        used = new boolean[cap];
+        mask = cap - 1;
+    }
+
+    /**
+     * description: 根据内存预算计算最大容量，每个槽位占用16（或带值时24）字节加1字节标记；
+     * 最后一次扩容时新旧数组同时存在（1.5倍），按此计算以不超过预算
+     * param: [memoryBudget, withValues]
+     * return: int
+     * time: 2018/7/23 9:52
+     */
+    static int capacityFor(long memoryBudget, boolean withValues) {
+        long slotBytes = withValues ? 25 : 17;
+        long slots = Math.max(16, memoryBudget * 2 / 3 / slotBytes);
+        return (int) Math.min(1 << 30, Long.highestOneBit(slots));
+    }
+
+    /**
+     * description: 添加指纹，已存在时返回false且不覆盖原有的值
+     * param: [hi, lo, value]
+     * return: boolean
+     * time: 2018/7/23 9:55
+     */
+    boolean add(long hi, long lo, long value) {
+        if (size >= used.length >>> 1 && used.length < maxCapacity) {
+            grow();
+        }
+        int i = (int) mix(hi ^ lo) & mask;
+        while (used[i]) {
+            if (his[i] == hi && los[i] == lo) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        his[i] = hi;
+        los[i] = lo;
+        if (values != null) {
+            values[i] = value;
+        }
+        size++;
+        return true;
+    }
+
+    private void grow() {
+        long[] oldHis = his;
+        long[] oldLos = los;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(oldUsed.length << 1);
+        for (int j = 0; j < oldUsed.length; j++) {
+            if (oldUsed[j]) {
+                int i = (int) mix(oldHis[j] ^ oldLos[j]) & mask;
+                while (used[i]) {
+                    i = (i + 1) & mask;
+                }
+                used[i] = true;
+                his[i] = oldHis[j];
+                los[i] = oldLos[j];
+                if (values != null) {
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+
+    boolean isFull() {
+        return size >= maxCapacity >>> 1;
+    }
+
+    int capacity() {
+        return used.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * description: 将集合按(hi, lo)排序后以(hi, lo, value)三元组写出，value为null时写出defaultValue；写出后集合被清空
+     * param: [out, defaultValue]
+     * return: void
+     * time: 2018/7/23 10:05
+     */
+    void writeSortedRun(DataOutputStream out, long defaultValue) throws IOException {
+        int n = 0;
+        for (int i = 0; i < used.length; i++) { // 紧缩到数组前部
+            if (used[i]) {
+                his[n] = his[i];
+                los[n] = los[i];
+                if (values != null) {
+                    values[n] = values[i];
+                }
+                n++;
+            }
+        }
+        sort(0, n - 1);
+        for (int i = 0; i < n; i++) {
+            out.writeLong(his[i]);
+            out.writeLong(los[i]);
+            out.writeLong(values != null ? values[i] : defaultValue);
+        }
+        clear();
+    }
+
+    private void sort(int left, int right) {
+        while (right - left > 16) {
+            int mid = (left + right) >>> 1;
+            long pivotHi = his[mid];
+            long pivotLo = los[mid];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (compare(his[i], los[i], pivotHi, pivotLo) < 0) i++;
+                while (compare(his[j], los[j], pivotHi, pivotLo) > 0) j--;
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (j - left < right - i) { // 先递归较短的一段，控制栈深度
+                sort(left, j);
+                left = i;
+            } else {
+                sort(i, right);
+                right = j;
+            }
+        }
+        for (int i = left + 1; i <= right; i++) { // 小区间插入排序
+            for (int j = i; j > left && compare(his[j - 1], los[j - 1], his[j], los[j]) > 0; j--) {
+                swap(j - 1, j);
+            }
+        }
+    }
+
+    private void swap(int a, int b) {
+        long t = his[a];
+        his[a] = his[b];
+        his[b] = t;
+        t = los[a];
+        los[a] = los[b];
+        los[b] = t;
+        if (values != null) {
+            t = values[a];
+            values[a] = values[b];
+            values[b] = t;
+        }
+    }
+
+    static int compare(long hi1, long lo1, long hi2, long lo2) {
+        int c = Long.compare(hi1, hi2);
+        return c != 0 ? c : Long.compare(lo1, lo2);
+    }
+
+    /**
+     * description: 计算字符串的128位MurmurHash3指纹（按UTF-16编码单元），结果写入out[0]、out[1]
+     * param: [str, out]
+     * return: void
+     * time: 2018/7/23 10:20
+     */
+    static void fingerprint(String str, long[] out) {
+        int length = str.length();
+        long h1 = 0x9368e53c2f6af274L;
+        long h2 = 0x586dcd208f7cd3fdL;
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            long k1 = chars(str, i);
+            long k2 = chars(str, i + 4);
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        long k1 = 0;
+        long k2 = 0;
+        for (int j = 0; i + j < length; j++) { // 尾部不足8个字符
+            long c = str.charAt(i + j);
+            if (j < 4) {
+                k1 |= c << (16 * j);
+            } else {
+                k2 |= c << (16 * (j - 4));
+            }
+        }
+        if (k2 != 0) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+        }
+        if (k1 != 0) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = mix(h1);
+        h2 = mix(h2);
+        h1 += h2;
+        h2 += h1;
+        out[0] = h1;
+        out[1] = h2;
+    }
+
+    private static long chars(String str, int i) {
+        return (long) str.charAt(i) | (long) str.charAt(i + 1) << 16
+                | (long) str.charAt(i + 2) << 32 | (long) str.charAt(i + 3) << 48;
+    }
+
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+}
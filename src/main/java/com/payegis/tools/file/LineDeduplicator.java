@@ -0,0 +1,218 @@
+package com.payegis.tools.file;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/23
+ * time: 10:40
+ * description: 基于128位指纹的文件行去重，按原文件顺序输出每行的第一次出现，结果与HashSet<String>去重一致（不计指纹碰撞）。
+ * 不同行的指纹数在内存预算内时单遍完成；超出预算后，剩余部分改为“指纹+行号”排序溢写到磁盘，多路归并找出每个指纹第一次出现的行号，
+ * 再从切换点重读文件输出这些行，内存只需保存每行1比特的标记。指纹集合从小容量开始按需扩容，小文件不会一次占满预算。
+ * 读取或溢写失败时抛出UncheckedIOException，lineConsumer抛出的异常原样抛出
+ */
+public class LineDeduplicator {
+    private static Logger logger = Logger.getLogger(LineDeduplicator.class);
+    private static final long EMITTED = -1L; // 溢写前已输出过的指纹
+
+    /**
+     * description: 去重读取文件，使用最大堆内存的1/4作为指纹内存预算
+     * param: [filePath, charset, lineConsumer]
+     * return: void
+     * time: 2018/7/23 10:45
+     */
+    public static void deduplicate(String filePath, Charset charset, Consumer<String> lineConsumer) {
+        deduplicate(filePath, charset, Runtime.getRuntime().maxMemory() / 4, defaultTmpDir(), lineConsumer);
+    }
+
+    /**
+     * description: 去重读取文件，指纹占用内存超过memoryBudget字节后溢写到tmpDir下的临时文件
+     * param: [filePath, charset, memoryBudget, tmpDir, lineConsumer]
+     * return: void
+     * time: 2018/7/23 10:50
+     */
+    public static void deduplicate(String filePath, Charset charset, long memoryBudget, File tmpDir, Consumer<String> lineConsumer) {
+        List<File> runs = new ArrayList<>();
+        LineReader reader = null;
+        try {
+            reader = FileUtils.openLineReader(filePath, charset);
+            long resumeLine = 0;
+            long[] fp = new long[2];
+            FingerprintSet seen = new FingerprintSet(FingerprintSet.INITIAL_CAPACITY, FingerprintSet.capacityFor(memoryBudget, false), false);
+            String line = reader.readLine();
+            while (line != null) {
+                resumeLine++;
+                FingerprintSet.fingerprint(line, fp);
+                if (seen.add(fp[0], fp[1], 0)) {
+                    lineConsumer.accept(line);
+                    if (seen.isFull()) {
+                        break;
+                    }
+                }
+                line = reader.readLine();
+            }
+            if (line == null) {
+                return; // 内存预算内完成
+            }
+            long resumeOffset = reader instanceof MappedLineReader ? ((MappedLineReader) reader).position() : -1;
+            logger.info("deduplicate file " + filePath + " exceeds memory budget " + memoryBudget + " bytes, spill to disk from line " + resumeLine);
+            runs.add(spill(seen, EMITTED, tmpDir));
+            seen = null;
+
+            // 第一遍：剩余行的“指纹+行号”分批排序溢写
+            FingerprintSet buffer = new FingerprintSet(FingerprintSet.INITIAL_CAPACITY, FingerprintSet.capacityFor(memoryBudget, true), true);
+            long ordinal = 0;
+            line = reader.readLine();
+            while (line != null) {
+                FingerprintSet.fingerprint(line, fp);
+                buffer.add(fp[0], fp[1], ordinal++); // 同一批内保留最小行号
+                if (buffer.isFull()) {
+                    runs.add(spill(buffer, 0, tmpDir));
+                }
+                line = reader.readLine();
+            }
+            if (buffer.size() > 0) {
+                runs.add(spill(buffer, 0, tmpDir));
+            }
+            buffer = null;
+            reader.close();
+            reader = null;
+
+            // 归并：每个指纹取最小行号，已输出过的跳过
+            long[] keep = mergeRuns(runs, ordinal);
+
+            // 第二遍：从切换点重读，输出被标记的行
+            if (resumeOffset >= 0) {
+                reader = new MappedLineReader(filePath, charset, resumeOffset, Long.MAX_VALUE, MappedLineReader.DEFAULT_WINDOW_SIZE);
+            } else { // 压缩文件无法定位，重新解压并跳过已输出的行
+                reader = FileUtils.openLineReader(filePath, charset);
+                for (long i = 0; i < resumeLine; i++) {
+                    reader.readLine();
+                }
+            }
+            ordinal = 0;
+            line = reader.readLine();
+            while (line != null) {
+                if ((keep[(int) (ordinal >>> 6)] & (1L << ordinal)) != 0) {
+                    lineConsumer.accept(line);
+                }
+                ordinal++;
+                line = reader.readLine();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("deduplicate file " + filePath + " exception", e);
+        } finally {
+            try {
+                if (reader != null) {
+                    reader.close();
+                }
+            } catch (IOException e) {
+                logger.error("close file " + filePath + " exception!", e);
+            }
+            runs.forEach(File::delete);
+        }
+    }
+
+    private static File defaultTmpDir() {
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+
+    private static File spill(FingerprintSet set, long defaultValue, File tmpDir) throws IOException {
+        File run = File.createTempFile("dedup-", ".run", tmpDir);
+        run.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16))) {
+            set.writeSortedRun(out, defaultValue);
+        }
+        return run;
+    }
+
+    /**
+     * description: 多路归并有序的溢写文件，返回需要输出的行号位图
+     * param: [runs, lineCount]
+     * return: long[]
+     * time: 2018/7/23 11:20
+     */
+    private static long[] mergeRuns(List<File> runs, long lineCount) throws IOException {
+        long[] keep = new long[(int) ((lineCount + 63) >>> 6)];
+        PriorityQueue<RunReader> queue = new PriorityQueue<>();
+        try {
+            for (File run : runs) {
+                RunReader runReader = new RunReader(run);
+                if (runReader.next()) {
+                    queue.add(runReader);
+                } else {
+                    runReader.close();
+                }
+            }
+            boolean first = true;
+            long lastHi = 0;
+            long lastLo = 0;
+            while (!queue.isEmpty()) {
+                RunReader head = queue.poll();
+                if (first || head.hi != lastHi || head.lo != lastLo) { // 新指纹，其第一条即最小行号
+                    first = false;
+                    lastHi = head.hi;
+                    lastLo = head.lo;
+                    if (head.value != EMITTED) {
+                        keep[(int) (head.value >>> 6)] |= 1L << head.value;
+                    }
+                }
+                if (head.next()) {
+                    queue.add(head);
+                } else {
+                    head.close();
+                }
+            }
+        } finally {
+            for (RunReader runReader : queue) {
+                runReader.close();
+            }
+        }
+        return keep;
+    }
+
+    /**
+     * 顺序读取一个溢写文件，按(hi, lo, value)排序
+     */
+    private static class RunReader implements Comparable<RunReader>, Closeable {
+        private final DataInputStream in;
+        private long hi;
+        private long lo;
+        private long value;
+
+        RunReader(File run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 1 << 16));
+        }
+
+        boolean next() throws IOException {
+            try {
+                hi = in.readLong();
+                lo = in.readLong();
+                value = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public int compareTo(RunReader o) {
+            int c = FingerprintSet.compare(hi, lo, o.hi, o.lo);
+            return c != 0 ? c : Long.compare(value, o.value);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+}
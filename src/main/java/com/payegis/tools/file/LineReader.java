@@ -0,0 +1,23 @@
+package com.payegis.tools.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/8
+ * time: 9:10
+ * description: 按行读取器，普通文件为MappedLineReader，压缩文件为解压流上的BufferedReader（见FileUtils.openLineReader）
+ */
+public interface LineReader extends Closeable {
+
+    /**
+     * description: 读取下一行，不包含行结束符，读完返回null
+     * param: []
+     * return: java.lang.String
+     * time: 2018/8/8 9:12
+     */
+    String readLine() throws IOException;
+
+}
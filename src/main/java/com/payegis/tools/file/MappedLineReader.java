@@ -0,0 +1,127 @@
+package com.payegis.tools.file;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/20
+ * time: 14:20
+ * description: 基于内存映射的按行读取器，在映射的字节中直接查找换行符，只对返回的行做字符解码；
+ * 按窗口分段映射，支持超过2G的文件；行结束符与BufferedReader.readLine一致（\n、\r、\r\n），非线程安全
+ */
+public class MappedLineReader implements LineReader {
+    public static final long DEFAULT_WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final Charset charset;
+    private final long end;
+    private final long windowSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private boolean skipLF; // 上一行以\r结尾，若下一个字节为\n则跳过
+    private byte[] lineBuf = new byte[256];
+
+    public MappedLineReader(String filePath, Charset charset) throws IOException {
+        this(filePath, charset, 0, Long.MAX_VALUE, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * description: 读取文件[start, end)区间的行，end超过文件长度时读到文件末尾
+     * param: [filePath, charset, start, end, windowSize]
+     */
+    public MappedLineReader(String filePath, Charset charset, long start, long end, long windowSize) throws IOException {
+        this.raf = new RandomAccessFile(filePath, "r");
+        this.channel = raf.getChannel();
+        this.charset = charset;
+        this.end = Math.min(end, channel.size());
+        this.windowSize = Math.min(windowSize, Integer.MAX_VALUE);
+        this.position = start;
+    }
+
+    /**
+     * description: 读取下一行，不包含行结束符，读到区间末尾返回null
+     * param: []
+     * return: java.lang.String
+     * time: 2018/7/20 14:35
+     */
+    @Override
+    public String readLine() throws IOException {
+        if (position() >= end) {
+            return null;
+        }
+        int len = 0;
+        while (position < end) {
+            ensureMapped(position);
+            int i = (int) (position - windowStart);
+            int limit = window.limit();
+            int from = i;
+            byte b = 0;
+            while (i < limit) {
+                b = window.get(i);
+                if (b == '\n' || b == '\r') {
+                    break;
+                }
+                i++;
+            }
+            int n = i - from;
+            if (n > 0) {
+                if (len + n > lineBuf.length) {
+                    lineBuf = Arrays.copyOf(lineBuf, Math.max(lineBuf.length * 2, len + n));
+                }
+                window.position(from);
+                window.get(lineBuf, len, n);
+                len += n;
+                position += n;
+            }
+            if (i < limit) { // 遇到行结束符
+                position++;
+                skipLF = b == '\r';
+                break;
+            }
+        }
+        return new String(lineBuf, 0, len, charset);
+    }
+
+    /**
+     * description: 下一行在文件中的起始字节偏移，可用于之后从该位置重新打开读取
+     * param: []
+     * return: long
+     * time: 2018/7/23 11:02
+     */
+    public long position() throws IOException {
+        if (skipLF) {
+            skipLF = false;
+            if (position < end && byteAt(position) == '\n') {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    private byte byteAt(long pos) throws IOException {
+        ensureMapped(pos);
+        return window.get((int) (pos - windowStart));
+    }
+
+    private void ensureMapped(long pos) throws IOException {
+        if (window == null || pos < windowStart || pos >= windowStart + window.limit()) {
+            windowStart = pos;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(windowSize, end - pos));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        raf.close();
+    }
+
+}
@@ -1,22 +1,28 @@
 package com.payegis.tools.file;
 
+import com.payegis.tools.util.Utils;
 import org.apache.log4j.Logger;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.*;
 import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by Chen on 2018/03/21.
  * 合并两个结构相同的文件
  */
 public class MergeFile {
-    private static final int BUFSIZE = 1024 * 8;
     private static Logger logger = Logger.getLogger(MergeFile.class);
+    private static final int MAX_MERGE_FILES = 256; // 有序归并时单轮最多同时打开的文件数
+    private static final int BUFFER_SIZE = 1 << 16;
 
     /**
      * Description: 合并files到outFile中
@@ -27,31 +33,24 @@ public class MergeFile {
      * Time: 10:53
      */
     private static void mergeFiles(String outFile, ArrayList<String> files) {
-        FileChannel outChannel = null;
         logger.info("Merge " + files + " into " + outFile);
-        try {
-            outChannel = new FileOutputStream(outFile).getChannel();
+        try (FileChannel outChannel = new FileOutputStream(outFile).getChannel()) {
             for (String f : files) {
-                FileChannel fc = new FileInputStream(f).getChannel();
-                ByteBuffer bb = ByteBuffer.allocate(BUFSIZE);
-                while (fc.read(bb) != -1) {
-                    bb.flip();
-                    outChannel.write(bb);
-                    bb.clear();
+                try (FileChannel fc = new FileInputStream(f).getChannel()) {
+                    long position = 0;
+                    long size = fc.size();
+                    while (position < size) { // transferTo可走sendfile零拷贝，单次可能传输不完
+                        long transferred = fc.transferTo(position, size - position, outChannel);
+                        if (transferred <= 0) { // 合并过程中文件被截断
+                            throw new IOException("file " + f + " truncated at " + position + " while merging, expected size " + size);
+                        }
+                        position += transferred;
+                    }
                 }
-                fc.close();
             }
             logger.info("Merged!! ");
         } catch (Exception e) {
             logger.error("merge files " + files + " exception!", e);
-        } finally {
-            try {
-                if (outChannel != null) {
-                    outChannel.close();
-                }
-            } catch (IOException ignore) {
-                ignore.printStackTrace();
-            }
         }
     }
 
@@ -73,15 +72,215 @@ public class MergeFile {
             logger.error("传入的非文件夹路径：" + fileDir);
             return;
         }
-        File[] files = file.listFiles();
+        mergeFiles(fileDir + File.separator + "merged", listPartFiles(file));
+    }
+
+    /**
+     * description: 并发合并多个文件夹，每个文件夹下part开头的文件合并为该文件夹下的merged文件
+     * param: [fileDirs, parallelism]
+     * return: void
+     * time: 2018/7/30 9:40
+     */
+    public static void mergeDirFiles(List<String> fileDirs, int parallelism) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, fileDirs.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String fileDir : fileDirs) {
+                futures.add(executor.submit(() -> mergeDirFiles(fileDir)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            logger.error("merge directories " + fileDirs + " exception!", e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * description: 多路归并文件夹下所有part开头、且已按keyColumn列（从0开始）排好序的文件，单次流式输出全局有序的merged文件
+     * param: [fileDir, delimiter, keyColumn]
+     * return: void
+     * time: 2018/7/30 10:05
+     */
+    public static void mergeSortedDirFiles(String fileDir, String delimiter, int keyColumn) {
+        mergeSortedDirFiles(fileDir, delimiter, keyColumn, Comparator.naturalOrder());
+    }
+
+    /**
+     * description: 按指定的key比较器多路归并文件夹下已排好序的part文件，key相同时按文件名顺序输出
+     * param: [fileDir, delimiter, keyColumn, keyComparator]
+     * return: void
+     * time: 2018/7/30 10:08
+     */
+    public static void mergeSortedDirFiles(String fileDir, String delimiter, int keyColumn, Comparator<String> keyComparator) {
+        mergeSortedDirFiles(fileDir, delimiter, keyColumn, keyComparator, Charset.defaultCharset());
+    }
+
+    /**
+     * description: 以指定字符集读写，按key比较器多路归并文件夹下已排好序的part文件
+     * param: [fileDir, delimiter, keyColumn, keyComparator, charset]
+     * return: void
+     * time: 2018/7/31 14:20
+     */
+    public static void mergeSortedDirFiles(String fileDir, String delimiter, int keyColumn, Comparator<String> keyComparator, Charset charset) {
+        File file = new File(fileDir);
+        if (!file.isDirectory()) {
+            logger.error("传入的非文件夹路径：" + fileDir);
+            return;
+        }
+        mergeSortedFiles(fileDir + File.separator + "merged", listPartFiles(file), delimiter, keyColumn, keyComparator, charset);
+    }
+
+    /**
+     * description: 多路归并已按keyColumn列排好序的files到outFile
+     * param: [outFile, files, delimiter, keyColumn, keyComparator]
+     * return: void
+     * time: 2018/7/30 10:15
+     */
+    public static void mergeSortedFiles(String outFile, List<String> files, String delimiter, int keyColumn, Comparator<String> keyComparator) {
+        mergeSortedFiles(outFile, files, delimiter, keyColumn, keyComparator, Charset.defaultCharset());
+    }
+
+    /**
+     * description: 以指定字符集读写，多路归并已按keyColumn列排好序的files到outFile；文件数超过MAX_MERGE_FILES时，
+     * 先按顺序每MAX_MERGE_FILES个归并为一个临时文件（位于outFile所在目录），分多轮归并，同时打开的文件数有上限。
+     * key相同的行按files中的顺序输出
+     * param: [outFile, files, delimiter, keyColumn, keyComparator, charset]
+     * return: void
+     * time: 2018/7/31 14:25
+     */
+    public static void mergeSortedFiles(String outFile, List<String> files, String delimiter, int keyColumn, Comparator<String> keyComparator, Charset charset) {
+        logger.info("Sorted merge " + files.size() + " files into " + outFile);
+        File tmpDir = new File(outFile).getAbsoluteFile().getParentFile();
+        List<File> tmpFiles = new ArrayList<>();
+        try {
+            List<String> round = files;
+            while (round.size() > MAX_MERGE_FILES) {
+                List<File> previous = new ArrayList<>(tmpFiles);
+                List<String> merged = new ArrayList<>();
+                for (int from = 0; from < round.size(); from += MAX_MERGE_FILES) {
+                    File tmp = File.createTempFile("merge-", ".tmp", tmpDir);
+                    tmpFiles.add(tmp);
+                    mergeSorted(tmp.getPath(), round.subList(from, Math.min(round.size(), from + MAX_MERGE_FILES)), delimiter, keyColumn, keyComparator, charset);
+                    merged.add(tmp.getPath());
+                }
+                deleteFiles(previous); // 上一轮的临时文件已归并完
+                tmpFiles.removeAll(previous);
+                round = merged;
+            }
+            mergeSorted(outFile, round, delimiter, keyColumn, keyComparator, charset);
+            logger.info("Merged!! ");
+        } catch (Exception e) {
+            logger.error("sorted merge files " + files + " exception!", e);
+        } finally {
+            deleteFiles(tmpFiles);
+        }
+    }
+
+    /**
+     * description: 单轮多路归并files到outFile，同时打开全部files
+     * param: [outFile, files, delimiter, keyColumn, keyComparator, charset]
+     * return: void
+     * time: 2018/7/31 14:30
+     */
+    private static void mergeSorted(String outFile, List<String> files, String delimiter, int keyColumn, Comparator<String> keyComparator, Charset charset) throws IOException {
+        Comparator<SortedPart> comparator = (a, b) -> {
+            int c = keyComparator.compare(a.key, b.key);
+            return c != 0 ? c : Integer.compare(a.index, b.index);
+        };
+        PriorityQueue<SortedPart> queue = new PriorityQueue<>(Math.max(1, files.size()), comparator);
+        BufferedWriter bw = null;
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                SortedPart part = new SortedPart(i, files.get(i), delimiter, keyColumn, charset);
+                if (part.next()) {
+                    queue.add(part);
+                } else {
+                    part.close();
+                }
+            }
+            bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile), charset), BUFFER_SIZE);
+            while (!queue.isEmpty()) {
+                SortedPart head = queue.poll();
+                bw.write(head.line);
+                bw.newLine();
+                if (head.next()) {
+                    queue.add(head);
+                } else {
+                    head.close();
+                }
+            }
+            bw.flush();
+        } finally {
+            for (SortedPart part : queue) {
+                part.close();
+            }
+            Utils.closeFileStream(null, null, null, bw);
+        }
+    }
+
+    private static void deleteFiles(List<File> files) {
+        for (File file : files) {
+            if (file.exists() && !file.delete()) {
+                logger.warn("delete temporary file " + file + " failed!");
+            }
+        }
+    }
+
+    /**
+     * description: 按文件名排序列出文件夹下part开头的文件
+     * param: [dir]
+     * return: java.util.ArrayList<java.lang.String>
+     * time: 2018/7/30 9:30
+     */
+    private static ArrayList<String> listPartFiles(File dir) {
+        File[] files = dir.listFiles();
         ArrayList<String> pathList = new ArrayList<>();
+        if (files == null) {
+            return pathList;
+        }
+        Arrays.sort(files);
         for (int i = 0; i < files.length; i++) {
             if (files[i].getName().indexOf("part") == 0) {
                 String path = files[i].getAbsolutePath();
                 pathList.add(path);
             }
         }
-        mergeFiles(fileDir + File.separator + "merged", pathList);
+        return pathList;
+    }
+
+    /**
+     * 归并中的一个有序part文件，保存当前行及其key
+     */
+    private static class SortedPart {
+        private final int index;
+        private final BufferedReader br;
+        private final String delimiter;
+        private final int keyColumn;
+        private String line;
+        private String key;
+
+        SortedPart(int index, String path, String delimiter, int keyColumn, Charset charset) throws IOException {
+            this.index = index;
+            this.br = new BufferedReader(new InputStreamReader(new FileInputStream(path), charset), BUFFER_SIZE);
+            this.delimiter = delimiter;
+            this.keyColumn = keyColumn;
+        }
+
+        boolean next() throws IOException {
+            line = br.readLine();
+            if (line == null) {
+                return false;
+            }
+            key = DelimiterSplitter.field(line, delimiter, keyColumn);
+            return true;
+        }
+
+        void close() {
+            Utils.closeFileStream(null, br, null, null);
+        }
     }
 
 }
@@ -0,0 +1,104 @@
+package com.payegis.tools.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/13
+ * time: 9:20
+ * description: 有界无锁多生产者多消费者队列（基于序号的环形数组），offer/poll不阻塞，队列满/空时返回false/null，
+ * 由调用方决定自旋、让出或休眠。容量取不小于capacity的2的幂
+ */
+public class BoundedQueue<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences; // 槽位序号：等于pos表示可写入，等于pos+1表示可读取
+    private final AtomicLong head = new AtomicLong(); // 下一个读取位置
+    private final AtomicLong tail = new AtomicLong(); // 下一个写入位置
+
+    public BoundedQueue(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("illegal queue capacity: " + capacity);
+        }
+        int size = capacity == 1 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * description: 放入元素，队列满时返回false
+     * param: [e]
+     * return: boolean
+     * time: 2018/8/13 9:30
+     */
+    public boolean offer(E e) {
+        long pos = tail.get();
+        int index;
+        while (true) {
+            index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                return false; // 该槽位上一轮的元素还未被取走
+            } else {
+                pos = tail.get(); // 其他生产者已占用该位置
+            }
+        }
+        buffer.lazySet(index, e);
+        sequences.lazySet(index, pos + 1); // 发布元素
+        return true;
+    }
+
+    /**
+     * description: 取出元素，队列空时返回null
+     * param: []
+     * return: E
+     * time: 2018/8/13 9:35
+     */
+    public E poll() {
+        long pos = head.get();
+        int index;
+        while (true) {
+            index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+        E e = buffer.get(index);
+        buffer.lazySet(index, null);
+        sequences.lazySet(index, pos + mask + 1); // 槽位留给下一轮写入
+        return e;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * description: 当前元素个数，并发修改时为近似值
+     * param: []
+     * return: int
+     * time: 2018/8/13 9:40
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(mask + 1, tail.get() - head.get()));
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.payegis.tools.pipeline;
+
+import com.payegis.tools.file.DelimiterSplitter;
+import com.payegis.tools.file.FileCodec;
+import com.payegis.tools.file.FileUtils;
+import com.payegis.tools.file.LineReader;
+import com.payegis.tools.file.MappedLineReader;
+import com.payegis.tools.sink.ResumableSink;
+import com.payegis.tools.sink.RowSink;
+import com.payegis.tools.util.ColumnEtlPlan;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/15
+ * time: 10:40
+ * description: 可断点续传的流式切分清洗：每处理一定行数或时间，提交输出端并保存检查点（输入偏移、行数、输出提交位置），
+ * 任务中断后重新运行即从最近的检查点继续，完成后删除检查点。
+ * 输出端为ResumableSink时恢复前先回退到检查点的提交位置，不产生重复行；其他输出端恢复后会重写检查点之后已写出的行，
+ * 需输出端自身幂等（如HBaseSink指定rowkey列）。用法：
+ * <pre>
+ * CheckpointedEtl job = new CheckpointedEtl(input, DelimiterSplitter.compile(","), ColumnEtlPlan.compile(methods), input + ".checkpoint");
+ * try (DelimitedFileSink sink = new DelimitedFileSink(output, ",", FileCodec.NONE, charset, job.hasCheckpoint())) {
+ *     job.run(sink);
+ * }
+ * </pre>
+ */
+public class CheckpointedEtl {
+    private static Logger logger = Logger.getLogger(CheckpointedEtl.class);
+    public static final long DEFAULT_CHECKPOINT_LINES = 100000;
+    public static final long DEFAULT_CHECKPOINT_MILLIS = 60000;
+
+    private final String filePath;
+    private final DelimiterSplitter splitter;
+    private final ColumnEtlPlan plan;
+    private final String checkpointPath;
+    private Charset charset = Charset.defaultCharset();
+    private long checkpointLines = DEFAULT_CHECKPOINT_LINES;
+    private long checkpointMillis = DEFAULT_CHECKPOINT_MILLIS;
+
+    public CheckpointedEtl(String filePath, DelimiterSplitter splitter, ColumnEtlPlan plan, String checkpointPath) {
+        this.filePath = filePath;
+        this.splitter = splitter;
+        this.plan = plan;
+        this.checkpointPath = checkpointPath;
+    }
+
+    /**
+     * description: 是否存在未完成的检查点，存在时输出文件应以append方式打开
+     * param: []
+     * return: boolean
+     * time: 2018/8/15 10:50
+     */
+    public boolean hasCheckpoint() {
+        return new File(checkpointPath).exists();
+    }
+
+    /**
+     * description: 从检查点（没有则从头）开始处理文件，返回本次写出的行数；失败时检查点保留在最近一次提交处
+     * param: [sink]
+     * return: long
+     * time: 2018/8/15 10:55
+     */
+    public long run(RowSink sink) throws IOException {
+        EtlCheckpoint checkpoint = EtlCheckpoint.load(checkpointPath);
+        boolean mapped = FileCodec.detect(filePath) == FileCodec.NONE;
+        long offset = 0;
+        long lines = 0;
+        if (checkpoint != null) {
+            if (!new File(checkpoint.getInputPath()).getCanonicalPath().equals(new File(filePath).getCanonicalPath())) {
+                throw new IOException("checkpoint " + checkpointPath + " belongs to file " + checkpoint.getInputPath() + ", not " + filePath + "!");
+            }
+            if (mapped && new File(filePath).length() < checkpoint.getOffset()) {
+                throw new IOException("file " + filePath + " is shorter than checkpoint offset " + checkpoint.getOffset() + ", it may have been replaced!");
+            }
+            offset = mapped ? checkpoint.getOffset() : 0;
+            lines = checkpoint.getLines();
+            if (sink instanceof ResumableSink) {
+                ((ResumableSink) sink).rollback(checkpoint.getSinkPosition()); // 丢弃检查点之后写出的行
+            }
+            logger.info("resume etl of file " + filePath + " from checkpoint: " + checkpoint);
+        }
+
+        DelimiterSplitter lineSplitter = splitter.copy();
+        long written = 0;
+        LineReader reader = mapped
+                ? new MappedLineReader(filePath, charset, offset, Long.MAX_VALUE, MappedLineReader.DEFAULT_WINDOW_SIZE)
+                : FileUtils.openLineReader(filePath, charset);
+        try {
+            long skipped = 0;
+            while (!mapped && skipped < lines && reader.readLine() != null) { // 压缩文件无法定位，跳过已处理的行
+                skipped++;
+            }
+            long sinceCheckpoint = 0;
+            long deadline = System.currentTimeMillis() + checkpointMillis;
+            String line = reader.readLine();
+            while (line != null) {
+                String[] columns = lineSplitter.split(line);
+                plan.apply(columns);
+                sink.write(columns);
+                lines++;
+                written++;
+                if (++sinceCheckpoint >= checkpointLines || (sinceCheckpoint % 1024 == 0 && System.currentTimeMillis() >= deadline)) {
+                    checkpoint(sink, mapped ? ((MappedLineReader) reader).position() : -1, lines);
+                    sinceCheckpoint = 0;
+                    deadline = System.currentTimeMillis() + checkpointMillis;
+                }
+                line = reader.readLine();
+            }
+            sink.flush();
+        } finally {
+            reader.close();
+        }
+        EtlCheckpoint.delete(checkpointPath);
+        logger.info("etl of file " + filePath + " finished, " + written + " rows written in this run, " + lines + " lines in total!");
+        return written;
+    }
+
+    /**
+     * description: 先提交输出端，再保存检查点；两者之间中断时恢复会回退到上一个检查点，不会丢行
+     * param: [sink, offset, lines]
+     * return: void
+     * time: 2018/8/15 11:10
+     */
+    private void checkpoint(RowSink sink, long offset, long lines) throws IOException {
+        long sinkPosition;
+        if (sink instanceof ResumableSink) {
+            sinkPosition = ((ResumableSink) sink).commit();
+        } else {
+            sink.flush();
+            sinkPosition = lines;
+        }
+        new EtlCheckpoint(filePath, offset, lines, sinkPosition).save(checkpointPath);
+    }
+
+    public CheckpointedEtl setCharset(Charset charset) {
+        this.charset = charset;
+        return this;
+    }
+
+    /**
+     * description: 每处理多少行保存一次检查点，默认100000
+     */
+    public CheckpointedEtl setCheckpointLines(long checkpointLines) {
+        this.checkpointLines = Math.max(1, checkpointLines);
+        return this;
+    }
+
+    /**
+     * description: 最长多少毫秒保存一次检查点，默认60000
+     */
+    public CheckpointedEtl setCheckpointMillis(long checkpointMillis) {
+        this.checkpointMillis = Math.max(1, checkpointMillis);
+        return this;
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.payegis.tools.pipeline;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Properties;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/15
+ * time: 10:00
+ * description: ETL检查点：输入文件已处理到的字节偏移（压缩文件为-1）与行数、输出端的提交位置。
+ * 以properties格式保存在本地状态文件中，先写临时文件并fsync，再原子rename覆盖，任何时刻读到的都是完整的检查点
+ */
+public class EtlCheckpoint {
+    private static final String INPUT_PATH = "inputPath";
+    private static final String OFFSET = "offset";
+    private static final String LINES = "lines";
+    private static final String SINK_POSITION = "sinkPosition";
+    private static final String UPDATE_TIME = "updateTime";
+
+    private final String inputPath;
+    private final long offset;
+    private final long lines;
+    private final long sinkPosition;
+    private final long updateTime;
+
+    public EtlCheckpoint(String inputPath, long offset, long lines, long sinkPosition) {
+        this(inputPath, offset, lines, sinkPosition, System.currentTimeMillis());
+    }
+
+    private EtlCheckpoint(String inputPath, long offset, long lines, long sinkPosition, long updateTime) {
+        this.inputPath = inputPath;
+        this.offset = offset;
+        this.lines = lines;
+        this.sinkPosition = sinkPosition;
+        this.updateTime = updateTime;
+    }
+
+    /**
+     * description: 读取检查点，状态文件不存在时返回null
+     * param: [checkpointPath]
+     * return: com.payegis.tools.pipeline.EtlCheckpoint
+     * time: 2018/8/15 10:10
+     */
+    public static EtlCheckpoint load(String checkpointPath) throws IOException {
+        if (!new File(checkpointPath).exists()) {
+            return null;
+        }
+        Properties props = loadProperties(checkpointPath);
+        try {
+            return new EtlCheckpoint(props.getProperty(INPUT_PATH),
+                    Long.parseLong(props.getProperty(OFFSET)),
+                    Long.parseLong(props.getProperty(LINES)),
+                    Long.parseLong(props.getProperty(SINK_POSITION)),
+                    Long.parseLong(props.getProperty(UPDATE_TIME, "0")));
+        } catch (RuntimeException e) {
+            throw new IOException("checkpoint file " + checkpointPath + " is broken!", e);
+        }
+    }
+
+    /**
+     * description: 原子地保存检查点：写临时文件、fsync、rename覆盖
+     * param: [checkpointPath]
+     * return: void
+     * time: 2018/8/15 10:15
+     */
+    public void save(String checkpointPath) throws IOException {
+        Properties props = new Properties();
+        props.setProperty(INPUT_PATH, inputPath);
+        props.setProperty(OFFSET, String.valueOf(offset));
+        props.setProperty(LINES, String.valueOf(lines));
+        props.setProperty(SINK_POSITION, String.valueOf(sinkPosition));
+        props.setProperty(UPDATE_TIME, String.valueOf(updateTime));
+        storeAtomically(props, checkpointPath, "etl checkpoint");
+    }
+
+    /**
+     * description: 原子地保存properties文件，供检查点与TailEtl的偏移文件使用
+     * param: [props, filePath, comment]
+     * return: void
+     * time: 2018/8/17 9:30
+     */
+    static void storeAtomically(Properties props, String filePath, String comment) throws IOException {
+        Path target = Paths.get(filePath).toAbsolutePath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile())) {
+            Writer writer = new OutputStreamWriter(fos, StandardCharsets.UTF_8);
+            props.store(writer, comment);
+            writer.flush();
+            fos.getFD().sync();
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static Properties loadProperties(String filePath) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        return props;
+    }
+
+    /**
+     * description: 删除检查点（任务完成后调用）
+     * param: [checkpointPath]
+     * return: void
+     * time: 2018/8/15 10:20
+     */
+    public static void delete(String checkpointPath) throws IOException {
+        Files.deleteIfExists(Paths.get(checkpointPath));
+    }
+
+    public String getInputPath() {
+        return inputPath;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getSinkPosition() {
+        return sinkPosition;
+    }
+
+    public long getUpdateTime() {
+        return updateTime;
+    }
+
+    @Override
+    public String toString() {
+        return "inputPath=" + inputPath + ", offset=" + offset + ", lines=" + lines + ", sinkPosition=" + sinkPosition;
+    }
+
+}
@@ -0,0 +1,312 @@
+package com.payegis.tools.pipeline;
+
+import com.payegis.tools.file.DelimiterSplitter;
+import com.payegis.tools.file.FileUtils;
+import com.payegis.tools.file.LineReader;
+import com.payegis.tools.sink.RowSink;
+import com.payegis.tools.util.ColumnEtlPlan;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/13
+ * time: 10:00
+ * description: 多阶段并行ETL流水线：读取 -> 切分 -> 列清洗 -> 写出，阶段之间以有界无锁队列（BoundedQueue）按批传递，
+ * 每个阶段有各自的线程数，读写I/O与清洗计算重叠进行，总吞吐接近最慢的阶段。队列满时上游等待（背压）。
+ * 写出阶段每个线程使用一个sink，线程数等于sink个数；切分、清洗或写出线程数大于1时不保证行序
+ */
+public class EtlPipeline {
+    private static Logger logger = Logger.getLogger(EtlPipeline.class);
+    public static final int DEFAULT_BATCH_SIZE = 512;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    private static final List<?> END = new ArrayList<>(0); // 流结束标记，每个下游线程收到一个
+
+    private final String filePath;
+    private final DelimiterSplitter splitter;
+    private final ColumnEtlPlan plan;
+    private final List<RowSink> sinks;
+    private Charset charset = Charset.defaultCharset();
+    private int splitParallelism = 1;
+    private int etlParallelism = Runtime.getRuntime().availableProcessors();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private volatile Throwable failure;
+
+    public EtlPipeline(String filePath, DelimiterSplitter splitter, ColumnEtlPlan plan, RowSink... sinks) {
+        if (sinks.length == 0) {
+            throw new IllegalArgumentException("etl pipeline needs at least one sink!");
+        }
+        this.filePath = filePath;
+        this.splitter = splitter;
+        this.plan = plan;
+        this.sinks = Arrays.asList(sinks);
+    }
+
+    /**
+     * description: 运行流水线直到文件读完、全部行写出并flush各sink（不关闭sink），返回写出的行数；任一阶段失败时其余阶段停止并抛出异常
+     * param: []
+     * return: long
+     * time: 2018/8/13 10:20
+     */
+    public long run() throws IOException {
+        failure = null;
+        BoundedQueue<List<String>> lines = new BoundedQueue<>(queueCapacity);
+        BoundedQueue<List<String[]>> splitRows = new BoundedQueue<>(queueCapacity);
+        BoundedQueue<List<String[]>> cleanRows = new BoundedQueue<>(queueCapacity);
+        Stage reader = new Stage("read", 1);
+        Stage split = new Stage("split", splitParallelism);
+        Stage etl = new Stage("etl", etlParallelism);
+        Stage sink = new Stage("sink", sinks.size());
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(reader.thread(0, () -> read(reader, lines, split.parallelism)));
+        for (int i = 0; i < split.parallelism; i++) {
+            DelimiterSplitter copy = splitter.copy();
+            threads.add(split.thread(i, () -> transform(split, lines, splitRows, etl.parallelism, batch -> {
+                List<String[]> rows = new ArrayList<>(batch.size());
+                for (String line : batch) {
+                    rows.add(copy.split(line));
+                }
+                return rows;
+            })));
+        }
+        for (int i = 0; i < etl.parallelism; i++) {
+            threads.add(etl.thread(i, () -> transform(etl, splitRows, cleanRows, sink.parallelism, batch -> {
+                for (String[] columns : batch) {
+                    plan.apply(columns);
+                }
+                return batch;
+            })));
+        }
+        for (int i = 0; i < sink.parallelism; i++) {
+            RowSink rowSink = sinks.get(i);
+            threads.add(sink.thread(i, () -> write(sink, cleanRows, rowSink)));
+        }
+
+        long startTime = System.nanoTime();
+        threads.forEach(Thread::start);
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            fail(e);
+            threads.forEach(Thread::interrupt);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("etl pipeline of file " + filePath + " interrupted!");
+        }
+        if (failure != null) {
+            throw failure instanceof IOException ? (IOException) failure
+                    : new IOException("etl pipeline of file " + filePath + " failed!", failure);
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        logger.info("etl pipeline of file " + filePath + " finished in " + millis + " ms: " + reader + "; " + split + "; " + etl + "; " + sink);
+        return sink.rows.get();
+    }
+
+    private void read(Stage stage, BoundedQueue<List<String>> out, int consumers) throws IOException {
+        try (LineReader reader = FileUtils.openLineReader(filePath, charset)) {
+            long start = System.nanoTime();
+            List<String> batch = new ArrayList<>(batchSize);
+            String line = reader.readLine();
+            while (line != null) {
+                batch.add(line);
+                if (batch.size() == batchSize) {
+                    stage.record(batch.size(), start);
+                    put(out, batch);
+                    batch = new ArrayList<>(batchSize);
+                    start = System.nanoTime();
+                }
+                line = reader.readLine();
+            }
+            if (!batch.isEmpty()) {
+                stage.record(batch.size(), start);
+                put(out, batch);
+            }
+        }
+        stage.finish(out, consumers);
+    }
+
+    private <I, O> void transform(Stage stage, BoundedQueue<List<I>> in, BoundedQueue<List<O>> out, int consumers, BatchFunction<I, O> function) throws Exception {
+        List<I> batch = take(in);
+        while (batch != END) {
+            long start = System.nanoTime();
+            List<O> result = function.apply(batch);
+            stage.record(result.size(), start);
+            put(out, result);
+            batch = take(in);
+        }
+        stage.finish(out, consumers);
+    }
+
+    private void write(Stage stage, BoundedQueue<List<String[]>> in, RowSink sink) throws IOException {
+        List<String[]> batch = take(in);
+        while (batch != END) {
+            long start = System.nanoTime();
+            for (String[] row : batch) {
+                sink.write(row);
+            }
+            stage.record(batch.size(), start);
+            batch = take(in);
+        }
+        sink.flush();
+    }
+
+    private <E> void put(BoundedQueue<E> queue, E e) {
+        int idle = 0;
+        while (!queue.offer(e)) {
+            idle = idle(idle);
+        }
+    }
+
+    private <E> E take(BoundedQueue<E> queue) {
+        int idle = 0;
+        E e;
+        while ((e = queue.poll()) == null) {
+            idle = idle(idle);
+        }
+        return e;
+    }
+
+    /**
+     * description: 队列满/空时的等待策略：先自旋，再让出CPU，最后短暂休眠；其他阶段失败时退出
+     * param: [idle]
+     * return: int
+     * time: 2018/8/13 10:50
+     */
+    private int idle(int idle) {
+        if (failure != null) {
+            throw new CancellationException();
+        }
+        if (idle > 200) {
+            LockSupport.parkNanos(50_000);
+            if (Thread.interrupted()) {
+                throw new CancellationException();
+            }
+        } else if (idle > 100) {
+            Thread.yield();
+        }
+        return idle + 1;
+    }
+
+    private void fail(Throwable t) {
+        if (failure == null) {
+            failure = t;
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchFunction<I, O> {
+        List<O> apply(List<I> batch) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface StageTask {
+        void run() throws Exception;
+    }
+
+    /**
+     * 一个阶段：线程数、处理行数与处理耗时（不含等待队列的时间）
+     */
+    private class Stage {
+        private final String name;
+        private final int parallelism;
+        private final AtomicInteger running;
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+
+        Stage(String name, int parallelism) {
+            this.name = name;
+            this.parallelism = parallelism;
+            this.running = new AtomicInteger(parallelism);
+        }
+
+        Thread thread(int index, StageTask task) {
+            Thread thread = new Thread(() -> {
+                try {
+                    task.run();
+                } catch (CancellationException e) {
+                    // 其他阶段已失败
+                } catch (Throwable t) {
+                    logger.error("etl pipeline stage " + name + " of file " + filePath + " exception!", t);
+                    fail(t);
+                }
+            }, "etl-pipeline-" + name + "-" + index);
+            thread.setDaemon(true);
+            return thread;
+        }
+
+        void record(int count, long startNanos) {
+            rows.addAndGet(count);
+            busyNanos.addAndGet(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * description: 本阶段最后一个结束的线程向下游每个线程发送结束标记
+         */
+        @SuppressWarnings("unchecked")
+        <E> void finish(BoundedQueue<List<E>> out, int consumers) {
+            if (running.decrementAndGet() == 0) {
+                for (int i = 0; i < consumers; i++) {
+                    put(out, (List<E>) END);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + " x" + parallelism + " " + rows.get() + " rows busy " + TimeUnit.NANOSECONDS.toMillis(busyNanos.get() / parallelism) + " ms";
+        }
+    }
+
+    public EtlPipeline setCharset(Charset charset) {
+        this.charset = charset;
+        return this;
+    }
+
+    /**
+     * description: 切分阶段线程数，默认1
+     */
+    public EtlPipeline setSplitParallelism(int splitParallelism) {
+        this.splitParallelism = Math.max(1, splitParallelism);
+        return this;
+    }
+
+    /**
+     * description: 清洗阶段线程数，默认CPU核数
+     */
+    public EtlPipeline setEtlParallelism(int etlParallelism) {
+        this.etlParallelism = Math.max(1, etlParallelism);
+        return this;
+    }
+
+    /**
+     * description: 阶段之间每批传递的行数，默认512
+     */
+    public EtlPipeline setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    /**
+     * description: 阶段之间队列可容纳的批数，默认64
+     */
+    public EtlPipeline setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        return this;
+    }
+
+}
@@ -0,0 +1,396 @@
+package com.payegis.tools.pipeline;
+
+import com.payegis.tools.file.DelimiterSplitter;
+import com.payegis.tools.file.FileCodec;
+import com.payegis.tools.file.FileUtils;
+import com.payegis.tools.sink.RowSink;
+import com.payegis.tools.util.ColumnEtlPlan;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/17
+ * time: 10:00
+ * description: 增量（tail）模式的切分清洗：监听落地目录，只处理新文件和文件新追加的完整行（以\n结尾），
+ * 每个文件已处理到的字节偏移保存在偏移文件中，重启后从上次位置继续。文件变短时视为被替换，从头处理。
+ * 压缩文件无法增量读取，出现时整个处理一次，应在写完后再移入目录。
+ * 每处理完一个文件的增量先flush输出端再保存偏移，中断时至多重复处理最后一个增量（至少一次）。
+ * watch时单个文件处理失败只记录日志，偏移不变，按退避间隔（从pollMillis起每次加倍，最长MAX_BACKOFF_MILLIS）重试，
+ * 连续失败超过maxRetries次后不再重试，直到文件长度变化或重启；已删除文件的偏移在保存时清除。
+ * 增量通过FileChannel按区间读取，不做内存映射，文件在读取期间被截断时只会得到IOException
+ */
+public class TailEtl {
+    private static Logger logger = Logger.getLogger(TailEtl.class);
+    public static final long DEFAULT_POLL_MILLIS = 1000;
+    public static final int DEFAULT_MAX_RETRIES = 10;
+    public static final long MAX_BACKOFF_MILLIS = 60000;
+    private static final int SCAN_BLOCK = 8192;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path dir;
+    private final DelimiterSplitter splitter;
+    private final ColumnEtlPlan plan;
+    private final RowSink sink;
+    private final String offsetPath;
+    private final TreeMap<String, Long> offsets = new TreeMap<>();
+    private final Map<String, Failure> failures = new HashMap<>();
+    private Charset charset = Charset.defaultCharset();
+    private PathMatcher matcher;
+    private long pollMillis = DEFAULT_POLL_MILLIS;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private volatile boolean stopped;
+    private volatile WatchService watcher;
+
+    public TailEtl(String dir, DelimiterSplitter splitter, ColumnEtlPlan plan, RowSink sink, String offsetPath) throws IOException {
+        this.dir = Paths.get(dir).toAbsolutePath();
+        this.splitter = splitter.copy();
+        this.plan = plan;
+        this.sink = sink;
+        this.offsetPath = offsetPath;
+        if (new File(offsetPath).exists()) {
+            Properties props = EtlCheckpoint.loadProperties(offsetPath);
+            for (String name : props.stringPropertyNames()) {
+                offsets.put(name, Long.parseLong(props.getProperty(name)));
+            }
+        }
+    }
+
+    /**
+     * description: 扫描一遍目录，处理所有文件的增量，返回处理的行数
+     * param: []
+     * return: long
+     * time: 2018/8/17 10:20
+     */
+    public long poll() throws IOException {
+        return scan(false);
+    }
+
+    /**
+     * description: 扫描一遍目录，tolerant为true时单个文件处理失败只记录日志，继续处理其他文件
+     * param: [tolerant]
+     * return: long
+     * time: 2018/8/17 10:22
+     */
+    private long scan(boolean tolerant) throws IOException {
+        long lines = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                lines += tolerant ? tryProcess(file) : process(file);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * description: 先处理已有增量，再监听目录的新建与修改事件持续处理，直到stop被调用或线程被中断；
+     * 每隔pollMillis没有事件时重新扫描一遍，防止遗漏事件
+     * param: []
+     * return: void
+     * time: 2018/8/17 10:25
+     */
+    public void watch() throws IOException {
+        try (WatchService service = dir.getFileSystem().newWatchService()) {
+            watcher = service;
+            dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            scan(true); // 注册之后再扫描，避免漏掉两者之间的变化
+            while (!stopped) {
+                WatchKey key;
+                try {
+                    key = service.poll(pollMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ClosedWatchServiceException e) {
+                    break;
+                }
+                if (key == null) {
+                    scan(true);
+                    continue;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        scan(true);
+                    } else {
+                        tryProcess(dir.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    if (!stopped) {
+                        logger.error("landing directory " + dir + " is no longer accessible!");
+                    }
+                    break;
+                }
+            }
+        } finally {
+            watcher = null;
+        }
+    }
+
+    /**
+     * description: 停止watch，可在其他线程调用
+     * param: []
+     * return: void
+     * time: 2018/8/17 10:30
+     */
+    public void stop() {
+        stopped = true;
+        WatchService service = watcher;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                logger.error("close watch service of " + dir + " exception!", e);
+            }
+        }
+    }
+
+    /**
+     * description: 处理单个文件自上次偏移以来的完整行，返回处理的行数
+     * param: [file]
+     * return: long
+     * time: 2018/8/17 10:40
+     */
+    private long process(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        if (!Files.isRegularFile(file) || name.startsWith(".") || name.endsWith(".tmp")
+                || file.equals(Paths.get(offsetPath).toAbsolutePath()) || (matcher != null && !matcher.matches(file.getFileName()))) {
+            return 0;
+        }
+        long length = Files.size(file);
+        Long stored = offsets.get(name);
+        long offset = stored == null ? 0 : stored;
+        if (FileCodec.detect(file.toString()) != FileCodec.NONE) {
+            if (stored != null) {
+                if (stored != length) {
+                    logger.warn("compressed file " + file + " changed after it was processed, ignored!");
+                }
+                return 0;
+            }
+            return processRange(file, name, 0, length, true);
+        }
+        if (length < offset) {
+            logger.warn("file " + file + " shrank from " + offset + " to " + length + " bytes, process it from the beginning!");
+            offset = 0;
+        }
+        long end = lastLineEnd(file, offset, length);
+        if (end <= offset) {
+            return 0;
+        }
+        return processRange(file, name, offset, end, false);
+    }
+
+    /**
+     * description: 处理单个文件，失败时记录日志并返回0，偏移不变，退避间隔过后的扫描中重试，连续失败超过maxRetries次后不再重试
+     * param: [file]
+     * return: long
+     * time: 2018/8/17 10:45
+     */
+    private long tryProcess(Path file) {
+        String name = file.getFileName().toString();
+        Failure failure = failures.get(name);
+        if (failure != null && !failure.retryable(file)) {
+            return 0;
+        }
+        try {
+            long lines = process(file);
+            failures.remove(name);
+            return lines;
+        } catch (IOException | UncheckedIOException e) {
+            if (failure == null || failure.length != length(file)) {
+                failure = new Failure();
+                failures.put(name, failure);
+            }
+            failure.failed(file);
+            if (failure.count > maxRetries) {
+                logger.error("tail file " + file + " failed " + failure.count + " times, skip it until it changes!", e);
+            } else {
+                logger.error("tail file " + file + " exception, retry in " + failure.backoff + " ms!", e);
+            }
+            return 0;
+        }
+    }
+
+    private long processRange(Path file, String name, long start, long end, boolean compressed) throws IOException {
+        long lines = 0;
+        try (FileChannel channel = compressed ? null : FileChannel.open(file, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(compressed ? FileUtils.openInputStream(file.toString())
+                     : new RangeInputStream(Channels.newInputStream(channel.position(start)), end - start), charset), BUFFER_SIZE)) {
+            String line = reader.readLine();
+            while (line != null) {
+                String[] columns = splitter.split(line);
+                plan.apply(columns);
+                sink.write(columns);
+                lines++;
+                line = reader.readLine();
+            }
+        }
+        sink.flush();
+        offsets.put(name, end);
+        saveOffsets();
+        logger.info("tail file " + file + " [" + start + ", " + end + "), " + lines + " lines!");
+        return lines;
+    }
+
+    /**
+     * description: 从文件末尾向前查找[offset, length)内最后一个\n，返回其后的位置，未写完的最后一行留到下次处理
+     * param: [file, offset, length]
+     * return: long
+     * time: 2018/8/17 10:50
+     */
+    private static long lastLineEnd(Path file, long offset, long length) throws IOException {
+        byte[] block = new byte[SCAN_BLOCK];
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            long blockEnd = length;
+            while (blockEnd > offset) {
+                long blockStart = Math.max(offset, blockEnd - SCAN_BLOCK);
+                int n = (int) (blockEnd - blockStart);
+                raf.seek(blockStart);
+                raf.readFully(block, 0, n);
+                for (int i = n - 1; i >= 0; i--) {
+                    if (block[i] == '\n') {
+                        return blockStart + i + 1;
+                    }
+                }
+                blockEnd = blockStart;
+            }
+        }
+        return offset;
+    }
+
+    private static long length(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private void saveOffsets() throws IOException {
+        offsets.keySet().removeIf(name -> !Files.exists(dir.resolve(name))); // 已删除的文件不再保留偏移
+        failures.keySet().removeIf(name -> !Files.exists(dir.resolve(name)));
+        Properties props = new Properties();
+        offsets.forEach((name, offset) -> props.setProperty(name, String.valueOf(offset)));
+        EtlCheckpoint.storeAtomically(props, offsetPath, "tail offsets of " + dir);
+    }
+
+    public TailEtl setCharset(Charset charset) {
+        this.charset = charset;
+        return this;
+    }
+
+    /**
+     * description: 只处理文件名匹配glob的文件，如"*.log"
+     */
+    public TailEtl setGlob(String glob) {
+        this.matcher = dir.getFileSystem().getPathMatcher("glob:" + glob);
+        return this;
+    }
+
+    /**
+     * description: 没有事件时重新扫描目录的间隔，默认1000毫秒
+     */
+    public TailEtl setPollMillis(long pollMillis) {
+        this.pollMillis = Math.max(1, pollMillis);
+        return this;
+    }
+
+    /**
+     * description: watch时单个文件连续失败的最大重试次数，默认10次，超过后直到文件长度变化才再次处理
+     */
+    public TailEtl setMaxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+        return this;
+    }
+
+    /**
+     * 文件连续失败的次数、失败时的长度和下次允许重试的时间
+     */
+    private class Failure {
+        private int count;
+        private long length;
+        private long backoff;
+        private long retryAt;
+
+        void failed(Path file) {
+            count++;
+            length = length(file);
+            backoff = Math.min(MAX_BACKOFF_MILLIS, pollMillis << Math.min(count, 20));
+            retryAt = System.currentTimeMillis() + backoff;
+        }
+
+        boolean retryable(Path file) {
+            if (length != length(file)) {
+                return true; // 文件有变化，重新计数
+            }
+            return count <= maxRetries && System.currentTimeMillis() >= retryAt;
+        }
+    }
+
+    /**
+     * 只读取底层流前limit个字节
+     */
+    private static class RangeInputStream extends FilterInputStream {
+        private long remaining;
+
+        RangeInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+
+}
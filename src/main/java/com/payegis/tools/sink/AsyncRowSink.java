@@ -0,0 +1,163 @@
+package com.payegis.tools.sink;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/10
+ * time: 10:10
+ * description: 异步输出端：行先放入有界队列，由后台线程写入被包装的输出端，读取清洗与写出可以重叠进行；
+ * 下游写入跟不上时队列写满，write阻塞，读取端随之放慢（背压）。write可以被多个线程同时调用，
+ * 后台写入的异常在下一次write、flush或close时抛出
+ */
+public class AsyncRowSink implements RowSink {
+    private static Logger logger = Logger.getLogger(AsyncRowSink.class);
+    public static final int DEFAULT_CAPACITY = 10000;
+    private static final String[] CLOSE = new String[0];
+
+    private final RowSink delegate;
+    private final BlockingQueue<Object> queue;
+    private final Thread writer;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    public AsyncRowSink(RowSink delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    public AsyncRowSink(RowSink delegate, int capacity) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::writeLoop, "async-sink-" + delegate.getClass().getSimpleName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void write(String[] row) throws IOException {
+        checkState();
+        put(row);
+    }
+
+    /**
+     * description: 等待此前放入队列的行全部写入并flush下游
+     * param: []
+     * return: void
+     * time: 2018/8/10 10:20
+     */
+    @Override
+    public void flush() throws IOException {
+        checkState();
+        CountDownLatch done = new CountDownLatch(1);
+        put(done);
+        await(done);
+        checkState();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (writer.isAlive()) {
+            put(CLOSE);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("close async sink interrupted!");
+            }
+        }
+        if (failure != null) {
+            throw new IOException("async sink write failed!", failure);
+        }
+    }
+
+    private void put(Object item) throws IOException {
+        try {
+            while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                if (failure != null || !writer.isAlive()) { // 后台线程已退出，不再等待
+                    checkState();
+                    throw new IOException("async sink writer is not running!");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("put row to async sink interrupted!");
+        }
+    }
+
+    private void await(CountDownLatch done) throws IOException {
+        try {
+            while (!done.await(100, TimeUnit.MILLISECONDS)) {
+                if (!writer.isAlive()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("flush async sink interrupted!");
+        }
+    }
+
+    private void checkState() throws IOException {
+        if (failure != null) {
+            throw new IOException("async sink write failed!", failure);
+        }
+        if (closed) {
+            throw new IOException("async sink is closed!");
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                Object item = queue.take();
+                if (item == CLOSE) {
+                    break;
+                } else if (item instanceof CountDownLatch) {
+                    delegate.flush();
+                    ((CountDownLatch) item).countDown();
+                } else {
+                    delegate.write((String[]) item);
+                }
+            }
+            delegate.close();
+        } catch (IOException e) {
+            logger.error("async sink write exception!", e);
+            failure = e;
+            closeDelegate();
+        } catch (InterruptedException e) {
+            closeDelegate();
+        } catch (RuntimeException e) {
+            logger.error("async sink write exception!", e);
+            failure = new IOException(e);
+            closeDelegate();
+        } finally {
+            Object item;
+            while ((item = queue.poll()) != null) { // 唤醒等待flush的线程
+                if (item instanceof CountDownLatch) {
+                    ((CountDownLatch) item).countDown();
+                }
+            }
+        }
+    }
+
+    private void closeDelegate() {
+        try {
+            delegate.close();
+        } catch (IOException e) {
+            logger.error("close sink exception!", e);
+        }
+    }
+
+}
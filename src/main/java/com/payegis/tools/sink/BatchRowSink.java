@@ -0,0 +1,102 @@
+package com.payegis.tools.sink;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/10
+ * time: 9:35
+ * description: 成批写出的输出端，攒够batchSize行调用一次writeBatch，适用于HBase、JDBC、Mongo等单次请求开销大的下游
+ */
+public abstract class BatchRowSink implements RowSink {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final int batchSize;
+    private List<String[]> batch;
+    private long written;
+    private boolean closed;
+
+    protected BatchRowSink(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        this.batch = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * description: 写出一批行，失败时抛出IOException，该批不会被重试
+     * param: [rows]
+     * return: void
+     * time: 2018/8/10 9:40
+     */
+    protected abstract void writeBatch(List<String[]> rows) throws IOException;
+
+    /**
+     * description: 释放下游资源，close时在写出最后一批之后调用
+     * param: []
+     * return: void
+     * time: 2018/8/10 9:42
+     */
+    protected void release() throws IOException {
+    }
+
+    @Override
+    public void write(String[] row) throws IOException {
+        if (closed) {
+            throw new IOException(getClass().getSimpleName() + " is closed!");
+        }
+        batch.add(row);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<String[]> rows = batch;
+        batch = new ArrayList<>(batchSize); // writeBatch的实现可以持有rows
+        writeBatch(rows);
+        written += rows.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            release();
+        }
+    }
+
+    /**
+     * description: 已成功写出的行数
+     * param: []
+     * return: long
+     * time: 2018/8/10 9:48
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * description: 取第index列的列名，列名不足时为"column" + index
+     * param: [columnNames, index]
+     * return: java.lang.String
+     * time: 2018/8/10 9:50
+     */
+    static String columnName(String[] columnNames, int index) {
+        return index < columnNames.length ? columnNames[index] : "column" + index;
+    }
+
+}
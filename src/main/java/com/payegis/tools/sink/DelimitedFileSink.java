@@ -0,0 +1,115 @@
+package com.payegis.tools.sink;
+
+import com.payegis.tools.file.FileCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/10
+ * time: 10:40
+ * description: 分隔符文本文件输出端，每行各列以delimiter连接；按文件扩展名决定是否压缩（见FileCodec）。
+ * 不压缩时支持断点续传：提交时写出缓冲并fsync，提交位置为文件长度，回退时截断文件；断点续传时应以append方式打开
+ */
+public class DelimitedFileSink implements ResumableSink {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String filePath;
+    private final String delimiter;
+    private final FileCodec codec;
+    private final FileOutputStream fos;
+    private final Writer writer;
+    private long written;
+
+    public DelimitedFileSink(String filePath, String delimiter) throws IOException {
+        this(filePath, delimiter, FileCodec.fromFileName(filePath), Charset.defaultCharset());
+    }
+
+    public DelimitedFileSink(String filePath, String delimiter, FileCodec codec, Charset charset) throws IOException {
+        this(filePath, delimiter, codec, charset, false);
+    }
+
+    /**
+     * description: append为true时追加到已有文件之后
+     * param: [filePath, delimiter, codec, charset, append]
+     */
+    public DelimitedFileSink(String filePath, String delimiter, FileCodec codec, Charset charset, boolean append) throws IOException {
+        this.filePath = filePath;
+        this.delimiter = delimiter;
+        this.codec = codec;
+        this.fos = new FileOutputStream(filePath, append);
+        try {
+            this.writer = new BufferedWriter(new OutputStreamWriter(codec.encode(new BufferedOutputStream(fos, BUFFER_SIZE)), charset), BUFFER_SIZE);
+        } catch (IOException e) {
+            fos.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(String[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                writer.write(delimiter);
+            }
+            if (row[i] != null) {
+                writer.write(row[i]);
+            }
+        }
+        writer.write('\n');
+        written++;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public long commit() throws IOException {
+        if (codec != FileCodec.NONE) {
+            throw new IOException("compressed output file " + filePath + " (" + codec + ") does not support commit!");
+        }
+        writer.flush();
+        fos.getFD().sync(); // 检查点保存的位置之前的内容须已落盘，否则掉电后恢复时文件可能比提交位置短
+        return new File(filePath).length();
+    }
+
+    @Override
+    public void rollback(long position) throws IOException {
+        if (codec != FileCodec.NONE) {
+            throw new IOException("compressed output file " + filePath + " (" + codec + ") does not support rollback!");
+        }
+        writer.flush();
+        try (RandomAccessFile raf = new RandomAccessFile(filePath, "rw")) {
+            if (raf.length() < position) {
+                throw new IOException("output file " + filePath + " is shorter than committed position " + position + "!");
+            }
+            raf.setLength(position); // 以append方式打开，后续写入从截断处开始
+            raf.getFD().sync();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+}
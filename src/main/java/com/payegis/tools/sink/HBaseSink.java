@@ -0,0 +1,73 @@
+package com.payegis.tools.sink;
+
+import com.payegis.tools.db.HBaseUtils;
+import com.payegis.tools.encrypt.MD5Utils;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/10
+ * time: 11:20
+ * description: HBase输出端，每行一个Put，列名为qualifier，成批table.put；rowkeyColumn为负数时与HBaseUtils.insertBatch一样使用随机rowkey。
+ * table在构造时打开、close时关闭，不再每批重新获取
+ */
+public class HBaseSink extends BatchRowSink {
+    private final String tableName;
+    private final byte[] family;
+    private final byte[][] qualifiers;
+    private final int rowkeyColumn;
+    private final Table table;
+
+    public HBaseSink(HBaseUtils hbase, String tableName, String familyName, String[] columnNames, int rowkeyColumn) throws IOException {
+        this(hbase, tableName, familyName, columnNames, rowkeyColumn, DEFAULT_BATCH_SIZE);
+    }
+
+    public HBaseSink(HBaseUtils hbase, String tableName, String familyName, String[] columnNames, int rowkeyColumn, int batchSize) throws IOException {
+        super(batchSize);
+        this.tableName = tableName;
+        this.family = Bytes.toBytes(familyName);
+        this.qualifiers = new byte[columnNames.length][];
+        for (int i = 0; i < columnNames.length; i++) {
+            qualifiers[i] = Bytes.toBytes(columnNames[i]);
+        }
+        this.rowkeyColumn = rowkeyColumn;
+        this.table = hbase.getTable(tableName);
+        if (table == null) {
+            throw new IOException("get hbase table " + tableName + " failed!");
+        }
+    }
+
+    @Override
+    protected void writeBatch(List<String[]> rows) throws IOException {
+        List<Put> puts = new ArrayList<>(rows.size());
+        for (String[] row : rows) {
+            String rowkey = rowkeyColumn >= 0 && rowkeyColumn < row.length && row[rowkeyColumn] != null && !row[rowkeyColumn].isEmpty()
+                    ? row[rowkeyColumn] : MD5Utils.strToMd5_16(UUID.randomUUID().toString());
+            Put put = new Put(Bytes.toBytes(rowkey));
+            for (int i = 0; i < row.length; i++) {
+                byte[] qualifier = i < qualifiers.length ? qualifiers[i] : Bytes.toBytes("column" + i);
+                put.addColumn(family, qualifier, row[i] == null ? null : Bytes.toBytes(row[i]));
+            }
+            puts.add(put);
+        }
+        try {
+            table.put(puts);
+        } catch (IOException e) {
+            throw new IOException("put " + puts.size() + " rows to hbase table " + tableName + " failed!", e);
+        }
+    }
+
+    @Override
+    protected void release() throws IOException {
+        table.close();
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.payegis.tools.sink;
+
+import com.payegis.tools.db.DBCPUtils;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/10
+ * time: 11:40
+ * description: JDBC输出端，每行作为sql（如insert into t(a, b) values(?, ?)）的参数，每批一个事务，通过DBCPUtils.executeBatch写入
+ */
+public class JdbcSink extends BatchRowSink {
+    private final DBCPUtils db;
+    private final String sql;
+
+    public JdbcSink(DBCPUtils db, String sql) {
+        this(db, sql, DEFAULT_BATCH_SIZE);
+    }
+
+    public JdbcSink(DBCPUtils db, String sql, int batchSize) {
+        super(batchSize);
+        this.db = db;
+        this.sql = sql;
+    }
+
+    @Override
+    protected void writeBatch(List<String[]> rows) throws IOException {
+        if (!db.executeBatch(sql, rows)) { // 失败时DBCPUtils已回滚并记录日志
+            throw new IOException("execute batch sql [" + sql + "] with " + rows.size() + " rows failed!");
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.payegis.tools.sink;
+
+import com.payegis.tools.file.FileCodec;
+import com.payegis.tools.file.FileUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/10
+ * time: 10:55
+ * description: JSON Lines文件输出端，每行输出一个以列名为key的JSON对象，值均为字符串，null输出为JSON null；
+ * 直接拼接转义后的字符串，不构建JSONObject；按文件扩展名决定是否压缩
+ */
+public class JsonLinesSink implements RowSink {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String filePath;
+    private final String[] keys; // 已转义并带引号、冒号的key
+    private final Writer writer;
+    private long written;
+
+    public JsonLinesSink(String filePath, String... columnNames) throws IOException {
+        this(filePath, FileCodec.fromFileName(filePath), StandardCharsets.UTF_8, columnNames);
+    }
+
+    public JsonLinesSink(String filePath, FileCodec codec, Charset charset, String... columnNames) throws IOException {
+        this.filePath = filePath;
+        this.keys = new String[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            keys[i] = quote(columnNames[i]) + ":";
+        }
+        this.writer = new BufferedWriter(new OutputStreamWriter(FileUtils.openOutputStream(filePath, codec), charset), BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(String[] row) throws IOException {
+        writer.write('{');
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(i < keys.length ? keys[i] : "\"column" + i + "\":"); // 列名不足时为column + 下标
+            if (row[i] == null) {
+                writer.write("null");
+            } else {
+                writeQuoted(row[i]);
+            }
+        }
+        writer.write("}\n");
+        written++;
+    }
+
+    private void writeQuoted(String value) throws IOException {
+        writer.write('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            writer.write(value, start, i - start);
+            start = i + 1;
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    writer.write("\\u00");
+                    writer.write(HEX[c >> 4]);
+                    writer.write(HEX[c & 0xf]);
+            }
+        }
+        writer.write(value, start, length - start);
+        writer.write('"');
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+}
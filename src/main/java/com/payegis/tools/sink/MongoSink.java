@@ -0,0 +1,52 @@
+package com.payegis.tools.sink;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/10
+ * time: 11:50
+ * description: MongoDB输出端，每行一个以列名为key的Document，成批无序insertMany；db可使用MongoDBUtils.db或MongoDBReplsetUtils.mongoDatabase
+ */
+public class MongoSink extends BatchRowSink {
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+
+    private final MongoCollection<Document> collection;
+    private final String[] columnNames;
+
+    public MongoSink(MongoDatabase db, String collectionName, String... columnNames) {
+        this(db, collectionName, DEFAULT_BATCH_SIZE, columnNames);
+    }
+
+    public MongoSink(MongoDatabase db, String collectionName, int batchSize, String... columnNames) {
+        super(batchSize);
+        this.collection = db.getCollection(collectionName);
+        this.columnNames = columnNames;
+    }
+
+    @Override
+    protected void writeBatch(List<String[]> rows) throws IOException {
+        List<Document> documents = new ArrayList<>(rows.size());
+        for (String[] row : rows) {
+            Document document = new Document();
+            for (int i = 0; i < row.length; i++) {
+                document.append(columnName(columnNames, i), row[i]);
+            }
+            documents.add(document);
+        }
+        try {
+            collection.insertMany(documents, UNORDERED);
+        } catch (RuntimeException e) {
+            throw new IOException("insert " + documents.size() + " documents to mongodb collection " + collection.getNamespace() + " failed!", e);
+        }
+    }
+
+}
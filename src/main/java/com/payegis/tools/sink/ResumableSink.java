@@ -0,0 +1,31 @@
+package com.payegis.tools.sink;
+
+import java.io.IOException;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/15
+ * time: 9:20
+ * description: 支持断点续传的输出端：commit写出缓冲并返回可恢复的位置，任务从检查点恢复时先rollback到该位置，
+ * 丢弃检查点之后已写出的内容，保证恢复后不产生重复行（见CheckpointedEtl）
+ */
+public interface ResumableSink extends RowSink {
+
+    /**
+     * description: 写出缓冲中的全部行并返回当前提交位置
+     * param: []
+     * return: long
+     * time: 2018/8/15 9:25
+     */
+    long commit() throws IOException;
+
+    /**
+     * description: 回退到此前commit返回的位置，丢弃其后写出的内容
+     * param: [position]
+     * return: void
+     * time: 2018/8/15 9:28
+     */
+    void rollback(long position) throws IOException;
+
+}
@@ -0,0 +1,59 @@
+package com.payegis.tools.sink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/10
+ * time: 9:20
+ * description: ETL结果输出端，逐行接收清洗后的列数组；write可能因下游写入阻塞，从而让读取端随之放慢（背压）。
+ * 实现类非线程安全，多线程写入时用AsyncRowSink包装
+ */
+public interface RowSink extends Closeable {
+
+    /**
+     * description: 写入一行，实现类可先缓冲成批再写出；调用方写入后不应再修改row
+     * param: [row]
+     * return: void
+     * time: 2018/8/10 9:22
+     */
+    void write(String[] row) throws IOException;
+
+    /**
+     * description: 写出缓冲中的全部行
+     * param: []
+     * return: void
+     * time: 2018/8/10 9:24
+     */
+    void flush() throws IOException;
+
+    /**
+     * description: 写出缓冲中的行并释放资源
+     * param: []
+     * return: void
+     * time: 2018/8/10 9:25
+     */
+    @Override
+    void close() throws IOException;
+
+    /**
+     * description: 转为行消费者，供FileDivisionETL.etl等流式方法使用，写入异常包装为UncheckedIOException
+     * param: []
+     * return: java.util.function.Consumer<java.lang.String[]>
+     * time: 2018/8/10 9:28
+     */
+    default Consumer<String[]> asConsumer() {
+        return row -> {
+            try {
+                write(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+}
@@ -104,4 +104,50 @@ public class CharacterUtils {
         return buf.toString();
     }
 
+    /**
+     * description: 单个字符全角转半角，只转换数字、字母，其他字符原样返回
+     * param: [c]
+     * return: char
+     * date: 2018/8/20
+     * time: 11:00
+     */
+    public static char qj2bjCharNumber(char c) {
+        if ((c >= SBC_NUMBER_START && c <= SBC_NUMBER_END)
+                || (c >= SBC_CHAR_LOWERCASE_START && c <= SBC_CHAR_LOWERCASE_END)
+                || (c >= SBC_CHAR_UPPERCASE_START && c <= SBC_CHAR_UPPERCASE_END)) {
+            return (char) (c - CONVERT_STEP);
+        }
+        return c;
+    }
+
+    /**
+     * description: 将src的[start, end)区间全角转半角（只转换数字、字母）后追加到buf，不产生中间字符串
+     * param: [src, start, end, buf]
+     * return: void
+     * date: 2018/8/20
+     * time: 11:05
+     */
+    public static void appendQj2bjCharNumber(CharSequence src, int start, int end, StringBuilder buf) {
+        for (int i = start; i < end; i++) {
+            buf.append(qj2bjCharNumber(src.charAt(i)));
+        }
+    }
+
+    /**
+     * description: 字符串中是否含有全角的数字、字母
+     * param: [src]
+     * return: boolean
+     * date: 2018/8/20
+     * time: 11:10
+     */
+    public static boolean containsQjCharNumber(String src) {
+        for (int i = 0; i < src.length(); i++) {
+            char c = src.charAt(i);
+            if (c >= SBC_NUMBER_START && c <= SBC_CHAR_LOWERCASE_END && qj2bjCharNumber(c) != c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
@@ -0,0 +1,323 @@
+package com.payegis.tools.string;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/23
+ * time: 9:30
+ * description: 按推断的模式将嵌套json对象展开为定长的列：从样本中收集所有叶子的点分路径（如"user.info.name"），
+ * 按首次出现的顺序分配固定的列序号，最后一列为溢出列OVERFLOW_COLUMN。展开时基于JsonTokenizer单遍扫描，
+ * 值直接写入调用方复用的行数组，不为每条记录创建map；推断之后才出现的路径以{"路径":值,...}的json形式写入溢出列。
+ * key中的'.'和'\'在路径中以'\'转义，{"a.b":1}的路径为"a\.b"，不会与{"a":{"b":1}}的"a.b"冲突。
+ * 数组作为叶子整体保存原文，模式中没有子节点的空对象以"{}"写入溢出列；字符串为解码后的内容，数值、true、false为原文，null为空字符串，缺失的列为null。
+ * getColumnNames可直接作为HBaseSink、MongoSink的列名。非线程安全，其他线程使用copy()
+ * 注意：BatchRowSink等攒批的输出端会持有行数组，写入这类输出端时每行应使用newRow()新建的数组
+ */
+public class JsonFlattener {
+    private static Logger logger = Logger.getLogger(JsonFlattener.class);
+    public static final String OVERFLOW_COLUMN = "overflow";
+
+    private final Node root;
+    private final String[] columnNames;
+    private final StringBuilder path = new StringBuilder();
+    private final StringBuilder name = new StringBuilder();
+    private final StringBuilder overflow = new StringBuilder();
+    private int overflowCount;
+
+    private JsonFlattener(Node root, String[] columnNames) {
+        this.root = root;
+        this.columnNames = columnNames;
+    }
+
+    /**
+     * description: 从样本json中推断列，不合法或不是json对象的样本跳过
+     * param: [samples]
+     * return: com.payegis.tools.string.JsonFlattener
+     * time: 2018/8/23 9:40
+     */
+    public static JsonFlattener infer(Iterable<String> samples) {
+        Node root = new Node();
+        List<String> paths = new ArrayList<>();
+        StringBuilder path = new StringBuilder();
+        for (String sample : samples) {
+            if (sample == null || !JsonTokenizer.mayBeJson(sample)) {
+                continue;
+            }
+            try {
+                JsonTokenizer tokenizer = new JsonTokenizer(sample);
+                if (tokenizer.next() == JsonTokenizer.Token.BEGIN_OBJECT) {
+                    collect(tokenizer, root, path, paths);
+                }
+            } catch (IllegalArgumentException e) {
+                logger.warn("illegal json sample " + sample + " is ignored when inferring columns: " + e.getMessage());
+            }
+        }
+        return build(root, paths);
+    }
+
+    /**
+     * description: 指定点分路径作为列，不推断，key中的'.'和'\'以'\'转义
+     * param: [paths]
+     * return: com.payegis.tools.string.JsonFlattener
+     * time: 2018/8/23 9:45
+     */
+    public static JsonFlattener of(String... paths) {
+        Node root = new Node();
+        List<String> columns = new ArrayList<>();
+        for (String path : paths) {
+            Node node = root;
+            for (String name : split(path)) {
+                node = node.childOrAdd(name);
+            }
+            if (node.column < 0) {
+                node.column = columns.size();
+                columns.add(path);
+            }
+        }
+        return build(root, columns);
+    }
+
+    private static JsonFlattener build(Node root, List<String> paths) {
+        String[] columnNames = paths.toArray(new String[paths.size() + 1]);
+        columnNames[paths.size()] = OVERFLOW_COLUMN;
+        return new JsonFlattener(root, columnNames);
+    }
+
+    /**
+     * description: 按未转义的'.'拆分路径并去掉转义
+     * param: [path]
+     * return: java.util.List<java.lang.String>
+     * time: 2018/8/23 15:10
+     */
+    private static List<String> split(String path) {
+        List<String> names = new ArrayList<>();
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '\\' && i + 1 < path.length()) {
+                name.append(path.charAt(++i));
+            } else if (c == '.') {
+                names.add(name.toString());
+                name.setLength(0);
+            } else {
+                name.append(c);
+            }
+        }
+        names.add(name.toString());
+        return names;
+    }
+
+    /**
+     * description: 把一层key追加到路径，'.'和'\'以'\'转义
+     * param: [path, name]
+     * return: void
+     * time: 2018/8/23 15:20
+     */
+    private static void appendName(StringBuilder path, CharSequence name) {
+        if (path.length() > 0) {
+            path.append('.');
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '.' || c == '\\') {
+                path.append('\\');
+            }
+            path.append(c);
+        }
+    }
+
+    private static void collect(JsonTokenizer tokenizer, Node node, StringBuilder path, List<String> paths) {
+        int length = path.length();
+        JsonTokenizer.Token token = tokenizer.next();
+        while (token == JsonTokenizer.Token.NAME) {
+            String name = tokenizer.stringValue();
+            appendName(path, name);
+            Node child = node.childOrAdd(name);
+            token = tokenizer.next();
+            if (token == JsonTokenizer.Token.BEGIN_OBJECT) {
+                collect(tokenizer, child, path, paths);
+            } else {
+                tokenizer.skipChildren();
+                if (child.column < 0) {
+                    child.column = paths.size();
+                    paths.add(path.toString());
+                }
+            }
+            path.setLength(length);
+            token = tokenizer.next();
+        }
+    }
+
+    /**
+     * description: 复制一个共享同一模式的展开器，供其他线程使用
+     * param: []
+     * return: com.payegis.tools.string.JsonFlattener
+     * time: 2018/8/23 9:50
+     */
+    public JsonFlattener copy() {
+        return new JsonFlattener(root, columnNames);
+    }
+
+    /**
+     * description: 新建一个行数组，长度为列数（含溢出列）
+     * param: []
+     * return: java.lang.String[]
+     * time: 2018/8/23 9:55
+     */
+    public String[] newRow() {
+        return new String[columnNames.length];
+    }
+
+    /**
+     * description: 将json对象展开写入row（先清空），返回写入溢出列的字段数；不是json对象或json不合法时抛出IllegalArgumentException
+     * param: [json, row]
+     * return: int
+     * time: 2018/8/23 10:00
+     */
+    public int flatten(String json, String[] row) {
+        Arrays.fill(row, 0, columnNames.length, null);
+        JsonTokenizer tokenizer = new JsonTokenizer(json);
+        if (tokenizer.next() != JsonTokenizer.Token.BEGIN_OBJECT) {
+            throw new IllegalArgumentException("json object expected: " + json);
+        }
+        path.setLength(0);
+        overflow.setLength(0);
+        overflowCount = 0;
+        walk(tokenizer, root, row);
+        if (overflowCount > 0) {
+            row[columnNames.length - 1] = overflow.append('}').toString();
+        }
+        return overflowCount;
+    }
+
+    /**
+     * description: 展开当前对象的成员，返回对象是否有成员
+     */
+    private boolean walk(JsonTokenizer tokenizer, Node node, String[] row) {
+        int length = path.length();
+        int next = 0; // 同一来源的记录key顺序基本一致，从上一个匹配的下一个开始查找
+        boolean members = false;
+        JsonTokenizer.Token token = tokenizer.next();
+        while (token == JsonTokenizer.Token.NAME) {
+            members = true;
+            name.setLength(0);
+            tokenizer.appendUnescaped(name);
+            appendName(path, name);
+            int index = node == null ? -1 : node.indexOf(tokenizer, next);
+            Node child = index < 0 ? null : node.children[index];
+            next = index + 1;
+            token = tokenizer.next();
+            if (token == JsonTokenizer.Token.BEGIN_OBJECT && (child == null || child.column < 0)) {
+                // 未知的对象继续展开，其叶子进入溢出列；模式中没有子节点的空对象整体进入溢出列
+                if (!walk(tokenizer, child, row) && (child == null || child.names.length == 0)) {
+                    appendOverflowName().append("{}");
+                }
+            } else if (child != null && child.column >= 0) {
+                row[child.column] = value(tokenizer, token);
+            } else {
+                addOverflow(tokenizer, token);
+            }
+            path.setLength(length);
+            token = tokenizer.next();
+        }
+        return members;
+    }
+
+    /**
+     * description: 当前值的文本，对象与数组为原文片段
+     */
+    private static String value(JsonTokenizer tokenizer, JsonTokenizer.Token token) {
+        if (token == JsonTokenizer.Token.BEGIN_OBJECT || token == JsonTokenizer.Token.BEGIN_ARRAY) {
+            int start = tokenizer.start();
+            tokenizer.skipChildren();
+            return tokenizer.source().substring(start, tokenizer.end());
+        }
+        return JsonPath.valueOf(tokenizer, token);
+    }
+
+    /**
+     * description: 向溢出列写入当前路径作为key，返回overflow以便写入值
+     */
+    private StringBuilder appendOverflowName() {
+        overflow.append(overflowCount++ == 0 ? '{' : ',');
+        return overflow.append('"').append(JsonKeyRewriter.escape(path.toString())).append("\":");
+    }
+
+    private void addOverflow(JsonTokenizer tokenizer, JsonTokenizer.Token token) {
+        appendOverflowName();
+        if (token == JsonTokenizer.Token.NULL) {
+            overflow.append("\"\"");
+        } else if (token == JsonTokenizer.Token.STRING) {
+            overflow.append('"');
+            tokenizer.appendRaw(overflow);
+            overflow.append('"');
+        } else if (token == JsonTokenizer.Token.BEGIN_ARRAY) {
+            int start = tokenizer.start();
+            tokenizer.skipChildren();
+            overflow.append(tokenizer.source(), start, tokenizer.end());
+        } else {
+            tokenizer.appendRaw(overflow);
+        }
+    }
+
+    /**
+     * description: 列名，即各列的点分路径，最后一列为溢出列
+     */
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    /**
+     * description: 点分路径的列序号，不存在时返回-1
+     */
+    public int indexOf(String path) {
+        for (int i = 0; i < columnNames.length - 1; i++) {
+            if (columnNames[i].equals(path)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 模式前缀树节点：子节点按key匹配，column为叶子列的序号，非叶子为-1
+     */
+    private static final class Node {
+        private String[] names = new String[0];
+        private Node[] children = new Node[0];
+        private int column = -1;
+
+        int indexOf(JsonTokenizer tokenizer, int from) {
+            for (int n = 0; n < names.length; n++) {
+                int i = from + n < names.length ? from + n : from + n - names.length;
+                if (tokenizer.valueEquals(names[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Node childOrAdd(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return children[i];
+                }
+            }
+            names = Arrays.copyOf(names, names.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            names[names.length - 1] = name;
+            return children[children.length - 1] = new Node();
+        }
+    }
+
+}
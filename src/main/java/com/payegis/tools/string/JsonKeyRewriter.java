@@ -0,0 +1,324 @@
+package com.payegis.tools.string;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/21
+ * time: 9:30
+ * description: 流式改写json中所有层级的key：基于JsonTokenizer单遍扫描，key经translator转换后与原样的value一起
+ * 直接写到Appendable（Writer、StringBuilder、CharBuffer等），去掉多余空白，不构建对象树。
+ * 转换结果缓存在有界的直接映射缓存中（原始key -> 转换并转义后的key），命中时不分配对象；
+ * 缓存槽位冲突时直接覆盖，不会无限增长。缓存项不可变，实例可被多线程共享
+ */
+public class JsonKeyRewriter {
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    /**
+     * 下划线命名改为驼峰命名，见StringUtils.camelNamed
+     */
+    public static final JsonKeyRewriter CAMEL_NAMED = new JsonKeyRewriter(StringUtils::camelNamed, DEFAULT_CACHE_SIZE);
+
+    private final Function<String, String> translator;
+    private final Entry[] cache;
+    private final int mask;
+
+    /**
+     * description: cacheSize向上取整为2的幂
+     * param: [translator, cacheSize]
+     * time: 2018/8/21 9:40
+     */
+    public JsonKeyRewriter(Function<String, String> translator, int cacheSize) {
+        this.translator = translator;
+        int size = Integer.highestOneBit(Math.max(1, cacheSize - 1)) << 1;
+        this.cache = new Entry[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * description: 改写json字符串的key；不是json或json不合法时原样返回
+     * param: [json]
+     * return: java.lang.String
+     * time: 2018/8/21 9:50
+     */
+    public String rewrite(String json) {
+        if (json == null || !JsonTokenizer.mayBeJson(json)) {
+            return json;
+        }
+        StringBuilder sb = new StringBuilder(json.length());
+        try {
+            rewrite(new JsonTokenizer(json), sb);
+        } catch (IllegalArgumentException e) {
+            return json;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder不会抛出
+        }
+        return sb.toString();
+    }
+
+    /**
+     * description: 改写json字符串的key并写到out；json不合法时抛出IllegalArgumentException，此时out中可能已写出部分内容
+     * param: [json, out]
+     * return: void
+     * time: 2018/8/21 9:55
+     */
+    public void rewrite(String json, Appendable out) throws IOException {
+        rewrite(new JsonTokenizer(json), out);
+    }
+
+    /**
+     * description: 从tokenizer读取完整的json文档，改写key后写到out
+     * param: [tokenizer, out]
+     * return: void
+     * time: 2018/8/21 10:00
+     */
+    public void rewrite(JsonTokenizer tokenizer, Appendable out) throws IOException {
+        String json = tokenizer.source();
+        boolean comma = false;
+        JsonTokenizer.Token token = tokenizer.next();
+        while (token != JsonTokenizer.Token.END_DOCUMENT) {
+            switch (token) {
+                case END_OBJECT:
+                    out.append('}');
+                    comma = true;
+                    break;
+                case END_ARRAY:
+                    out.append(']');
+                    comma = true;
+                    break;
+                case NAME:
+                    if (comma) {
+                        out.append(',');
+                    }
+                    out.append('"').append(translate(tokenizer)).append("\":");
+                    comma = false;
+                    break;
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    if (comma) {
+                        out.append(',');
+                    }
+                    out.append(token == JsonTokenizer.Token.BEGIN_OBJECT ? '{' : '[');
+                    comma = false;
+                    break;
+                case STRING:
+                    if (comma) {
+                        out.append(',');
+                    }
+                    out.append('"').append(json, tokenizer.start(), tokenizer.end()).append('"');
+                    comma = true;
+                    break;
+                default: // NUMBER、TRUE、FALSE、NULL
+                    if (comma) {
+                        out.append(',');
+                    }
+                    out.append(json, tokenizer.start(), tokenizer.end());
+                    comma = true;
+            }
+            token = tokenizer.next();
+        }
+    }
+
+    /**
+     * description: 改写key，value与原来基于json-lib的StringUtils.jsonStrKeyCamelNamed结果一致：数值、true、false转为字符串，
+     * 数值按json-lib的写法格式化，key与字符串解码后按json-lib的写法转义，对象中的字符串"null"转为null。
+     * 结果依赖json-lib解析细节的文档返回null，由调用方交给json-lib处理：同一对象中转换后相同的key（json-lib合并重复key或覆盖）、
+     * 值为"null"的key、超出Double范围的数值、会被json-lib当作json、函数解析或去掉引号的字符串、数组中的字符串"null"、
+     * 顶层数组中的非对象元素、数组中的数组、不合法的json。没有结束括号的文档原样返回，以'{'或'['开头却没有结束括号的字符串按普通字符串处理
+     * param: [json]
+     * return: java.lang.String
+     * time: 2018/8/21 10:05
+     */
+    public String rewriteStringified(String json) {
+        if (json == null || !JsonTokenizer.mayBeJson(json)) {
+            return json;
+        }
+        JsonTokenizer tokenizer = new JsonTokenizer(json);
+        StringBuilder sb = new StringBuilder(json.length() + 16);
+        StringBuilder scopes = new StringBuilder(); // 各层容器，'{'或'['
+        List<Set<String>> names = new ArrayList<>(); // 各层对象中已出现的key，按深度复用
+        StringBuilder value = new StringBuilder();
+        boolean comma = false;
+        try {
+            JsonTokenizer.Token token = tokenizer.next();
+            while (token != JsonTokenizer.Token.END_DOCUMENT) {
+                int depth = scopes.length();
+                char scope = depth == 0 ? 0 : scopes.charAt(depth - 1);
+                if (token != JsonTokenizer.Token.NAME && token != JsonTokenizer.Token.END_OBJECT && token != JsonTokenizer.Token.END_ARRAY
+                        && scope == '[' && (depth == 1 ? token != JsonTokenizer.Token.BEGIN_OBJECT : token == JsonTokenizer.Token.BEGIN_ARRAY)) {
+                    return null; // 顶层数组只能包含对象，数组中不能再有数组
+                }
+                if (comma && token != JsonTokenizer.Token.END_OBJECT && token != JsonTokenizer.Token.END_ARRAY) {
+                    sb.append(',');
+                }
+                switch (token) {
+                    case BEGIN_OBJECT:
+                    case BEGIN_ARRAY:
+                        char begin = token == JsonTokenizer.Token.BEGIN_OBJECT ? '{' : '[';
+                        if (begin == '{') {
+                            while (names.size() <= depth) {
+                                names.add(new HashSet<>());
+                            }
+                            names.get(depth).clear();
+                        }
+                        scopes.append(begin);
+                        sb.append(begin);
+                        comma = false;
+                        break;
+                    case END_OBJECT:
+                    case END_ARRAY:
+                        scopes.setLength(depth - 1);
+                        sb.append(token == JsonTokenizer.Token.END_OBJECT ? '}' : ']');
+                        comma = true;
+                        break;
+                    case NAME:
+                        if (tokenizer.valueEquals("null")) {
+                            return null; // json-lib解析嵌套对象中的"null"key时抛出ClassCastException
+                        }
+                        String name;
+                        if (tokenizer.isEscaped() || json.lastIndexOf('<', tokenizer.end()) >= tokenizer.start()) {
+                            value.setLength(0);
+                            String translated = translator.apply(tokenizer.stringValue());
+                            JsonNormalizer.quote(translated == null ? "" : translated, value);
+                            name = value.substring(1, value.length() - 1);
+                        } else {
+                            name = translate(tokenizer);
+                        }
+                        if (!names.get(depth - 1).add(name)) {
+                            return null;
+                        }
+                        sb.append('"').append(name).append("\":");
+                        comma = false;
+                        break;
+                    case STRING:
+                        value.setLength(0);
+                        if (tokenizer.isEscaped()) {
+                            tokenizer.appendUnescaped(value);
+                        } else {
+                            value.append(json, tokenizer.start(), tokenizer.end());
+                        }
+                        if (JsonNormalizer.isJsonLibSpecial(value)) {
+                            return null;
+                        }
+                        if (value.length() == 4 && "null".contentEquals(value)) {
+                            if (scope == '[') {
+                                return null; // json-lib在数组中写成"\"null\""
+                            }
+                            sb.append("null");
+                        } else {
+                            JsonNormalizer.quote(value, sb);
+                        }
+                        comma = true;
+                        break;
+                    case NUMBER:
+                        if (!JsonNormalizer.appendNumber(json, tokenizer.start(), tokenizer.end(), depth > 1, sb)) {
+                            return null;
+                        }
+                        comma = true;
+                        break;
+                    case NULL:
+                        sb.append("null");
+                        comma = true;
+                        break;
+                    default: // TRUE、FALSE
+                        sb.append('"').append(json, tokenizer.start(), tokenizer.end()).append('"');
+                        comma = true;
+                }
+                token = tokenizer.next();
+            }
+        } catch (IllegalArgumentException e) {
+            // json-lib可能接受不严格的写法；没有结束括号时json-lib原样返回，或解析"["、"[,"等时无限递归、耗尽内存
+            return JsonNormalizer.hasClosingBracket(json, 0) ? null : json;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * description: 当前key转换并转义后的结果（不含引号），先查缓存
+     * param: [tokenizer]
+     * return: java.lang.String
+     * time: 2018/8/21 10:10
+     */
+    private String translate(JsonTokenizer tokenizer) {
+        String json = tokenizer.source();
+        int start = tokenizer.start();
+        int length = tokenizer.end() - start;
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + json.charAt(i); // 与String.hashCode一致
+        }
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        Entry entry = cache[slot];
+        if (entry != null && entry.hash == hash && entry.source.length() == length
+                && json.regionMatches(start, entry.source, 0, length)) {
+            return entry.target;
+        }
+        String source = json.substring(start, start + length);
+        String translated = translator.apply(tokenizer.isEscaped() ? tokenizer.stringValue() : source);
+        String target = escape(translated == null ? "" : translated);
+        cache[slot] = new Entry(hash, source, target);
+        return target;
+    }
+
+    /**
+     * description: 转义json字符串中的双引号、反斜杠与控制字符
+     * param: [str]
+     * return: java.lang.String
+     * time: 2018/8/21 10:20
+     */
+    static String escape(String str) {
+        StringBuilder sb = null;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c != '"' && c != '\\' && c >= 0x20) {
+                if (sb != null) {
+                    sb.append(c);
+                }
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(str.length() + 8).append(str, 0, i);
+            }
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    sb.append(String.format("\\u%04x", (int) c));
+            }
+        }
+        return sb == null ? str : sb.toString();
+    }
+
+    private static final class Entry {
+        private final int hash;
+        private final String source;
+        private final String target;
+
+        Entry(int hash, String source, String target) {
+            this.hash = hash;
+            this.source = source;
+            this.target = target;
+        }
+    }
+
+}
@@ -0,0 +1,300 @@
+package com.payegis.tools.string;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/20
+ * time: 11:20
+ * description: 单遍流式清洗Json格式字符串，结果与原来基于json-lib的StringUtils.etlJsonStr一致：
+ * 1.值为null的改为空字符串，如{"key":null}修改为{"key":""}，对象中的字符串"null"同样改为空字符串
+ * 2.key与字符串值解码后全角的字母和数字转换成半角，再按json-lib的写法转义（只转义引号、反斜杠、控制字符和"</"）
+ * 3.数值、true、false转为字符串值，数值的写法同json-lib：整数按Long输出（"-0"为"0"），超出Long范围的整数与小数按Double输出，见appendNumber
+ * 基于JsonTokenizer逐个token直接写出，不构建对象树；第一个非空白字符不是'{'或'['的按普通字符串处理。
+ * 结果依赖json-lib解析细节的文档normalize返回null，由调用方交给json-lib，见normalize的说明
+ */
+public class JsonNormalizer {
+
+    private JsonNormalizer() {
+    }
+
+    /**
+     * description: 清洗Json格式字符串，同样适用于非json字符串。以下文档返回null，由调用方交给json-lib处理：
+     * 同一对象中转换后相同的key（json-lib合并为数组）、转换后为"null"的key、超出Double范围的数值、会被json-lib当作json、函数解析或去掉引号的字符串值
+     * （如"{\"a\":1}"）、数组中的字符串"null"（json-lib写成"\"null\""）、不合法或不严格的json（json-lib接受单引号、末尾逗号等）。
+     * 以'{'或'['开头却没有结束括号的字符串（如"["、"[1,"）按普通字符串处理，json-lib解析这类字符串时无限递归或耗尽内存
+     * param: [str]
+     * return: java.lang.String
+     * time: 2018/8/20 11:30
+     */
+    public static String normalize(String str) {
+        if (str == null) {
+            return null;
+        }
+        int first = 0;
+        while (first < str.length() && str.charAt(first) <= ' ') {
+            first++;
+        }
+        if (first < str.length() && (str.charAt(first) == '{' || str.charAt(first) == '[')) {
+            StringBuilder sb = new StringBuilder(str.length() + 16);
+            try {
+                return normalize(new JsonTokenizer(str), sb) ? sb.toString() : null;
+            } catch (IllegalArgumentException e) {
+                if (hasClosingBracket(str, first)) {
+                    return null; // json-lib可能接受不严格的写法
+                }
+            }
+        }
+        String value = CharacterUtils.containsQjCharNumber(str) ? CharacterUtils.qj2bjCharNumber(str) : str;
+        return "null".equals(value) ? "" : value;
+    }
+
+    /**
+     * description: 从tokenizer读取完整的json文档，清洗后追加到sb，文档需要交给json-lib处理时返回false；
+     * json不合法时抛出IllegalArgumentException
+     * param: [tokenizer, sb]
+     * return: boolean
+     * time: 2018/8/20 11:40
+     */
+    public static boolean normalize(JsonTokenizer tokenizer, StringBuilder sb) {
+        StringBuilder scopes = new StringBuilder(); // 各层容器，'{'或'['
+        List<Set<String>> names = new ArrayList<>(); // 各层对象中已出现的key，按深度复用
+        StringBuilder value = new StringBuilder();
+        boolean comma = false;
+        JsonTokenizer.Token token = tokenizer.next();
+        while (token != JsonTokenizer.Token.END_DOCUMENT) {
+            int depth = scopes.length();
+            if (comma && token != JsonTokenizer.Token.END_OBJECT && token != JsonTokenizer.Token.END_ARRAY) {
+                sb.append(',');
+            }
+            switch (token) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    char begin = token == JsonTokenizer.Token.BEGIN_OBJECT ? '{' : '[';
+                    if (begin == '{') {
+                        while (names.size() <= depth) {
+                            names.add(new HashSet<>());
+                        }
+                        names.get(depth).clear();
+                    }
+                    scopes.append(begin);
+                    sb.append(begin);
+                    comma = false;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    scopes.setLength(depth - 1);
+                    sb.append(token == JsonTokenizer.Token.END_OBJECT ? '}' : ']');
+                    comma = true;
+                    break;
+                case NAME:
+                    decode(tokenizer, value);
+                    if ((value.length() == 4 && "null".contentEquals(value)) || !names.get(depth - 1).add(value.toString())) {
+                        return false; // json-lib解析嵌套对象中的"null"key时抛出ClassCastException
+                    }
+                    quote(value, sb);
+                    sb.append(':');
+                    comma = false;
+                    break;
+                case STRING:
+                    decode(tokenizer, value);
+                    if (isJsonLibSpecial(value)) {
+                        return false;
+                    }
+                    if (value.length() == 4 && "null".contentEquals(value)) {
+                        if (scopes.charAt(depth - 1) == '[') {
+                            return false; // json-lib在数组中写成"\"null\""
+                        }
+                        value.setLength(0);
+                    }
+                    quote(value, sb);
+                    comma = true;
+                    break;
+                case NUMBER:
+                    if (!appendNumber(tokenizer.source(), tokenizer.start(), tokenizer.end(), depth > 1, sb)) {
+                        return false;
+                    }
+                    comma = true;
+                    break;
+                case NULL:
+                    sb.append("\"\"");
+                    comma = true;
+                    break;
+                default: // TRUE、FALSE
+                    sb.append('"');
+                    tokenizer.appendRaw(sb);
+                    sb.append('"');
+                    comma = true;
+            }
+            token = tokenizer.next();
+        }
+        return true;
+    }
+
+    /**
+     * description: 当前key或字符串解码并全角转半角后写入value（先清空）
+     * param: [tokenizer, value]
+     * return: void
+     * time: 2018/8/21 9:10
+     */
+    private static void decode(JsonTokenizer tokenizer, StringBuilder value) {
+        value.setLength(0);
+        if (!tokenizer.isEscaped()) {
+            CharacterUtils.appendQj2bjCharNumber(tokenizer.source(), tokenizer.start(), tokenizer.end(), value);
+            return;
+        }
+        tokenizer.appendUnescaped(value);
+        for (int i = 0; i < value.length(); i++) {
+            value.setCharAt(i, CharacterUtils.qj2bjCharNumber(value.charAt(i)));
+        }
+    }
+
+    /**
+     * description: 按json-lib的写法带引号写出字符串：转义引号、反斜杠、"</"中的'/'和控制字符，其他字符原样写出
+     * param: [value, sb]
+     * return: void
+     * time: 2018/8/21 9:20
+     */
+    static void quote(CharSequence value, StringBuilder sb) {
+        sb.append('"');
+        char previous = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    sb.append('\\').append(c);
+                    break;
+                case '/':
+                    if (previous == '<') {
+                        sb.append('\\');
+                    }
+                    sb.append(c);
+                    break;
+                case '\b':
+                    sb.append("\\b");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                default:
+                    if (c < ' ') {
+                        String hex = Integer.toHexString(c);
+                        sb.append("\\u").append("0000", 0, 4 - hex.length()).append(hex);
+                    } else {
+                        sb.append(c);
+                    }
+            }
+            previous = c;
+        }
+        sb.append('"');
+    }
+
+    /**
+     * description: json-lib写入字符串值时会当作json、函数解析或去掉引号的字符串
+     * param: [value]
+     * return: boolean
+     * time: 2018/8/21 9:30
+     */
+    static boolean isJsonLibSpecial(CharSequence value) {
+        int length = value.length();
+        if (length == 0) {
+            return false;
+        }
+        int first = 0;
+        while (first < length && value.charAt(first) <= ' ') {
+            first++;
+        }
+        if (first < length && (value.charAt(first) == '{' || value.charAt(first) == '[')) {
+            return hasClosingBracket(value, first);
+        }
+        char c = value.charAt(0);
+        char last = value.charAt(length - 1);
+        return c == '\\' || c == '\'' || last == '"' || last == '\''
+                || (length >= 8 && "function".contentEquals(value.subSequence(0, 8)));
+    }
+
+    /**
+     * description: value从from开始是否有'}'或']'。没有结束括号的"{x"、"[1,2"被json-lib当作普通字符串，
+     * "["、"[,"等则使json-lib无限递归或耗尽内存，都按普通字符串处理
+     * param: [value, from]
+     * return: boolean
+     * time: 2018/8/21 9:35
+     */
+    static boolean hasClosingBracket(CharSequence value, int from) {
+        for (int i = from; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '}' || c == ']') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * description: 按json-lib的结果带引号写出数值，超出Double范围时返回false。json-lib把整数解析为Integer或Long，
+     * 超出Long范围的整数和小数解析为Double：顶层容器的直接成员按Double.toString输出（1.50为1.5，1e3为1000.0），
+     * 更深的成员先经过json-lib序列化（去掉小数末尾的0，1000.0为1000）再解析一次
+     * param: [json, start, end, nested, sb]
+     * return: boolean
+     * time: 2018/8/21 9:40
+     */
+    static boolean appendNumber(String json, int start, int end, boolean nested, StringBuilder sb) {
+        int digits = json.charAt(start) == '-' ? start + 1 : start;
+        boolean integral = true;
+        for (int i = digits; i < end; i++) {
+            char c = json.charAt(i);
+            if (c < '0' || c > '9') {
+                integral = false;
+                break;
+            }
+        }
+        if (integral && end - digits <= 18 && !(end - digits == 1 && digits > start && json.charAt(digits) == '0')) {
+            sb.append('"').append(json, start, end).append('"'); // Long范围内，除"-0"外原样输出
+            return true;
+        }
+        String number = json.substring(start, end);
+        if (integral) {
+            try {
+                long value = Long.parseLong(number);
+                sb.append('"').append(value).append('"');
+                return true;
+            } catch (NumberFormatException e) {
+                // 超出Long范围，json-lib按Double处理
+            }
+        }
+        double d = Double.parseDouble(number);
+        if (Double.isInfinite(d)) {
+            return false;
+        }
+        String formatted = Double.toString(d);
+        if (nested && formatted.indexOf('E') < 0) {
+            int length = formatted.length();
+            while (formatted.charAt(length - 1) == '0') {
+                length--;
+            }
+            if (formatted.charAt(length - 1) == '.') {
+                length--;
+                formatted = Long.toString(Long.parseLong(formatted.substring(0, length))); // 整数再解析一次，"-0"为"0"
+            } else {
+                formatted = formatted.substring(0, length);
+            }
+        }
+        sb.append('"').append(formatted).append('"');
+        return true;
+    }
+
+}
@@ -0,0 +1,242 @@
+package com.payegis.tools.string;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/22
+ * time: 10:00
+ * description: 预编译的json路径投影：一次编译多个路径（如"user.id"、"$.rules[0].name"），编译成前缀树，
+ * 基于JsonTokenizer流式求值，不在任何路径上的子树只做括号匹配跳过，所有路径都找到后立即停止扫描，不解析文档剩余部分。
+ * 取值规则：字符串为解码后的内容，数值、true、false为原文，null为空字符串，对象与数组为原文片段，不存在的路径为null；
+ * 同一路径出现多次时取第一次。编译结果不可变，可被多线程共享
+ */
+public class JsonPath {
+    private final String[] paths;
+    private final Node root = new Node();
+
+    private JsonPath(String[] paths) {
+        this.paths = paths;
+    }
+
+    /**
+     * description: 编译路径，段之间以.分隔，数组下标以[n]表示，可以$或$.开头；路径不合法时抛出IllegalArgumentException
+     * param: [paths]
+     * return: com.payegis.tools.string.JsonPath
+     * time: 2018/8/22 10:10
+     */
+    public static JsonPath compile(String... paths) {
+        JsonPath jsonPath = new JsonPath(paths.clone());
+        for (int i = 0; i < paths.length; i++) {
+            Node node = jsonPath.root;
+            for (Object segment : parse(paths[i])) {
+                node = segment instanceof String ? node.name((String) segment) : node.index((Integer) segment);
+            }
+            node.targets = Arrays.copyOf(node.targets, node.targets.length + 1);
+            node.targets[node.targets.length - 1] = i;
+        }
+        return jsonPath;
+    }
+
+    private static List<Object> parse(String path) {
+        List<Object> segments = new ArrayList<>();
+        int i = path.startsWith("$") ? 1 : 0;
+        int length = path.length();
+        while (i < length) {
+            char c = path.charAt(i);
+            if (c == '[') {
+                int close = path.indexOf(']', i);
+                if (close < 0) {
+                    throw new IllegalArgumentException("illegal json path " + path + ", unclosed '['");
+                }
+                try {
+                    segments.add(Integer.parseInt(path.substring(i + 1, close).trim()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("illegal json path " + path + ", array index must be a number", e);
+                }
+                i = close + 1;
+            } else if (c == '.') {
+                i++;
+            } else {
+                int end = i;
+                while (end < length && path.charAt(end) != '.' && path.charAt(end) != '[') {
+                    end++;
+                }
+                segments.add(path.substring(i, end));
+                i = end;
+            }
+        }
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("illegal json path " + path + ", it is empty");
+        }
+        return segments;
+    }
+
+    /**
+     * description: 求值，返回与编译时路径一一对应的值；不是json时全部为null，json不合法时抛出IllegalArgumentException
+     * param: [json]
+     * return: java.lang.String[]
+     * time: 2018/8/22 10:20
+     */
+    public String[] evaluate(String json) {
+        String[] values = new String[paths.length];
+        evaluate(json, values);
+        return values;
+    }
+
+    /**
+     * description: 求值并写入values（长度不小于路径数，可在多行之间复用），返回找到的路径数
+     * param: [json, values]
+     * return: int
+     * time: 2018/8/22 10:25
+     */
+    public int evaluate(String json, String[] values) {
+        Arrays.fill(values, 0, paths.length, null);
+        if (json == null || !JsonTokenizer.mayBeJson(json)) {
+            return 0;
+        }
+        JsonTokenizer tokenizer = new JsonTokenizer(json);
+        return paths.length - walk(tokenizer, tokenizer.next(), root, values, paths.length);
+    }
+
+    /**
+     * description: 遍历当前容器内与前缀树匹配的成员，返回仍未找到的路径数，为0时立即返回
+     * param: [tokenizer, token, node, values, remaining]
+     * return: int
+     * time: 2018/8/22 10:30
+     */
+    private static int walk(JsonTokenizer tokenizer, JsonTokenizer.Token token, Node node, String[] values, int remaining) {
+        if (token == JsonTokenizer.Token.BEGIN_OBJECT) {
+            token = tokenizer.next();
+            while (token == JsonTokenizer.Token.NAME) {
+                Node child = node.child(tokenizer);
+                if (child == null) {
+                    tokenizer.skipValue();
+                } else if ((remaining = visit(tokenizer, tokenizer.next(), child, values, remaining)) == 0) {
+                    return 0;
+                }
+                token = tokenizer.next();
+            }
+        } else if (token == JsonTokenizer.Token.BEGIN_ARRAY) {
+            int index = 0;
+            token = tokenizer.next();
+            while (token != JsonTokenizer.Token.END_ARRAY) {
+                Node child = node.child(index++);
+                if (child == null) {
+                    tokenizer.skipChildren();
+                } else if ((remaining = visit(tokenizer, token, child, values, remaining)) == 0) {
+                    return 0;
+                }
+                token = tokenizer.next();
+            }
+        }
+        return remaining;
+    }
+
+    private static int visit(JsonTokenizer tokenizer, JsonTokenizer.Token token, Node node, String[] values, int remaining) {
+        boolean container = token == JsonTokenizer.Token.BEGIN_OBJECT || token == JsonTokenizer.Token.BEGIN_ARRAY;
+        if (node.targets.length == 0) {
+            if (!container) {
+                return remaining;
+            }
+            if (node.hasChildren()) {
+                return walk(tokenizer, token, node, values, remaining);
+            }
+            tokenizer.skipChildren();
+            return remaining;
+        }
+        String value;
+        if (container) {
+            int start = tokenizer.start();
+            if (node.hasChildren()) {
+                remaining = walk(tokenizer, token, node, values, remaining); // 本节点的值尚未取到，remaining不会为0
+            } else {
+                tokenizer.skipChildren();
+            }
+            value = tokenizer.source().substring(start, tokenizer.end());
+        } else {
+            value = valueOf(tokenizer, token);
+        }
+        for (int target : node.targets) {
+            if (values[target] == null) {
+                values[target] = value;
+                remaining--;
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * description: 标量token的取值：字符串解码，null为空字符串，其他为原文
+     * param: [tokenizer, token]
+     * return: java.lang.String
+     * time: 2018/8/22 10:40
+     */
+    static String valueOf(JsonTokenizer tokenizer, JsonTokenizer.Token token) {
+        return token == JsonTokenizer.Token.NULL ? "" : tokenizer.stringValue();
+    }
+
+    public String[] getPaths() {
+        return paths.clone();
+    }
+
+    /**
+     * 前缀树节点：按名称或数组下标的子节点，以及在此结束的路径序号
+     */
+    private static final class Node {
+        private String[] names = new String[0];
+        private Node[] nameChildren = new Node[0];
+        private int[] indexes = new int[0];
+        private Node[] indexChildren = new Node[0];
+        private int[] targets = new int[0];
+
+        Node name(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return nameChildren[i];
+                }
+            }
+            names = Arrays.copyOf(names, names.length + 1);
+            nameChildren = Arrays.copyOf(nameChildren, nameChildren.length + 1);
+            names[names.length - 1] = name;
+            return nameChildren[nameChildren.length - 1] = new Node();
+        }
+
+        Node index(int index) {
+            Node child = child(index);
+            if (child != null) {
+                return child;
+            }
+            indexes = Arrays.copyOf(indexes, indexes.length + 1);
+            indexChildren = Arrays.copyOf(indexChildren, indexChildren.length + 1);
+            indexes[indexes.length - 1] = index;
+            return indexChildren[indexChildren.length - 1] = new Node();
+        }
+
+        Node child(JsonTokenizer tokenizer) {
+            for (int i = 0; i < names.length; i++) {
+                if (tokenizer.valueEquals(names[i])) {
+                    return nameChildren[i];
+                }
+            }
+            return null;
+        }
+
+        Node child(int index) {
+            for (int i = 0; i < indexes.length; i++) {
+                if (indexes[i] == index) {
+                    return indexChildren[i];
+                }
+            }
+            return null;
+        }
+
+        boolean hasChildren() {
+            return names.length > 0 || indexes.length > 0;
+        }
+    }
+
+}
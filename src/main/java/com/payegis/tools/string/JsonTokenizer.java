@@ -0,0 +1,441 @@
+package com.payegis.tools.string;
+
+import java.util.Arrays;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/20
+ * time: 9:30
+ * description: 基于字符扫描的JSON拉取式解析器，逐个返回token，不构建对象树；取值时只记录在原字符串中的区间，
+ * 需要时再解码（stringValue）或原样拷贝（appendRaw），遍历过程不分配对象。按RFC 8259严格校验结构，
+ * 语法错误时抛出IllegalArgumentException。非线程安全，每个字符串新建或reset复用
+ */
+public class JsonTokenizer {
+
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, TRUE, FALSE, NULL, END_DOCUMENT
+    }
+
+    private static final byte EMPTY_DOCUMENT = 0;
+    private static final byte NONEMPTY_DOCUMENT = 1;
+    private static final byte EMPTY_OBJECT = 2;
+    private static final byte DANGLING_NAME = 3;
+    private static final byte NONEMPTY_OBJECT = 4;
+    private static final byte EMPTY_ARRAY = 5;
+    private static final byte NONEMPTY_ARRAY = 6;
+
+    private String json;
+    private int length;
+    private int pos;
+    private byte[] stack = new byte[32];
+    private int depth;
+    private int start; // 当前token在json中的区间[start, end)，字符串不含引号
+    private int end;
+    private boolean escaped; // 当前字符串是否含转义
+    private Token token;
+
+    public JsonTokenizer(String json) {
+        reset(json);
+    }
+
+    /**
+     * description: 改为解析另一个字符串，复用内部状态
+     * param: [json]
+     * return: void
+     * time: 2018/8/20 9:40
+     */
+    public void reset(String json) {
+        this.json = json;
+        this.length = json.length();
+        this.pos = 0;
+        this.depth = 1;
+        this.stack[0] = EMPTY_DOCUMENT;
+        this.token = null;
+    }
+
+    /**
+     * description: 读取下一个token，文档结束后返回END_DOCUMENT
+     * param: []
+     * return: com.payegis.tools.string.JsonTokenizer.Token
+     * time: 2018/8/20 9:45
+     */
+    public Token next() {
+        int c;
+        switch (stack[depth - 1]) {
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                return token = readValue(nextNonWhitespace());
+            case NONEMPTY_DOCUMENT:
+                if (nextNonWhitespace() != -1) {
+                    throw syntaxError("unexpected character after document end");
+                }
+                return token = Token.END_DOCUMENT;
+            case EMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    return token = endContainer(Token.END_OBJECT);
+                }
+                return token = readName(c);
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    return token = endContainer(Token.END_OBJECT);
+                }
+                if (c != ',') {
+                    throw syntaxError("expected ',' or '}'");
+                }
+                return token = readName(nextNonWhitespace());
+            case DANGLING_NAME:
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("expected ':'");
+                }
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                return token = readValue(nextNonWhitespace());
+            case EMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return token = endContainer(Token.END_ARRAY);
+                }
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                return token = readValue(c);
+            default: // NONEMPTY_ARRAY
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return token = endContainer(Token.END_ARRAY);
+                }
+                if (c != ',') {
+                    throw syntaxError("expected ',' or ']'");
+                }
+                return token = readValue(nextNonWhitespace());
+        }
+    }
+
+    /**
+     * description: 跳过下一个值（对象、数组整体跳过，只做括号匹配与字符串扫描），用于NAME之后或数组元素
+     * param: []
+     * return: void
+     * time: 2018/8/20 10:00
+     */
+    public void skipValue() {
+        int level = 0;
+        do {
+            Token t = next();
+            if (t == Token.BEGIN_OBJECT || t == Token.BEGIN_ARRAY) {
+                level++;
+            } else if (t == Token.END_OBJECT || t == Token.END_ARRAY) {
+                level--;
+            } else if (t == Token.END_DOCUMENT) {
+                return;
+            }
+        } while (level > 0);
+    }
+
+    /**
+     * description: 当前token为BEGIN_OBJECT或BEGIN_ARRAY时跳过其全部内容，停在对应的END上；其他token不做处理
+     * param: []
+     * return: void
+     * time: 2018/8/22 9:30
+     */
+    public void skipChildren() {
+        if (token != Token.BEGIN_OBJECT && token != Token.BEGIN_ARRAY) {
+            return;
+        }
+        int target = depth - 1;
+        while (depth > target) {
+            next();
+        }
+    }
+
+    private Token endContainer(Token endToken) {
+        depth--;
+        start = pos - 1;
+        end = pos;
+        return endToken;
+    }
+
+    private Token readName(int c) {
+        if (c != '"') {
+            throw syntaxError("expected name");
+        }
+        readString();
+        stack[depth - 1] = DANGLING_NAME;
+        return Token.NAME;
+    }
+
+    private Token readValue(int c) {
+        switch (c) {
+            case '{':
+                push(EMPTY_OBJECT);
+                start = pos - 1;
+                end = pos;
+                return Token.BEGIN_OBJECT;
+            case '[':
+                push(EMPTY_ARRAY);
+                start = pos - 1;
+                end = pos;
+                return Token.BEGIN_ARRAY;
+            case '"':
+                readString();
+                return Token.STRING;
+            case 't':
+                return readLiteral("true", Token.TRUE);
+            case 'f':
+                return readLiteral("false", Token.FALSE);
+            case 'n':
+                return readLiteral("null", Token.NULL);
+            case -1:
+                throw syntaxError("unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return readNumber();
+                }
+                throw syntaxError("unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void readString() {
+        start = pos;
+        escaped = false;
+        while (pos < length) {
+            char c = json.charAt(pos++);
+            if (c == '"') {
+                end = pos - 1;
+                return;
+            } else if (c == '\\') {
+                escaped = true;
+                if (pos >= length) {
+                    break;
+                }
+                char e = json.charAt(pos++);
+                if (e == 'u') {
+                    if (pos + 4 > length) {
+                        break;
+                    }
+                    for (int i = 0; i < 4; i++) {
+                        if (Character.digit(json.charAt(pos++), 16) < 0) {
+                            throw syntaxError("illegal unicode escape");
+                        }
+                    }
+                } else if ("\"\\/bfnrt".indexOf(e) < 0) {
+                    throw syntaxError("illegal escape '\\" + e + "'");
+                }
+            } else if (c < 0x20) {
+                throw syntaxError("unescaped control character");
+            }
+        }
+        throw syntaxError("unterminated string");
+    }
+
+    private Token readLiteral(String literal, Token literalToken) {
+        start = pos - 1;
+        if (!json.startsWith(literal, start)) {
+            throw syntaxError("unexpected literal");
+        }
+        pos = start + literal.length();
+        end = pos;
+        return literalToken;
+    }
+
+    private Token readNumber() {
+        start = pos - 1;
+        int p = start;
+        if (json.charAt(p) == '-') {
+            p++;
+        }
+        int digits = p;
+        while (p < length && isDigit(json.charAt(p))) {
+            p++;
+        }
+        if (p == digits) {
+            throw syntaxError("illegal number");
+        }
+        if (p < length && json.charAt(p) == '.') {
+            int fraction = ++p;
+            while (p < length && isDigit(json.charAt(p))) {
+                p++;
+            }
+            if (p == fraction) {
+                throw syntaxError("illegal number");
+            }
+        }
+        if (p < length && (json.charAt(p) == 'e' || json.charAt(p) == 'E')) {
+            p++;
+            if (p < length && (json.charAt(p) == '+' || json.charAt(p) == '-')) {
+                p++;
+            }
+            int exponent = p;
+            while (p < length && isDigit(json.charAt(p))) {
+                p++;
+            }
+            if (p == exponent) {
+                throw syntaxError("illegal number");
+            }
+        }
+        pos = end = p;
+        return Token.NUMBER;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private int nextNonWhitespace() {
+        while (pos < length) {
+            char c = json.charAt(pos++);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private void push(byte scope) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = scope;
+    }
+
+    private IllegalArgumentException syntaxError(String message) {
+        return new IllegalArgumentException(message + " at position " + pos);
+    }
+
+    /**
+     * description: 当前token，未开始时为null
+     */
+    public Token token() {
+        return token;
+    }
+
+    /**
+     * description: 当前嵌套深度，顶层值内部为1
+     */
+    public int depth() {
+        return depth - 1;
+    }
+
+    /**
+     * description: 当前token在原字符串中的起始位置（字符串不含引号，对象与数组的开始、结束为括号所在位置）
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * description: 当前token在原字符串中的结束位置（不含）
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * description: 当前字符串（NAME、STRING）是否含转义字符
+     */
+    public boolean isEscaped() {
+        return escaped;
+    }
+
+    public String source() {
+        return json;
+    }
+
+    /**
+     * description: 当前token的值：NAME、STRING为解码后的字符串，NUMBER、TRUE、FALSE、NULL为原文
+     * param: []
+     * return: java.lang.String
+     * time: 2018/8/20 10:30
+     */
+    public String stringValue() {
+        if (!escaped || (token != Token.NAME && token != Token.STRING)) {
+            return json.substring(start, end);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        appendUnescaped(sb);
+        return sb.toString();
+    }
+
+    /**
+     * description: 当前NAME或STRING的内容与target是否相同，无转义时不分配对象
+     * param: [target]
+     * return: boolean
+     * time: 2018/8/20 10:35
+     */
+    public boolean valueEquals(String target) {
+        if (escaped) {
+            return stringValue().equals(target);
+        }
+        return end - start == target.length() && json.regionMatches(start, target, 0, target.length());
+    }
+
+    /**
+     * description: 将当前token的原文（字符串不含引号、转义不解码）追加到sb
+     * param: [sb]
+     * return: void
+     * time: 2018/8/20 10:40
+     */
+    public void appendRaw(StringBuilder sb) {
+        sb.append(json, start, end);
+    }
+
+    /**
+     * description: 将当前字符串解码后追加到sb
+     * param: [sb]
+     * return: void
+     * time: 2018/8/20 10:45
+     */
+    public void appendUnescaped(StringBuilder sb) {
+        for (int i = start; i < end; i++) {
+            char c = json.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char e = json.charAt(++i);
+            switch (e) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    sb.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default:
+                    sb.append(e);
+            }
+        }
+    }
+
+    /**
+     * description: 字符串的第一个非空白字符是否为'{'或'['，用于O(1)排除非JSON的单元格
+     * param: [str]
+     * return: boolean
+     * time: 2018/8/20 10:50
+     */
+    public static boolean mayBeJson(String str) {
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            if (c == '{' || c == '[') {
+                return true;
+            }
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+}
@@ -286,6 +286,42 @@ public class StringUtils {
         return someValue;
     }
 
+    /**
+     * description: 获取json字符串多层嵌套中第level层（顶层为1）某个key的value值，单遍流式扫描，
+     * 比level更深的子树直接跳过，找到即停止；value取值规则同JsonPath，不存在时返回null
+     * param: [level, jsonStr, someKey]
+     * return: java.lang.String
+     * date: 2018/8/22
+     * time: 11:00
+     */
+    public static String getKeyOfJson(int level, String jsonStr, String someKey) {
+        if (jsonStr == null || level < 1 || !JsonTokenizer.mayBeJson(jsonStr)) {
+            return null;
+        }
+        try {
+            JsonTokenizer tokenizer = new JsonTokenizer(jsonStr);
+            JsonTokenizer.Token token = tokenizer.next();
+            while (token != JsonTokenizer.Token.END_DOCUMENT) {
+                if (token == JsonTokenizer.Token.NAME && tokenizer.depth() == level && tokenizer.valueEquals(someKey)) {
+                    token = tokenizer.next();
+                    int start = tokenizer.start();
+                    if (token == JsonTokenizer.Token.BEGIN_OBJECT || token == JsonTokenizer.Token.BEGIN_ARRAY) {
+                        tokenizer.skipChildren();
+                        return jsonStr.substring(start, tokenizer.end());
+                    }
+                    return JsonPath.valueOf(tokenizer, token);
+                }
+                if (tokenizer.depth() > level) {
+                    tokenizer.skipChildren();
+                }
+                token = tokenizer.next();
+            }
+        } catch (IllegalArgumentException e) {
+            logger.error("illegal json string " + jsonStr + ", get key " + someKey + " of level " + level + " exception!", e);
+        }
+        return null;
+    }
+
     /**
      * 取出JsonObject中字段的所有value，以String数组的形式返回
      * <p>
@@ -313,6 +349,7 @@ public class StringUtils {
      * Description: 清洗Json格式字符串，同样适用于非json字符串，清洗规则如下：
      * 1.如果值为null，改为空字符串，如{"key":null}修改为{"key":""}
      * 2.将全角的字母和数字转换成半角字母和数字
+     * 一般的文档单遍扫描，不构建对象树，见JsonNormalizer；结果依赖json-lib解析细节的文档仍交给json-lib
      * Param: [jsonStr]
      * Return: java.lang.String
      * Date: 2018/4/10
@@ -320,6 +357,18 @@ public class StringUtils {
      */
     public static String etlJsonStr(String jsonStr) {
         if (jsonStr == null) return null;
+        String normalized = JsonNormalizer.normalize(jsonStr);
+        return normalized != null ? normalized : etlJsonStrByJsonLib(jsonStr);
+    }
+
+    /**
+     * Description: 基于json-lib清洗Json格式字符串，数组逐个元素清洗后原位替换，json-lib解析失败时原样返回
+     * Param: [jsonStr]
+     * Return: java.lang.String
+     * Date: 2018/4/10
+     * Time: 9:19
+     */
+    private static String etlJsonStrByJsonLib(String jsonStr) {
         String returnStr = jsonStr;
         try {
             if (StringUtils.checkValidJsonObjectStr(jsonStr)) {
@@ -329,14 +378,14 @@ public class StringUtils {
             } else if (StringUtils.checkValidJsonArrayStr(jsonStr)) {
                 JSONArray returnJsonArray = JSONArray.fromObject(jsonStr);
                 for (int i = 0; i < returnJsonArray.size(); i++) {
-                    returnJsonArray.add(i, etlJsonStr(returnJsonArray.optString(i)));
+                    returnJsonArray.set(i, etlJsonStr(returnJsonArray.optString(i)));
                 }
                 returnStr = returnJsonArray.toString();
             } else {
                 returnStr = CharacterUtils.qj2bjCharNumber(jsonStr);
             }
             if ("null".equals(returnStr)) returnStr = "";
-        } catch (Exception e) {
+        } catch (Exception | StackOverflowError e) { // json-lib解析"["等不完整的数组时无限递归
             logger.error("parse json string " + jsonStr + " exception!", e);
         }
         return returnStr;
@@ -352,10 +401,19 @@ public class StringUtils {
      * time: 16:02
      */
     public static void etlJsonObject(JSONObject jsonObject) {
-        Iterator<String> keys = jsonObject.keys();
-        while (keys.hasNext()) {
-            String key = CharacterUtils.qj2bjCharNumber(keys.next());
-            String value = CharacterUtils.qj2bjCharNumber(jsonObject.optString(key));
+        // 先取出全部key，key转换后与原来不同时不能边遍历边写入；清空后按原顺序写回
+        List<String> keys = new ArrayList<>();
+        for (Object key : jsonObject.keySet()) {
+            keys.add(key.toString());
+        }
+        List<String> values = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            values.add(CharacterUtils.qj2bjCharNumber(jsonObject.optString(key)));
+        }
+        jsonObject.clear();
+        for (int k = 0; k < keys.size(); k++) {
+            String key = CharacterUtils.qj2bjCharNumber(keys.get(k));
+            String value = values.get(k);
             if ("null".equals(value)) {
                 value = "";
                 jsonObject.put(key, value);
@@ -374,7 +432,7 @@ public class StringUtils {
     }
 
     /**
-     * Description: 取出JSONObject中的所有kv，返回一个map
+     * Description: 取出JSONObject中的所有kv，返回一个map；只展开第一层，批量展开嵌套json到固定的列见JsonFlattener
      * Param: [jsonObject]
      * Return: java.util.HashMap<java.lang.String , java.lang.String>
      * Date: 2018/4/17
@@ -398,7 +456,7 @@ public class StringUtils {
     }
 
     /**
-     * Description: 从JSONObject中获取需要的字段
+     * Description: 从JSONObject中获取需要的字段；输入为json字符串时见getNeedColumn(String, String...)，无需解析整个文档
      * Param: [jsonObject, params]
      * Return: net.sf.json.JSONObject
      * Date: 2018/4/19
@@ -413,13 +471,64 @@ public class StringUtils {
     }
 
     /**
-     * description: 将json类型字符串中的key全部转换为驼峰命名：第一个单词首字母小写，后面的单词首字母大写
+     * description: 从json字符串中获取需要的字段，字段为JsonPath路径（如"user.id"），用JsonPath预编译后流式求值，
+     * 不解析整个文档；多行取相同字段时先编译再用getNeedColumn(String, JsonPath)。
+     * 不存在的字段为空字符串，同getNeedColumn(JSONObject, String...)
+     * param: [jsonStr, params]
+     * return: net.sf.json.JSONObject
+     * date: 2018/8/22
+     * time: 11:20
+     */
+    public static JSONObject getNeedColumn(String jsonStr, String... params) {
+        return getNeedColumn(jsonStr, JsonPath.compile(params));
+    }
+
+    /**
+     * description: 按预编译的路径从json字符串中获取需要的字段，结果的key为编译时的路径；找到全部字段之前json不合法时各字段均为空字符串
+     * param: [jsonStr, jsonPath]
+     * return: net.sf.json.JSONObject
+     * date: 2018/8/22
+     * time: 11:25
+     */
+    public static JSONObject getNeedColumn(String jsonStr, JsonPath jsonPath) {
+        String[] paths = jsonPath.getPaths();
+        String[] values = new String[paths.length];
+        try {
+            jsonPath.evaluate(jsonStr, values);
+        } catch (IllegalArgumentException e) {
+            logger.error("illegal json string " + jsonStr + ", get need column exception!", e);
+            Arrays.fill(values, null);
+        }
+        JSONObject newJsonObject = new JSONObject();
+        for (int i = 0; i < paths.length; i++) {
+            newJsonObject.put(paths[i], values[i] == null ? "" : values[i]);
+        }
+        return newJsonObject;
+    }
+
+    /**
+     * description: 将json类型字符串中的key全部转换为驼峰命名：第一个单词首字母小写，后面的单词首字母大写；
+     * value与json-lib重新序列化的结果一致（数值、true、false转为字符串，重复的key合并为数组）。
+     * 一般的文档单遍流式改写，依赖json-lib解析细节的文档仍交给json-lib，见JsonKeyRewriter.rewriteStringified；
+     * value需原样保留时用JsonKeyRewriter.CAMEL_NAMED.rewrite。不是json时原样返回
      * param: [jsonStr]
      * return: java.lang.String
      * date: 2018/5/3
      * time: 16:12
      */
     public static String jsonStrKeyCamelNamed(String jsonStr) {
+        String rewritten = JsonKeyRewriter.CAMEL_NAMED.rewriteStringified(jsonStr);
+        return rewritten != null ? rewritten : jsonStrKeyCamelNamedByJsonLib(jsonStr);
+    }
+
+    /**
+     * description: 基于json-lib将key转换为驼峰命名
+     * param: [jsonStr]
+     * return: java.lang.String
+     * date: 2018/5/3
+     * time: 16:12
+     */
+    private static String jsonStrKeyCamelNamedByJsonLib(String jsonStr) {
         String returnStr;
         JSONObject returnJson = new JSONObject();
         try {
@@ -431,12 +540,12 @@ public class StringUtils {
                     String value = jsonObject.optString(key);
                     String camelNamedKey = camelNamed(key);
                     if (StringUtils.checkValidJsonObjectStr(value)) {
-                        String s = jsonStrKeyCamelNamed(value);
+                        String s = jsonStrKeyCamelNamedByJsonLib(value);
                         returnJson.put(camelNamedKey, s);
                     } else if (StringUtils.checkValidJsonArrayStr(value)) {
                         JSONArray jsonArray = JSONArray.fromObject(value);
                         for (int i = 0; i < jsonArray.size(); i++) {
-                            String s = jsonStrKeyCamelNamed(jsonArray.optString(i));
+                            String s = jsonStrKeyCamelNamedByJsonLib(jsonArray.optString(i));
                             jsonArray.set(i, s);
                         }
                         returnJson.put(camelNamedKey, jsonArray);
@@ -449,7 +558,7 @@ public class StringUtils {
                 JSONArray jsonArray = JSONArray.fromObject(jsonStr);
                 for (int i = 0; i < jsonArray.size(); i++) {
                     JSONObject jsonObject = JSONObject.fromObject(jsonArray.optString(i));
-                    String s = jsonStrKeyCamelNamed(jsonObject.toString());
+                    String s = jsonStrKeyCamelNamedByJsonLib(jsonObject.toString());
                     jsonArray.set(i, s);
                 }
                 returnStr = jsonArray.toString();
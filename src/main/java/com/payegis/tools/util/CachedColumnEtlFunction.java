@@ -0,0 +1,163 @@
+package com.payegis.tools.util;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/27
+ * time: 9:30
+ * description: 带缓存的列值清洗函数，缓存同一列中重复出现的值的清洗结果（如手机号、身份证号、日期的md5/sha/日期格式化）。
+ * 缓存有容量上限，淘汰时参考访问频率：新值的估计频率（count-min sketch，定期减半）高于最早放入的值时才替换它，否则最早放入的值移到队尾再给一次机会，
+ * 避免高基数列中只出现一次的值把缓存冲掉。线程安全：命中时不加锁（ConcurrentHashMap读取，频率计数允许并发时少计），
+ * 只有未命中后放入缓存时加锁，清洗计算在锁外进行
+ */
+public class CachedColumnEtlFunction implements ColumnEtlFunction {
+    private static final int SKETCH_DEPTH = 4;
+
+    private final ColumnEtlFunction delegate;
+    private final int maxSize;
+    private final Map<String, String> cache;
+    private final ArrayDeque<String> order; // 放入顺序，淘汰候选取队首，加锁访问
+    private final byte[][] sketch;
+    private final int sketchMask;
+    private final int resetThreshold;
+    private final AtomicInteger additions = new AtomicInteger();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder rejectionCount = new LongAdder();
+
+    public CachedColumnEtlFunction(ColumnEtlFunction delegate, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("cache max size must be positive: " + maxSize);
+        }
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.cache = new ConcurrentHashMap<>(Math.min(maxSize, 1 << 16) * 4 / 3 + 1);
+        this.order = new ArrayDeque<>(Math.min(maxSize, 1 << 16));
+        int width = Integer.highestOneBit(Math.max(16, maxSize * 2 - 1)) << 1;
+        this.sketch = new byte[SKETCH_DEPTH][width];
+        this.sketchMask = width - 1;
+        this.resetThreshold = maxSize * 10;
+    }
+
+    @Override
+    public String apply(String value) throws Exception {
+        increment(value);
+        String cached = cache.get(value);
+        if (cached != null) {
+            hitCount.increment();
+            return cached;
+        }
+        missCount.increment();
+        String result = delegate.apply(value);
+        if (result != null) {
+            synchronized (order) {
+                admit(value, result);
+            }
+        }
+        return result;
+    }
+
+    private void admit(String value, String result) {
+        if (cache.containsKey(value)) {
+            return; // 其他线程已放入
+        }
+        if (order.size() < maxSize) {
+            order.addLast(value);
+            cache.put(value, result);
+            return;
+        }
+        String victim = order.pollFirst();
+        if (frequency(value) > frequency(victim)) {
+            cache.remove(victim);
+            order.addLast(value);
+            cache.put(value, result);
+            evictionCount.increment();
+        } else {
+            order.addLast(victim); // 频率不低于新值，留在缓存中
+            rejectionCount.increment();
+        }
+    }
+
+    private void increment(String value) {
+        int hash = spread(value.hashCode());
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            byte[] row = sketch[i];
+            int index = indexOf(hash, i);
+            if (row[index] < Byte.MAX_VALUE) {
+                row[index]++; // 不加锁，并发时可能少计，只影响淘汰的选择
+            }
+        }
+        if (additions.incrementAndGet() == resetThreshold) { // 频率减半，让旧的热点值逐渐老化
+            for (byte[] row : sketch) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = (byte) (row[j] >>> 1);
+                }
+            }
+            additions.set(0);
+        }
+    }
+
+    private int frequency(String value) {
+        int hash = spread(value.hashCode());
+        int min = Byte.MAX_VALUE;
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            min = Math.min(min, sketch[i][indexOf(hash, i)]);
+        }
+        return min;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = hash * (0x9E3779B9 + row * 0x61C88646);
+        return (h ^ (h >>> 16)) & sketchMask;
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+
+    public ColumnEtlFunction getDelegate() {
+        return delegate;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public long getRejectionCount() {
+        return rejectionCount.sum();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public double hitRate() {
+        long hit = hitCount.sum();
+        long total = hit + missCount.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + cache.size() + "/" + maxSize + ", hit=" + getHitCount() + ", miss=" + getMissCount()
+                + ", eviction=" + getEvictionCount() + ", rejection=" + getRejectionCount();
+    }
+
+}
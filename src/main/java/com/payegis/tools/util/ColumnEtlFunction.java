@@ -0,0 +1,21 @@
+package com.payegis.tools.util;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/26
+ * time: 9:20
+ * description: 列值清洗函数，可通过ColumnEtlRegistry注册自定义清洗方法；实现须为无状态或线程安全
+ */
+@FunctionalInterface
+public interface ColumnEtlFunction {
+
+    /**
+     * description: 清洗列值，value不为null
+     * param: [value]
+     * return: java.lang.String
+     * time: 2018/7/26 9:22
+     */
+    String apply(String value) throws Exception;
+
+}
@@ -0,0 +1,195 @@
+package com.payegis.tools.util;
+
+import com.payegis.tools.datetime.ColumnDateParser;
+import org.apache.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/26
+ * time: 10:00
+ * description: 编译后的按列清洗计划：方法名只在编译时解析一次为清洗函数，逐行清洗时不再按字符串分派。
+ * 每列默认先做default（json）清洗再做指定清洗，与FileDivisionETL原有行为一致；方法名加前缀"raw:"（或单独写"raw"）表示该列跳过default清洗。
+ * 计划不可变，可被多个线程共享
+ */
+public class ColumnEtlPlan {
+    private static Logger logger = Logger.getLogger(ColumnEtlPlan.class);
+    public static final String RAW_PREFIX = "raw:";
+    public static final String RAW = "raw";
+    private static final int MAX_CACHED_PLANS = 64;
+    private static final Map<List<String>, ColumnEtlPlan> cachedPlans = new ConcurrentHashMap<>(); // 按方法名数组缓存的计划，见cached
+
+    private final ColumnEtlFunction defaultFunction;
+    private final String[] methods;
+    private final ColumnEtlFunction[] functions;
+    private final boolean[] skipDefault;
+
+    private ColumnEtlPlan(ColumnEtlFunction defaultFunction, String[] methods, ColumnEtlFunction[] functions, boolean[] skipDefault) {
+        this.defaultFunction = defaultFunction;
+        this.methods = methods;
+        this.functions = functions;
+        this.skipDefault = skipDefault;
+    }
+
+    /**
+     * description: 编译清洗计划，etlMethods[i]为第i列的清洗方法，超出部分的列只做default清洗
+     * param: [etlMethods]
+     * return: com.payegis.tools.util.ColumnEtlPlan
+     * time: 2018/7/26 10:05
+     */
+    public static ColumnEtlPlan compile(String... etlMethods) {
+        int n = etlMethods.length;
+        String[] methods = new String[n];
+        ColumnEtlFunction[] functions = new ColumnEtlFunction[n];
+        boolean[] skipDefault = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            String method = etlMethods[i];
+            if (RAW.equals(method)) {
+                skipDefault[i] = true;
+                method = null;
+            } else if (method != null && method.startsWith(RAW_PREFIX)) {
+                skipDefault[i] = true;
+                method = method.substring(RAW_PREFIX.length());
+            }
+            methods[i] = method;
+            if (method != null) {
+                functions[i] = ColumnEtlRegistry.getForColumn(method); // 开启缓存的方法每列一个缓存
+                if (functions[i] == null) {
+                    logger.error("there is no this etl method: " + method + " for column " + i);
+                    functions[i] = String::trim; // 与ColumnValueEtl一致，未知方法只做trim
+                }
+            }
+        }
+        return new ColumnEtlPlan(ColumnEtlRegistry.get(ColumnEtlRegistry.DEFAULT), methods, functions, skipDefault);
+    }
+
+    /**
+     * description: 按方法名数组获取缓存的计划，不存在时编译；供逐行传入方法名的调用（如FileDivisionETL.etlColumn）使用，
+     * 避免每行重新编译、按列学习的方法（dateTime）每行从头学习。最多缓存MAX_CACHED_PLANS个，超出时清空；
+     * ColumnEtlRegistry注册方法或修改缓存设置时清空，之后重新编译
+     * param: [etlMethods]
+     * return: com.payegis.tools.util.ColumnEtlPlan
+     * time: 2018/8/28 10:00
+     */
+    public static ColumnEtlPlan cached(String... etlMethods) {
+        List<String> key = Arrays.asList(etlMethods);
+        ColumnEtlPlan plan = cachedPlans.get(key);
+        if (plan == null) {
+            if (cachedPlans.size() >= MAX_CACHED_PLANS) {
+                cachedPlans.clear();
+            }
+            plan = compile(etlMethods);
+            cachedPlans.putIfAbsent(Arrays.asList(etlMethods.clone()), plan);
+        }
+        return plan;
+    }
+
+    static void clearCachedPlans() {
+        cachedPlans.clear();
+    }
+
+    /**
+     * description: 获取第column列清洗方法的缓存，用于查看命中率等统计；该列未开启缓存时返回null
+     * param: [column]
+     * return: com.payegis.tools.util.CachedColumnEtlFunction
+     * time: 2018/7/27 10:25
+     */
+    public CachedColumnEtlFunction getCache(int column) {
+        if (column < functions.length && functions[column] instanceof CachedColumnEtlFunction) {
+            return (CachedColumnEtlFunction) functions[column];
+        }
+        return null;
+    }
+
+    /**
+     * description: 输出各列缓存的统计信息
+     * param: []
+     * return: java.lang.String
+     * time: 2018/7/27 10:28
+     */
+    public String cacheStats() {
+        StringBuilder stats = new StringBuilder();
+        for (int i = 0; i < functions.length; i++) {
+            CachedColumnEtlFunction cache = getCache(i);
+            if (cache != null) {
+                stats.append("column ").append(i).append(" [").append(methods[i]).append("]: ").append(cache).append("\n");
+            }
+        }
+        return stats.toString();
+    }
+
+    /**
+     * description: 获取第column列的日期清洗（dateTime方法），用于查看识别出的格式与回退率；该列不是dateTime方法时返回null
+     * param: [column]
+     * return: com.payegis.tools.datetime.ColumnDateParser
+     * time: 2018/8/27 11:10
+     */
+    public ColumnDateParser getDateParser(int column) {
+        if (column >= functions.length) {
+            return null;
+        }
+        ColumnEtlFunction function = functions[column];
+        if (function instanceof CachedColumnEtlFunction) {
+            function = ((CachedColumnEtlFunction) function).getDelegate();
+        }
+        return function instanceof ColumnDateParser ? (ColumnDateParser) function : null;
+    }
+
+    /**
+     * description: 输出各日期列识别出的格式、锁定的形状与回退率
+     * param: []
+     * return: java.lang.String
+     * time: 2018/8/27 11:15
+     */
+    public String dateStats() {
+        StringBuilder stats = new StringBuilder();
+        for (int i = 0; i < functions.length; i++) {
+            ColumnDateParser parser = getDateParser(i);
+            if (parser != null) {
+                stats.append("column ").append(i).append(" [").append(methods[i]).append("]: ").append(parser).append("\n");
+            }
+        }
+        return stats.toString();
+    }
+
+    /**
+     * description: 按计划清洗一行，直接修改columns
+     * param: [columns]
+     * return: void
+     * time: 2018/7/26 10:15
+     */
+    public void apply(String[] columns) {
+        for (int i = 0; i < columns.length; i++) {
+            String value = columns[i];
+            if (i >= functions.length || !skipDefault[i]) {
+                value = apply(defaultFunction, ColumnEtlRegistry.DEFAULT, value);
+            }
+            if (i < functions.length && functions[i] != null) {
+                value = apply(functions[i], methods[i], value);
+            }
+            columns[i] = value;
+        }
+    }
+
+    /**
+     * description: 执行单个清洗函数，异常时记录日志并返回trim后的原值
+     * param: [function, method, value]
+     * return: java.lang.String
+     * time: 2018/7/26 10:18
+     */
+    static String apply(ColumnEtlFunction function, String method, String value) {
+        if (value == null) return null;
+        try {
+            return function.apply(value);
+        } catch (Exception e) {
+            logger.error("etl value " + value + " with etl method " + method + " exception!", e);
+            return value.trim();
+        }
+    }
+
+}
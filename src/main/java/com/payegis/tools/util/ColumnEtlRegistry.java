@@ -0,0 +1,121 @@
+package com.payegis.tools.util;
+
+import com.payegis.tools.datetime.ColumnDateParser;
+import com.payegis.tools.datetime.DateTimeUtils;
+import com.payegis.tools.encrypt.Base64;
+import com.payegis.tools.encrypt.MD5Utils;
+import com.payegis.tools.encrypt.ShaUtils;
+import com.payegis.tools.personal.IdCardUtils;
+import com.payegis.tools.personal.NameUtils;
+import com.payegis.tools.personal.PhoneUtils;
+import com.payegis.tools.string.NumberUtils;
+import com.payegis.tools.string.StringUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/26
+ * time: 9:30
+ * description: 列值清洗方法注册表，按方法名查找清洗函数；内置ColumnValueEtl支持的全部方法，可注册自定义方法或覆盖内置方法。
+ * 带状态的方法（如按列学习日期格式的dateTime）以工厂注册，ColumnEtlPlan中每列各用一个实例，不分列的调用使用无状态的函数
+ */
+public class ColumnEtlRegistry {
+    public static final String DEFAULT = "default";
+    private static final Map<String, ColumnEtlFunction> functions = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> cacheSizes = new ConcurrentHashMap<>(); // 开启了缓存的清洗方法及每列缓存容量
+    private static final Map<String, Supplier<? extends ColumnEtlFunction>> columnFactories = new ConcurrentHashMap<>(); // 按列创建实例的清洗方法
+
+    static {
+        register(DEFAULT, StringUtils::etlJsonStr);
+        register("name", NameUtils::etlName);
+        register("phone", PhoneUtils::etlPhone);
+        register("idCard", IdCardUtils::etlIdCard);
+        registerPerColumn("dateTime", DateTimeUtils::dateStr2DateStr, ColumnDateParser::new);
+        register("int", NumberUtils::transformFloatStrToIntStr);
+        register("float", value -> NumberUtils.transformNumberToDouble(value));
+        register("money", NumberUtils::moneyEtl);
+        register("md5_16", MD5Utils::strToMd5_16);
+        register("md5_32", MD5Utils::strToMd5_32);
+        register("sha256", ShaUtils::SHA256);
+        register("sha512", value -> ShaUtils.SHA512(value));
+        register("base64_encrypt", value -> Base64.encodeBase64(value.getBytes()));
+        register("base64_decrypt", value -> new String(Base64.decryptBase64(value)));
+    }
+
+    /**
+     * description: 注册清洗方法，同名方法会被覆盖
+     * param: [etlMethod, function]
+     * return: void
+     * time: 2018/7/26 9:35
+     */
+    public static void register(String etlMethod, ColumnEtlFunction function) {
+        columnFactories.remove(etlMethod);
+        functions.put(etlMethod, function);
+        ColumnEtlPlan.clearCachedPlans();
+    }
+
+    /**
+     * description: 注册按列带状态的清洗方法，同名方法会被覆盖：之后编译的ColumnEtlPlan中使用该方法的每一列各自调用factory创建实例，
+     * 实例须线程安全；不分列的调用（ColumnValueEtl.etl、get）使用function，function应无状态且结果与实例一致。
+     * 不分列的调用混合了不同列的值，共用一个按列学习的实例会锁定先出现的列的格式，其他列的值都走回退路径
+     * param: [etlMethod, function, factory]
+     * return: void
+     * time: 2018/8/27 11:00
+     */
+    public static void registerPerColumn(String etlMethod, ColumnEtlFunction function, Supplier<? extends ColumnEtlFunction> factory) {
+        functions.put(etlMethod, function);
+        columnFactories.put(etlMethod, factory);
+        ColumnEtlPlan.clearCachedPlans();
+    }
+
+    /**
+     * description: 按方法名获取清洗函数，不存在时返回null
+     * param: [etlMethod]
+     * return: com.payegis.tools.util.ColumnEtlFunction
+     * time: 2018/7/26 9:36
+     */
+    public static ColumnEtlFunction get(String etlMethod) {
+        return etlMethod == null ? null : functions.get(etlMethod);
+    }
+
+    /**
+     * description: 为清洗方法开启按列缓存，之后编译的ColumnEtlPlan中使用该方法的每一列各自持有一个容量为maxSize的缓存；
+     * 只应对结果只取决于输入值的方法开启，高基数列不建议开启
+     * param: [etlMethod, maxSize]
+     * return: void
+     * time: 2018/7/27 10:10
+     */
+    public static void enableCache(String etlMethod, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("cache max size must be positive: " + maxSize);
+        }
+        cacheSizes.put(etlMethod, maxSize);
+        ColumnEtlPlan.clearCachedPlans();
+    }
+
+    public static void disableCache(String etlMethod) {
+        cacheSizes.remove(etlMethod);
+        ColumnEtlPlan.clearCachedPlans();
+    }
+
+    /**
+     * description: 获取一列的清洗函数：按列注册的方法每次调用创建新实例，该方法开启了缓存时返回包装了新缓存的函数（每次调用都是独立的缓存）
+     * param: [etlMethod]
+     * return: com.payegis.tools.util.ColumnEtlFunction
+     * time: 2018/7/27 10:15
+     */
+    static ColumnEtlFunction getForColumn(String etlMethod) {
+        Supplier<? extends ColumnEtlFunction> factory = etlMethod == null ? null : columnFactories.get(etlMethod);
+        ColumnEtlFunction function = factory == null ? get(etlMethod) : factory.get();
+        Integer cacheSize = etlMethod == null ? null : cacheSizes.get(etlMethod);
+        if (function == null || cacheSize == null) {
+            return function;
+        }
+        return new CachedColumnEtlFunction(function, cacheSize);
+    }
+
+}
@@ -1,14 +1,5 @@
 package com.payegis.tools.util;
 
-import com.payegis.tools.datetime.DateTimeUtils;
-import com.payegis.tools.encrypt.Base64;
-import com.payegis.tools.encrypt.MD5Utils;
-import com.payegis.tools.encrypt.ShaUtils;
-import com.payegis.tools.personal.IdCardUtils;
-import com.payegis.tools.personal.NameUtils;
-import com.payegis.tools.personal.PhoneUtils;
-import com.payegis.tools.string.NumberUtils;
-import com.payegis.tools.string.StringUtils;
 import org.apache.log4j.Logger;
 
 /**
@@ -30,43 +21,12 @@ public class ColumnValueEtl {
      */
     public static String etl(String value, String etlMethod) {
         if (value == null) return null;
-        String returnValue = value.trim();
-        try {
-            if ("default".equals(etlMethod)) {
-                return StringUtils.etlJsonStr(value);
-            } else if ("name".equals(etlMethod)) {
-                returnValue = NameUtils.etlName(value);
-            } else if ("phone".equals(etlMethod)) {
-                returnValue = PhoneUtils.etlPhone(value);
-            } else if ("idCard".equals(etlMethod)) {
-                returnValue = IdCardUtils.etlIdCard(value);
-            } else if ("dateTime".equals(etlMethod)) {
-                returnValue = DateTimeUtils.dateStr2DateStr(value);
-            } else if ("int".equals(etlMethod)) {
-                returnValue = NumberUtils.transformFloatStrToIntStr(value);
-            } else if ("float".equals(etlMethod)) {
-                returnValue = NumberUtils.transformNumberToDouble(value);
-            } else if ("money".equals(etlMethod)) {
-                returnValue = NumberUtils.moneyEtl(value);
-            } else if ("md5_16".equals(etlMethod)) {
-                returnValue = MD5Utils.strToMd5_16(value);
-            } else if ("md5_32".equals(etlMethod)) {
-                returnValue = MD5Utils.strToMd5_32(value);
-            } else if ("sha256".equals(etlMethod)) {
-                returnValue = ShaUtils.SHA256(value);
-            } else if ("sha512".equals(etlMethod)) {
-                returnValue = ShaUtils.SHA512(value);
-            } else if ("base64_encrypt".equals(etlMethod)) {
-                returnValue = Base64.encodeBase64(value.getBytes());
-            } else if ("base64_decrypt".equals(etlMethod)) {
-                returnValue = new String(Base64.decryptBase64(value));
-            } else {
-                logger.error("there is no this etl method: " + etlMethod + " to etl value: " + value);
-            }
-        } catch (Exception e) {
-            logger.error("etl value " + value + " with etl method " + etlMethod + " exception!", e);
+        ColumnEtlFunction function = ColumnEtlRegistry.get(etlMethod);
+        if (function == null) {
+            logger.error("there is no this etl method: " + etlMethod + " to etl value: " + value);
+            return value.trim();
         }
-        return returnValue;
+        return ColumnEtlPlan.apply(function, etlMethod, value);
     }
 
 }
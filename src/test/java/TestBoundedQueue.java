@@ -0,0 +1,125 @@
+import com.payegis.tools.pipeline.BoundedQueue;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/13
+ * time: 15:00
+ * description: 测试有界无锁队列BoundedQueue：单线程先进先出与容量边界，多生产者多消费者时每个元素恰好取出一次且同一生产者的元素保持顺序
+ */
+public class TestBoundedQueue {
+    private static Logger logger = Logger.getLogger(TestBoundedQueue.class);
+
+    public static void main(String[] args) throws InterruptedException {
+        t1();
+        t2();
+        System.out.println("bounded queue ok");
+    }
+
+    /**
+     * description: 容量取2的幂，满时offer返回false，空时poll返回null，多轮环绕后仍先进先出
+     * param: []
+     * return: void
+     * time: 2018/8/13 15:05
+     */
+    private static void t1() {
+        TestChecks.check(new BoundedQueue<Integer>(1).capacity() == 2, "capacity 1");
+        TestChecks.check(new BoundedQueue<Integer>(8).capacity() == 8, "capacity 8");
+        BoundedQueue<Integer> queue = new BoundedQueue<>(5);
+        TestChecks.check(queue.capacity() == 8 && queue.poll() == null, "empty queue");
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 10; round++) {
+            while (queue.offer(next)) {
+                next++;
+            }
+            TestChecks.check(queue.size() == 8, "full size " + queue.size());
+            for (int i = 0; i < 5; i++) {
+                TestChecks.check(queue.poll() == expected++, "fifo round " + round);
+            }
+        }
+        Integer e;
+        while ((e = queue.poll()) != null) {
+            TestChecks.check(e == expected++, "drain");
+        }
+        TestChecks.check(expected == next && queue.size() == 0, "drained " + expected + " of " + next);
+        try {
+            new BoundedQueue<Integer>(0);
+            TestChecks.check(false, "capacity 0 accepted");
+        } catch (IllegalArgumentException ignore) {
+        }
+    }
+
+    /**
+     * description: 4个生产者、4个消费者并发读写小容量队列
+     * param: []
+     * return: void
+     * time: 2018/8/13 15:10
+     */
+    private static void t2() throws InterruptedException {
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 250000;
+        BoundedQueue<long[]> queue = new BoundedQueue<>(16);
+        AtomicInteger taken = new AtomicInteger();
+        boolean[][] seen = new boolean[producers][perProducer];
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(producers + consumers);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long[] e = {producer, i};
+                    while (!queue.offer(e)) {
+                        Thread.yield();
+                    }
+                }
+                done.countDown();
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads.add(new Thread(() -> {
+                long[] last = new long[producers];
+                Arrays.fill(last, -1);
+                while (taken.get() < producers * perProducer) {
+                    long[] e = queue.poll();
+                    if (e == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    taken.incrementAndGet();
+                    int producer = (int) e[0];
+                    if (e[1] <= last[producer]) {
+                        errors.incrementAndGet(); // 同一生产者的元素乱序
+                    }
+                    last[producer] = e[1];
+                    synchronized (seen) {
+                        if (seen[producer][(int) e[1]]) {
+                            errors.incrementAndGet(); // 重复取出
+                        }
+                        seen[producer][(int) e[1]] = true;
+                    }
+                }
+                done.countDown();
+            }));
+        }
+        threads.forEach(Thread::start);
+        done.await();
+        TestChecks.check(errors.get() == 0, "errors " + errors.get());
+        TestChecks.check(taken.get() == producers * perProducer && queue.poll() == null, "taken " + taken.get());
+        for (boolean[] producer : seen) {
+            for (boolean s : producer) {
+                TestChecks.check(s, "element lost");
+            }
+        }
+    }
+
+}
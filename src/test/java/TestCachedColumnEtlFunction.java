@@ -0,0 +1,92 @@
+import com.payegis.tools.util.CachedColumnEtlFunction;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/27
+ * time: 15:40
+ * description: 测试带缓存的列值清洗CachedColumnEtlFunction：结果与原清洗函数一致，容量有界，热点值不被只出现一次的值冲掉
+ */
+public class TestCachedColumnEtlFunction {
+    private static Logger logger = Logger.getLogger(TestCachedColumnEtlFunction.class);
+
+    public static void main(String[] args) throws Exception {
+        t1();
+        t2();
+        System.out.println("cached column etl function ok");
+    }
+
+    /**
+     * description: 多线程并发清洗：结果正确，命中与未命中次数之和等于调用次数，缓存大小不超过容量
+     * param: []
+     * return: void
+     * time: 2018/7/27 15:45
+     */
+    private static void t1() throws Exception {
+        AtomicLong calls = new AtomicLong();
+        CachedColumnEtlFunction cache = new CachedColumnEtlFunction(value -> {
+            calls.incrementAndGet();
+            return "v" + value;
+        }, 256);
+        int threads = 4;
+        int perThread = 200000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                futures.add(pool.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < perThread; i++) {
+                        String value = String.valueOf(random.nextInt(10) < 9 ? random.nextInt(200) : random.nextInt(1000000));
+                        TestChecks.check(("v" + value).equals(cache.apply(value)), "value " + value);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        long total = (long) threads * perThread;
+        TestChecks.check(cache.getHitCount() + cache.getMissCount() == total, "hit + miss " + cache);
+        TestChecks.check(cache.getMissCount() == calls.get(), "miss " + cache.getMissCount() + " calls " + calls.get());
+        TestChecks.check(cache.size() <= 256, "size " + cache);
+        TestChecks.check(cache.hitRate() > 0.8, "hit rate " + cache);
+        System.out.println("concurrent: " + cache);
+    }
+
+    /**
+     * description: 热点值反复出现，中间夹着大量只出现一次的值，热点值仍留在缓存中
+     * param: []
+     * return: void
+     * time: 2018/7/27 15:50
+     */
+    private static void t2() throws Exception {
+        CachedColumnEtlFunction cache = new CachedColumnEtlFunction(String::trim, 100);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 200; i++) {
+                cache.apply("hot" + i % 50);
+                cache.apply("once" + round + "_" + i);
+            }
+        }
+        long hits = cache.getHitCount();
+        for (int i = 0; i < 50; i++) {
+            cache.apply("hot" + i);
+        }
+        TestChecks.check(cache.getHitCount() - hits == 50, "hot values evicted " + cache);
+        TestChecks.check(cache.getRejectionCount() > 0, "rejection " + cache);
+    }
+
+}
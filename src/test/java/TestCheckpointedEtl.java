@@ -0,0 +1,109 @@
+import com.payegis.tools.file.DelimiterSplitter;
+import com.payegis.tools.file.FileCodec;
+import com.payegis.tools.file.FileDivisionETL;
+import com.payegis.tools.pipeline.CheckpointedEtl;
+import com.payegis.tools.sink.DelimitedFileSink;
+import com.payegis.tools.util.ColumnEtlPlan;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/16
+ * time: 14:20
+ * description: 测试可断点续传的清洗CheckpointedEtl：输出端中途失败后重新运行，输出与一次完整运行相同（无重复、无缺失），完成后删除检查点
+ */
+public class TestCheckpointedEtl {
+    private static Logger logger = Logger.getLogger(TestCheckpointedEtl.class);
+    private static final String[] METHODS = {"int", "name", "phone", "dateTime"};
+    private static final Charset CHARSET = Charset.defaultCharset(); // 与FileDivisionETL流式清洗读取的编码一致
+
+    public static void main(String[] args) throws IOException {
+        File file = File.createTempFile("test-checkpoint-", ".csv");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), CHARSET))) {
+            write(writer);
+        }
+        File gz = File.createTempFile("test-checkpoint-", ".csv.gz");
+        gz.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(FileCodec.GZIP.encode(Files.newOutputStream(gz.toPath())), CHARSET))) {
+            write(writer);
+        }
+        List<String> expected = new ArrayList<>();
+        FileDivisionETL.etl(file.getPath(), ",", row -> expected.add(String.join(",", row)), METHODS);
+        t1(file, expected);
+        t1(gz, expected);
+        System.out.println("checkpointed etl ok, " + expected.size() + " lines");
+    }
+
+    private static void write(PrintWriter writer) {
+        for (int i = 0; i < 20000; i++) {
+            writer.println(i + ".0,张三" + (i % 10) + ",+86 138001380" + String.format("%02d", i % 100) + ",2018/8/" + (i % 28 + 1));
+        }
+    }
+
+    /**
+     * description: 输出端依次在不同行数后失败，每次以append方式重新打开输出继续运行，最终输出与完整运行一致；
+     * 压缩输入无法定位，恢复时跳过已处理的行
+     * param: [file, expected]
+     * return: void
+     * time: 2018/8/16 14:30
+     */
+    private static void t1(File file, List<String> expected) throws IOException {
+        File output = File.createTempFile("test-checkpoint-", ".out");
+        output.deleteOnExit();
+        String checkpointPath = output.getPath() + ".checkpoint";
+        new File(checkpointPath).deleteOnExit();
+        CheckpointedEtl job = new CheckpointedEtl(file.getPath(), DelimiterSplitter.compile(","), ColumnEtlPlan.compile(METHODS), checkpointPath)
+                .setCharset(CHARSET).setCheckpointLines(1000);
+        int[] failAfter = {2500, 7999, 1};
+        int failures = 0;
+        for (int limit : failAfter) {
+            try (DelimitedFileSink sink = new FailingSink(output.getPath(), job.hasCheckpoint(), limit)) {
+                job.run(sink);
+            } catch (IOException e) {
+                TestChecks.check(e.getMessage().startsWith("sink failed"), "sink failure " + e);
+                TestChecks.check(job.hasCheckpoint(), "checkpoint is kept after failure");
+                failures++;
+            }
+        }
+        TestChecks.check(failures == failAfter.length, "failures " + failures);
+        try (DelimitedFileSink sink = new DelimitedFileSink(output.getPath(), ",", FileCodec.NONE, CHARSET, job.hasCheckpoint())) {
+            job.run(sink);
+        }
+        TestChecks.check(!job.hasCheckpoint(), "checkpoint is deleted after finish");
+        List<String> actual = Files.readAllLines(output.toPath(), CHARSET);
+        TestChecks.check(actual.equals(expected), "resumed output of " + file.getName() + ", " + actual.size() + " lines");
+    }
+
+    /**
+     * 写入limit行之后失败的文件输出端
+     */
+    private static class FailingSink extends DelimitedFileSink {
+        private final int limit;
+        private int rows;
+
+        FailingSink(String filePath, boolean append, int limit) throws IOException {
+            super(filePath, ",", FileCodec.NONE, CHARSET, append);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(String[] row) throws IOException {
+            if (rows++ == limit) {
+                throw new IOException("sink failed after " + limit + " rows");
+            }
+            super.write(row);
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/19
+ * time: 11:05
+ * description: 测试类共用的断言方法，条件不满足时抛出异常使测试失败
+ */
+public class TestChecks {
+
+    /**
+     * description: 条件不满足时抛出IllegalStateException
+     * param: [condition, message]
+     * return: void
+     * time: 2018/7/19 11:06
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("check failed: " + message);
+        }
+    }
+
+}
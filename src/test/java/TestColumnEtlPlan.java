@@ -0,0 +1,97 @@
+import com.payegis.tools.datetime.ColumnDateParser;
+import com.payegis.tools.datetime.DateLayout;
+import com.payegis.tools.file.FileDivisionETL;
+import com.payegis.tools.util.ColumnEtlPlan;
+import com.payegis.tools.util.ColumnEtlRegistry;
+import com.payegis.tools.util.ColumnValueEtl;
+import org.apache.log4j.Logger;
+
+import java.util.Arrays;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/26
+ * time: 15:20
+ * description: 测试编译后的按列清洗计划ColumnEtlPlan：结果与逐列调用ColumnValueEtl一致，raw前缀跳过default清洗
+ */
+public class TestColumnEtlPlan {
+    private static Logger logger = Logger.getLogger(TestColumnEtlPlan.class);
+
+    public static void main(String[] args) {
+        t1();
+        t2();
+        t3();
+        System.out.println("column etl plan ok");
+    }
+
+    /**
+     * description: 与先default再按方法名调用ColumnValueEtl.etl的结果一致，超出方法数的列只做default清洗，未知方法只做trim
+     * param: []
+     * return: void
+     * time: 2018/7/26 15:25
+     */
+    private static void t1() {
+        String[] methods = {"int", "name", "phone", "idCard", "dateTime", "md5_32", "noSuchMethod"};
+        ColumnEtlPlan plan = ColumnEtlPlan.compile(methods);
+        String[][] rows = {
+                {"12.0", " 张三 ", "+86 138-0013-8000", "11010519491231002X", "2018/8/1 9:05:03", "abc", " x ", " extra "},
+                {"7", "李四", "13800138000", "110105194912310021", "20180801", "", "y", "{\"a\":1}"},
+                {"3.6", "王 五", "8613800138000", "", " 2018-08-01 ", "中文", "", null},
+        };
+        for (String[] row : rows) {
+            String[] expected = new String[row.length];
+            for (int i = 0; i < row.length; i++) {
+                String value = ColumnValueEtl.etl(row[i], ColumnEtlRegistry.DEFAULT);
+                expected[i] = i < methods.length ? ColumnValueEtl.etl(value, methods[i]) : value;
+            }
+            String[] columns = row.clone();
+            plan.apply(columns);
+            TestChecks.check(Arrays.equals(columns, expected), Arrays.toString(columns) + " != " + Arrays.toString(expected));
+        }
+    }
+
+    /**
+     * description: "raw:"前缀与单独的"raw"跳过default清洗，自定义方法注册后编译生效
+     * param: []
+     * return: void
+     * time: 2018/7/26 15:30
+     */
+    private static void t2() {
+        ColumnEtlRegistry.register("upper", String::toUpperCase);
+        ColumnEtlPlan plan = ColumnEtlPlan.compile("raw:upper", "upper", "raw", "raw:noSuchMethod");
+        String json = "{\"userName\":\"a\"}";
+        String[] columns = {json, json, " keep ", " trim "};
+        plan.apply(columns);
+        TestChecks.check(columns[0].equals(json.toUpperCase()), "raw:upper " + columns[0]);
+        TestChecks.check(columns[1].equals(ColumnValueEtl.etl(json, ColumnEtlRegistry.DEFAULT).toUpperCase()), "upper " + columns[1]);
+        TestChecks.check(columns[2].equals(" keep "), "raw " + columns[2]);
+        TestChecks.check(columns[3].equals("trim"), "raw unknown method " + columns[3]);
+    }
+
+    /**
+     * description: 按方法名数组缓存的计划：相同方法名复用同一计划，注册方法后重新编译；不分列的dateTime不使用按列学习的实例
+     * param: []
+     * return: void
+     * time: 2018/8/28 10:30
+     */
+    private static void t3() {
+        String[] methods = {"int", "dateTime"};
+        ColumnEtlPlan plan = ColumnEtlPlan.cached(methods);
+        TestChecks.check(ColumnEtlPlan.cached("int", "dateTime") == plan, "plan is not cached");
+        methods[1] = "name";
+        TestChecks.check(ColumnEtlPlan.cached("int", "dateTime") == plan, "cache key changed with the caller's array");
+        for (int i = 1; i <= 20; i++) {
+            String[] columns = {i + ".0", "2018/8/" + i};
+            FileDivisionETL.etlColumn(columns, "int", "dateTime");
+            TestChecks.check(columns[1].equals(String.format("2018-08-%02d", i)), "etl column " + columns[1]);
+        }
+        Long counted = plan.getDateParser(1).getLayoutCounts().get(DateLayout.YMD_SLASH);
+        TestChecks.check(counted != null && counted == 20, "etl column did not reuse the cached plan: " + plan.dateStats());
+        ColumnEtlRegistry.register("upper", String::toUpperCase);
+        TestChecks.check(ColumnEtlPlan.cached("int", "dateTime") != plan, "cached plan kept after register");
+        TestChecks.check(!(ColumnEtlRegistry.get("dateTime") instanceof ColumnDateParser), "shared dateTime function learns formats");
+        TestChecks.check(ColumnValueEtl.etl("2018/8/24", "dateTime").equals("2018-08-24"), "column value etl dateTime");
+    }
+
+}
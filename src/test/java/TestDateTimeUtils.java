@@ -1,6 +1,14 @@
+import com.payegis.tools.datetime.ColumnDateParser;
+import com.payegis.tools.datetime.DateScanner;
 import com.payegis.tools.datetime.DateTimeUtils;
+import com.payegis.tools.util.RegexUtils;
 import org.apache.log4j.Logger;
 
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+
 /**
  * company:
  * user: chenzuoli
@@ -14,6 +22,12 @@ public class TestDateTimeUtils {
 
     public static void main(String[] args) {
         t1();
+        t2();
+        t3();
+        t4();
+        t5();
+        t6();
+        t7();
     }
 
     private static void t1() {
@@ -22,4 +36,202 @@ public class TestDateTimeUtils {
         logger.info(DateTimeUtils.dateStr2DateStr(dateStr));
     }
 
+    private static void t2() {
+        String[] dateStrs = {"2018/08/24", "08/24/2018", "20180824", "2018-08-24 9:30", "2018年8月24日 09时30分00秒", "2018-02-30"};
+        for (String dateStr : dateStrs) {
+            long fields = DateScanner.scan(dateStr);
+            System.out.println(dateStr + " -> " + (fields == DateScanner.INVALID ? "invalid"
+                    : DateScanner.layout(fields) + " " + DateScanner.format(fields) + " " + DateTimeUtils.dateStr2DateStr(dateStr)));
+        }
+    }
+
+    private static void t3() {
+        ColumnDateParser parser = new ColumnDateParser(10);
+        String[] dateStrs = {"2018-08-24 09:30:00", "2018-08-25 10:00:00", "2018/8/26", "2018-08-27 11:15:30", "2018-08-28 12:00:00",
+                "2018-08-29 13:45:00", "2018-08-30 14:00:00", "2018-08-31 15:30:00", "2018-09-01 16:00:00", "2018-09-02 17:00:00",
+                "2018-09-03 18:00:00", "2018-02-30 18:00:00", "2018/9/4", "2018-09-05 19:00:00"};
+        for (String dateStr : dateStrs) {
+            System.out.println(dateStr + " -> " + parser.apply(dateStr));
+        }
+        System.out.println(parser);
+    }
+
+    /**
+     * description: ColumnDateParser与DateTimeUtils.dateStr2DateStr的结果一致，包括锁定形状前后、混合格式、空值与非日期值
+     * param: []
+     * return: void
+     * time: 2018/8/27 15:00
+     */
+    private static void t4() {
+        String[] formats = {"%04d-%02d-%02d %02d:%02d:%02d", "%04d/%d/%d", "%04d%02d%02d", "%04d-%02d-%02d %d:%02d", "%04d年%d月%d日 %02d时%02d分%02d秒",
+                "%04d-%02d-%02d", " %04d-%02d-%02d %02d:%02d:%02d "};
+        String[] others = {"", "  ", "abc", "2018-02-30", "2018-13-01 00:00:00", "99999999", "时间2018-08-24", "12/31/18", "2018-08-24T09:30:00"};
+        Random random = new Random(25);
+        int[] sampleSizes = {1, 10, 100};
+        for (int sampleSize : sampleSizes) {
+            ColumnDateParser parser = new ColumnDateParser(sampleSize);
+            int dominant = random.nextInt(formats.length);
+            for (int i = 0; i < 20000; i++) {
+                String value;
+                int kind = random.nextInt(20);
+                if (kind < 15) {
+                    value = date(random, formats[kind < 12 ? dominant : random.nextInt(formats.length)]);
+                } else if (kind < 19) {
+                    value = others[random.nextInt(others.length)];
+                } else {
+                    value = null;
+                }
+                String expected = DateTimeUtils.dateStr2DateStr(value);
+                String actual = parser.apply(value);
+                TestChecks.check(expected == null ? actual == null : expected.equals(actual), "sample size " + sampleSize + ", " + value + ": " + actual + " != " + expected);
+            }
+            System.out.println("sample size " + sampleSize + ": " + parser);
+        }
+    }
+
+    /**
+     * description: 只有合法的值计入样本数；全是空值的列在尝试sampleSize * MAX_ATTEMPTS_FACTOR个值之后结束学习
+     * param: []
+     * return: void
+     * time: 2018/8/27 15:20
+     */
+    private static void t5() {
+        ColumnDateParser parser = new ColumnDateParser(10);
+        for (int i = 0; i < 10; i++) {
+            TestChecks.check(parser.getLockedShapes().isEmpty(), "locked after " + i + " valid samples");
+            parser.apply("");
+            parser.apply(null);
+            parser.apply("2018-08-" + (10 + i) + " 09:30:00");
+        }
+        TestChecks.check(parser.getLockedShapes().size() == 1, "locked shapes " + parser.getLockedShapes());
+
+        ColumnDateParser blank = new ColumnDateParser(10);
+        for (int i = 0; i < 10 * ColumnDateParser.MAX_ATTEMPTS_FACTOR; i++) {
+            blank.apply("");
+        }
+        blank.apply("2018-08-24 09:30:00");
+        TestChecks.check(blank.getFallbackCount() == 1, "blank column still learning: " + blank);
+        System.out.println("column date parser sampling ok");
+    }
+
+    /**
+     * description: DateScanner实现的dateStr2DateStr与原来逐个正则匹配再用非lenient的SimpleDateFormat解析的结果一致（1582年以后）
+     * param: []
+     * return: void
+     * time: 2018/8/27 16:00
+     */
+    private static void t6() {
+        String[] formats = {"%04d/%d/%d", "%04d/%02d", "%02d/%02d/%02d", "%d/%d/%04d", "%04d-%02d-%02d", "%04d-%d", "%04d", "%04d%02d%02d", "%04d%02d",
+                "%04d-%02d-%02d %02d:%02d:%02d", "%04d-%02d-%02d %02d:%02d", "%04d%02d%02d %02d:%02d:%02d", "%04d%02d%02d%02d%02d%02d",
+                "%04d-%02d-%02d %02d:%02d:%02d.%03d", "%04d年%02d月%02d日", "%04d年%d月%d日 %02d时%02d分%02d秒", "%04d年%02d月%02d日%02d时%02d分%02d秒",
+                "%04d年%02d月%02d日 %02d:%02d:%02d", "%04d年%02d月%02d日%02d:%02d:%02d", "%04d年%02d月%02d日 %02d:%02d", "%04d年%02d月%02d日%02d:%02d",
+                "%04d年%02d月", "%04d年", "时间：%04d-%02d-%02d %02d:%02d:%02d，", " %04d/%02d/%02d "};
+        Random random = new Random(24);
+        for (int i = 0; i < 50000; i++) {
+            String format = formats[random.nextInt(formats.length)];
+            int year = format.startsWith("%02d/%02d/%02d") ? random.nextInt(100) : 1900 + random.nextInt(200);
+            int[] fields = {year, random.nextInt(14), random.nextInt(33), random.nextInt(25), random.nextInt(61), random.nextInt(61), random.nextInt(1000)};
+            if (format.startsWith("%02d/%02d/%02d") || format.startsWith("%d/%d/%04d")) { // MM/dd/yy与MM/dd/yyyy年份在后
+                fields = new int[]{fields[1], fields[2], fields[0]};
+            }
+            String value = String.format(format, (Object[]) box(fields));
+            String expected = legacyDateStr2DateStr(value);
+            String actual = DateTimeUtils.dateStr2DateStr(value);
+            TestChecks.check(expected.equals(actual), value + ": " + actual + " != " + expected);
+        }
+        System.out.println("date scanner matches the regex implementation");
+    }
+
+    /**
+     * description: timestampToDateStr支持java.sql.Date与java.sql.Timestamp
+     * param: []
+     * return: void
+     * time: 2018/8/24 16:30
+     */
+    private static void t7() {
+        String sqlDate = DateTimeUtils.timestampToDateStr(DateTimeUtils.strToSqlDate("2018-08-24"));
+        TestChecks.check(sqlDate.equals("2018-08-24 00:00:00"), "sql date " + sqlDate);
+        String timestamp = DateTimeUtils.timestampToDateStr(java.sql.Timestamp.valueOf("2018-08-24 09:30:15.123"));
+        TestChecks.check(timestamp.equals("2018-08-24 09:30:15"), "timestamp " + timestamp);
+        System.out.println("timestamp to date string ok");
+    }
+
+    private static Integer[] box(int[] values) {
+        Integer[] boxed = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            boxed[i] = values[i];
+        }
+        return boxed;
+    }
+
+    // 原parseStringToDate依次匹配的正则与解析格式
+    private static final String[][] LEGACY_PARSE = {{RegexUtils.ymdSlash, "yyyy/MM/dd"}, {RegexUtils.ymSlash, "yyyy/MM"}, {RegexUtils.y_m_d, "yyyy-MM-dd"},
+            {RegexUtils.y_m, "yyyy-MM"}, {RegexUtils.y, "yyyy"}, {RegexUtils.ymd, "yyyyMMdd"}, {RegexUtils.ym, "yyyyMM"}, {RegexUtils.ymdhms, "yyyyMMddHHmmss"},
+            {RegexUtils.y_m_d_h_m, "yyyy-MM-dd HH:mm"}, {RegexUtils.ymd_h_m_s, "yyyyMMdd HH:mm:ss"}, {RegexUtils.y_m_d_h_m_s, "yyyy-MM-dd HH:mm:ss"},
+            {RegexUtils.y_m_d_h_m_s_S, "yyyy-MM-dd HH:mm:ss.SSS"}, {RegexUtils.mdy2Slash, "MM/dd/yy"}, {RegexUtils.mdy4Slash, "MM/dd/yyyy"},
+            {RegexUtils.ymdchinese, "yyyy年MM月dd日"}, {RegexUtils.ymdhmschinese, "yyyy年MM月dd日HH时mm分ss秒"},
+            {RegexUtils.ymdblankhmschinese, "yyyy年MM月dd日 HH时mm分ss秒"}, {RegexUtils.ymdchinesehms, "yyyy年MM月dd日HH:mm:ss"},
+            {RegexUtils.ymdchineseblankhms, "yyyy年MM月dd日 HH:mm:ss"}, {RegexUtils.ymdchinesehm, "yyyy年MM月dd日HH:mm"},
+            {RegexUtils.ymdchineseblankhm, "yyyy年MM月dd日 HH:mm"}, {RegexUtils.ymchinese, "yyyy年MM月"}, {RegexUtils.ychinese, "yyyy年"}};
+
+    // 原getDateFormat2依次匹配的正则与输出格式
+    private static final String[][] LEGACY_FORMAT = {{RegexUtils.ymdSlash, "yyyy-MM-dd"}, {RegexUtils.ymSlash, "yyyy-MM"}, {RegexUtils.y_m, "yyyy-MM"},
+            {RegexUtils.y_m_d, "yyyy-MM-dd"}, {RegexUtils.y, "yyyy"}, {RegexUtils.ymd, "yyyy-MM-dd"}, {RegexUtils.ym, "yyyy-MM-dd"},
+            {RegexUtils.ymdhms, "yyyy-MM-dd HH:mm:ss"}, {RegexUtils.y_m_d_h_m, "yyyy-MM-dd HH:mm"}, {RegexUtils.y_m_d_h_m_s, "yyyy-MM-dd HH:mm:ss"},
+            {RegexUtils.ymd_h_m_s, "yyyy-MM-dd HH:mm:ss"}, {RegexUtils.y_m_d_h_m_s_S, "yyyy-MM-dd HH:mm:ss.SSS"}, {RegexUtils.mdy2Slash, "yyyy-MM-dd"},
+            {RegexUtils.mdy4Slash, "yyyy-MM-dd"}, {RegexUtils.ymdchinese, "yyyy-MM-dd"}, {RegexUtils.ymdhmschinese, "yyyy-MM-dd HH:mm:ss"},
+            {RegexUtils.ymdblankhmschinese, "yyyy-MM-dd HH:mm:ss"}, {RegexUtils.ymdchinesehms, "yyyy-MM-dd HH:mm:ss"},
+            {RegexUtils.ymdchineseblankhms, "yyyy-MM-dd HH:mm:ss"}, {RegexUtils.ymdchinesehm, "yyyy-MM-dd HH:mm"},
+            {RegexUtils.ymdchineseblankhm, "yyyy-MM-dd HH:mm"}, {RegexUtils.ymchinese, "yyyy-MM"}, {RegexUtils.ychinese, "yyyy"}};
+
+    /**
+     * description: 原来的dateStr2DateStr：抽取日期，按正则选择格式解析，再按规整格式输出，失败时原样返回
+     */
+    private static String legacyDateStr2DateStr(String dateStr) {
+        String extracted = DateTimeUtils.getDateStrFromStr(dateStr).trim();
+        Date date = null;
+        for (String[] parse : LEGACY_PARSE) {
+            if (extracted.matches(parse[0])) {
+                try {
+                    date = legacyFormat(parse[1]).parse(extracted);
+                } catch (ParseException e) {
+                    if (parse[0].equals(RegexUtils.ymd)) {
+                        try {
+                            date = legacyFormat("yyyyMM").parse(extracted);
+                        } catch (ParseException e1) {
+                            // 不合法
+                        }
+                    }
+                }
+                break;
+            }
+        }
+        if (date == null) {
+            return dateStr;
+        }
+        for (String[] format : LEGACY_FORMAT) {
+            if (extracted.matches(format[0])) {
+                String pattern = format[0].equals(RegexUtils.ymd) && extracted.length() == 6 && extracted.charAt(4) == '0' ? "yyyy-MM" : format[1];
+                return legacyFormat(pattern).format(date);
+            }
+        }
+        return dateStr;
+    }
+
+    private static SimpleDateFormat legacyFormat(String pattern) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern);
+        format.setLenient(false);
+        return format;
+    }
+
+    private static String date(Random random, String format) {
+        int year = 1990 + random.nextInt(40);
+        int month = 1 + random.nextInt(12);
+        int day = 1 + random.nextInt(31); // 部分日期不存在，如2月30日
+        int hour = random.nextInt(24);
+        int minute = random.nextInt(60);
+        int second = random.nextInt(60);
+        return String.format(format, year, month, day, hour, minute, second);
+    }
+
 }
@@ -0,0 +1,55 @@
+import com.payegis.tools.file.FileDelimiterRecognizer;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/25
+ * time: 14:05
+ * description: 测试分隔符识别：抽样识别结果、分隔符库的保存以及无法识别时的返回值
+ */
+public class TestDelimiterRecognition {
+    private static Logger logger = Logger.getLogger(TestDelimiterRecognition.class);
+
+    public static void main(String[] args) throws IOException {
+        recognize();
+    }
+
+    /**
+     * description: 识别出的分隔符保存到分隔符库；无法识别时返回""，分隔符库不变
+     * param: []
+     * return: void
+     * time: 2018/7/25 14:10
+     */
+    private static void recognize() throws IOException {
+        File db = File.createTempFile("test-delimiter-db-", ".txt");
+        db.deleteOnExit();
+        Files.write(db.toPath(), Arrays.asList(",", "\t", "|"), StandardCharsets.UTF_8);
+        File data = File.createTempFile("test-delimiter-data-", ".txt");
+        data.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(data, "UTF-8")) {
+            for (int i = 0; i < 5000; i++) {
+                writer.println(i + "|name" + i + "|" + (i % 3 == 0 ? "a,b" : "c") + "|2018/8/" + (i % 28 + 1));
+            }
+        }
+        TestChecks.check("|".equals(FileDelimiterRecognizer.bestDelimiter(db.getPath(), data.getPath())), "best delimiter");
+        TestChecks.check(FileDelimiterRecognizer.bestDelimiter(Arrays.asList(",", "$"), data.getPath()).equals(","), "candidates");
+
+        Files.write(data.toPath(), Arrays.asList("a", "b", "c"), StandardCharsets.UTF_8);
+        TestChecks.check("".equals(FileDelimiterRecognizer.bestDelimiter(db.getPath(), data.getPath())), "unrecognized delimiter");
+        TestChecks.check(FileDelimiterRecognizer.bestDelimiter(Arrays.asList(",", "$"), data.getPath()) == null, "unrecognized candidates");
+        List<String> saved = Files.readAllLines(db.toPath(), StandardCharsets.UTF_8);
+        saved.remove("");
+        TestChecks.check(saved.size() == 3 && saved.contains("|"), "delimiter db " + saved);
+        System.out.println("delimiter recognizer ok");
+    }
+
+}
@@ -0,0 +1,57 @@
+import com.payegis.tools.file.DelimiterSplitter;
+import org.apache.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/24
+ * time: 11:00
+ * description: 测试行切分器DelimiterSplitter：非引号模式与String.split(Pattern.quote(delimiter))一致，引号模式按RFC4180处理
+ */
+public class TestDelimiterSplitter {
+    private static Logger logger = Logger.getLogger(TestDelimiterSplitter.class);
+
+    public static void main(String[] args) {
+        t1();
+        t2();
+        System.out.println("delimiter splitter ok");
+    }
+
+    /**
+     * description: 随机行与String.split对比，包括单字符、多字符分隔符以及首尾空字段
+     */
+    private static void t1() {
+        Random random = new Random(5);
+        String alphabet = "ab,$|:中 ";
+        for (String delimiter : new String[]{",", "$", "|", "::", "$|"}) {
+            DelimiterSplitter splitter = DelimiterSplitter.compile(delimiter);
+            for (int i = 0; i < 20000; i++) {
+                StringBuilder line = new StringBuilder();
+                int length = random.nextInt(12);
+                for (int j = 0; j < length; j++) {
+                    line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                String[] expected = line.toString().split(Pattern.quote(delimiter));
+                String[] actual = splitter.split(line.toString());
+                TestChecks.check(Arrays.equals(expected, actual), "[" + line + "] by [" + delimiter + "]: " + Arrays.toString(actual));
+            }
+        }
+    }
+
+    /**
+     * description: 引号模式：引号内的分隔符不切分，""为一个双引号；保留末尾空字段
+     */
+    private static void t2() {
+        DelimiterSplitter splitter = DelimiterSplitter.compile(",", true, true);
+        TestChecks.check(Arrays.equals(splitter.split("1,\"a,b\",\"say \"\"hi\"\"\",,"), new String[]{"1", "a,b", "say \"hi\"", "", ""}),
+                Arrays.toString(splitter.split("1,\"a,b\",\"say \"\"hi\"\"\",,")));
+        TestChecks.check(Arrays.equals(DelimiterSplitter.compile(",", true).split("x,\"\",y,,"), new String[]{"x", "", "y"}), "trailing empty fields");
+        TestChecks.check(DelimiterSplitter.field("a$b$$d", "$", 3).equals("d"), "field 3");
+        TestChecks.check(DelimiterSplitter.field("a$b", "$", 5).isEmpty(), "missing field");
+    }
+
+}
@@ -0,0 +1,126 @@
+import com.payegis.tools.file.DelimiterSplitter;
+import com.payegis.tools.file.FileDivisionETL;
+import com.payegis.tools.pipeline.EtlPipeline;
+import com.payegis.tools.sink.RowSink;
+import com.payegis.tools.util.ColumnEtlPlan;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/13
+ * time: 15:30
+ * description: 测试多阶段ETL流水线EtlPipeline：多线程时结果与FileDivisionETL流式清洗的行集合一致，单线程时保持行序，sink失败时抛出异常且不挂起
+ */
+public class TestEtlPipeline {
+    private static Logger logger = Logger.getLogger(TestEtlPipeline.class);
+    private static final String[] METHODS = {"int", "name", "phone", "dateTime"};
+
+    public static void main(String[] args) throws IOException {
+        File file = File.createTempFile("test-pipeline-", ".csv");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            for (int i = 0; i < 100000; i++) {
+                writer.println(i + ".0,张三" + (i % 10) + ",+86 138001380" + String.format("%02d", i % 100) + ",2018/8/" + (i % 28 + 1));
+            }
+        }
+        List<String> expected = new ArrayList<>();
+        FileDivisionETL.etl(file.getPath(), ",", row -> expected.add(String.join(",", row)), METHODS);
+        t1(file, expected);
+        t2(file, expected);
+        t3(file);
+        System.out.println("etl pipeline ok");
+    }
+
+    /**
+     * description: 切分、清洗、写出均为多线程，各sink收到的行合起来与流式清洗的结果相同（不保证行序）
+     * param: [file, expected]
+     * return: void
+     * time: 2018/8/13 15:35
+     */
+    private static void t1(File file, List<String> expected) throws IOException {
+        CollectSink first = new CollectSink(-1);
+        CollectSink second = new CollectSink(-1);
+        long rows = new EtlPipeline(file.getPath(), DelimiterSplitter.compile(","), ColumnEtlPlan.compile(METHODS), first, second)
+                .setSplitParallelism(2).setEtlParallelism(3).setBatchSize(100).setQueueCapacity(4).run();
+        List<String> actual = new ArrayList<>(first.rows);
+        actual.addAll(second.rows);
+        TestChecks.check(rows == expected.size() && first.flushed && second.flushed, "rows " + rows);
+        List<String> sortedExpected = new ArrayList<>(expected);
+        Collections.sort(actual);
+        Collections.sort(sortedExpected);
+        TestChecks.check(actual.equals(sortedExpected), "parallel pipeline rows");
+    }
+
+    /**
+     * description: 各阶段均为单线程时保持行序
+     * param: [file, expected]
+     * return: void
+     * time: 2018/8/13 15:40
+     */
+    private static void t2(File file, List<String> expected) throws IOException {
+        CollectSink sink = new CollectSink(-1);
+        new EtlPipeline(file.getPath(), DelimiterSplitter.compile(","), ColumnEtlPlan.compile(METHODS), sink).setEtlParallelism(1).run();
+        TestChecks.check(sink.rows.equals(expected), "ordered pipeline rows");
+    }
+
+    /**
+     * description: sink写入失败时其余阶段停止，run抛出该IOException
+     * param: [file]
+     * return: void
+     * time: 2018/8/13 15:45
+     */
+    private static void t3(File file) throws IOException {
+        try {
+            new EtlPipeline(file.getPath(), DelimiterSplitter.compile(","), ColumnEtlPlan.compile(METHODS), new CollectSink(1000))
+                    .setQueueCapacity(2).run();
+            TestChecks.check(false, "sink failure is swallowed");
+        } catch (IOException e) {
+            TestChecks.check(e.getMessage().startsWith("sink full"), "sink failure " + e);
+        }
+        try {
+            new EtlPipeline(file.getPath() + ".missing", DelimiterSplitter.compile(","), ColumnEtlPlan.compile(METHODS), new CollectSink(-1)).run();
+            TestChecks.check(false, "missing file is not reported");
+        } catch (IOException e) {
+            System.out.println("missing file: " + e);
+        }
+    }
+
+    /**
+     * 收集写入的行，写入limit行之后失败（limit小于0时不限）
+     */
+    private static class CollectSink implements RowSink {
+        private final int limit;
+        private final List<String> rows = new ArrayList<>();
+        private boolean flushed;
+
+        CollectSink(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(String[] row) throws IOException {
+            if (rows.size() == limit) {
+                throw new IOException("sink full after " + limit + " rows");
+            }
+            rows.add(String.join(",", row));
+        }
+
+        @Override
+        public void flush() {
+            flushed = true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
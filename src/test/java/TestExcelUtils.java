@@ -0,0 +1,225 @@
+import com.payegis.tools.file.ExcelUtils;
+import org.apache.log4j.Logger;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/1
+ * time: 15:00
+ * description: 测试Excel工具类ExcelUtils：SAX流式读取xlsx与整表读取结果一致，SXSSF流式写出后读回一致，多sheet并发读取，
+ * rowConsumer与rows的异常抛给调用方
+ */
+public class TestExcelUtils {
+    private static Logger logger = Logger.getLogger(TestExcelUtils.class);
+
+    public static void main(String[] args) throws IOException {
+        t1();
+        t2();
+        t3();
+        System.out.println("excel utils ok");
+    }
+
+    /**
+     * description: 文本、常规数字、文本格式数字、日期、布尔、空单元格与空行，流式读取与readExcel整表读取一致
+     * param: []
+     * return: void
+     * time: 2018/8/1 15:05
+     */
+    private static void t1() throws IOException {
+        File file = tempFile(".xlsx");
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            CellStyle text = wb.createCellStyle();
+            text.setDataFormat(wb.createDataFormat().getFormat("@"));
+            CellStyle date = wb.createCellStyle();
+            date.setDataFormat(wb.createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+            XSSFSheet sheet = wb.createSheet("first");
+            for (int i = 0; i < 1000; i++) {
+                if (i % 97 == 5) {
+                    continue; // 空行
+                }
+                XSSFRow row = sheet.createRow(i);
+                row.createCell(0).setCellValue("name" + i);
+                row.createCell(1).setCellValue(i * 1.25);
+                row.createCell(2).setCellValue(13800000000.0 + i);
+                row.getCell(2).setCellStyle(text);
+                if (i % 3 != 0) { // 空单元格
+                    row.createCell(4).setCellValue(43313.5 + i);
+                    row.getCell(4).setCellStyle(date);
+                }
+                row.createCell(5).setCellValue(i % 2 == 0);
+            }
+            wb.createSheet("second").createRow(0).createCell(0).setCellValue("not read");
+            try (OutputStream out = new FileOutputStream(file)) {
+                wb.write(out);
+            }
+        }
+        ArrayList<ArrayList<Object>> expected = ExcelUtils.readExcel(file);
+        List<ArrayList<Object>> rows = new ArrayList<>();
+        ExcelUtils.readExcel(file, rows::add);
+        TestChecks.check(expected != null && expected.size() > 900, "dom read " + (expected == null ? null : expected.size()));
+        TestChecks.check(rows.equals(expected), "stream read " + rows.size() + " rows, dom read " + expected.size() + " rows");
+
+        List<ArrayList<Object>> consumed = new ArrayList<>();
+        try {
+            ExcelUtils.readExcel(file, row -> {
+                if (consumed.size() == 10) {
+                    throw new IllegalStateException("stop");
+                }
+                consumed.add(row);
+            });
+            TestChecks.check(false, "consumer exception is swallowed");
+        } catch (IllegalStateException e) {
+            TestChecks.check("stop".equals(e.getMessage()) && consumed.size() == 10, "consumer exception " + e);
+        }
+        try {
+            ExcelUtils.readExcel(new File(file.getPath() + ".missing.xlsx"), row -> {
+            });
+            TestChecks.check(false, "missing file is not reported");
+        } catch (RuntimeException e) {
+            System.out.println("missing file: " + e);
+        }
+    }
+
+    /**
+     * description: 流式写出的行数远大于行窗口，读回与写入一致；null单元格写为空串，null行写为空行
+     * param: []
+     * return: void
+     * time: 2018/8/2 15:10
+     */
+    private static void t2() throws IOException {
+        File file = tempFile(".xlsx");
+        List<List<Object>> written = new ArrayList<>();
+        IntStream.range(0, 3000).forEach(i -> written.add(i % 500 == 7 ? null : Arrays.asList("row" + i, i, i % 4 == 0 ? null : "中文" + i)));
+        ExcelUtils.writeExcel(written.stream(), file.getPath());
+        ExcelUtils.writeExcel(written.iterator(), file.getPath(), 10);
+        List<ArrayList<Object>> rows = new ArrayList<>();
+        ExcelUtils.readExcel(file, rows::add);
+        TestChecks.check(rows.size() == written.size(), "rows " + rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            List<Object> values = written.get(i);
+            List<Object> expected = new ArrayList<>();
+            if (values != null) {
+                for (Object value : values) {
+                    expected.add(value == null ? "" : value.toString());
+                }
+            }
+            TestChecks.check(rows.get(i).equals(expected), "row " + i + ": " + rows.get(i) + " != " + expected);
+        }
+
+        Iterator<List<Object>> failing = new Iterator<List<Object>>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public List<Object> next() {
+                if (next == 100) {
+                    throw new IllegalStateException("stop");
+                }
+                return Arrays.asList(next++);
+            }
+        };
+        try {
+            ExcelUtils.writeExcel(failing, file.getPath(), 10);
+            TestChecks.check(false, "rows exception is swallowed");
+        } catch (IllegalStateException e) {
+            TestChecks.check("stop".equals(e.getMessage()), "rows exception " + e);
+        }
+        try {
+            ExcelUtils.writeExcel(written.iterator(), new File(file.getPath() + ".missing", "out.xlsx").getPath());
+            TestChecks.check(false, "write failure is not reported");
+        } catch (UncheckedIOException e) {
+            System.out.println("write failure: " + e.getMessage());
+        }
+    }
+
+    /**
+     * description: 并发读取多个sheet，各sheet的行保持原顺序；只读指定sheet；xls同样支持；rowConsumer的异常抛给调用方
+     * param: []
+     * return: void
+     * time: 2018/8/3 15:20
+     */
+    private static void t3() throws IOException {
+        File file = tempFile(".xlsx");
+        Map<String, List<List<String>>> expected = new HashMap<>();
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            for (String name : Arrays.asList("a", "b", "c")) {
+                XSSFSheet sheet = wb.createSheet(name);
+                List<List<String>> rows = new ArrayList<>();
+                for (int i = 0; i < 5000; i++) { // 3个sheet共15000行，超过队列容量，消费者停止时读取线程阻塞在队列上
+                    sheet.createRow(i).createCell(0).setCellValue(name + i);
+                    rows.add(Arrays.asList(name, name + i));
+                }
+                expected.put(name, rows);
+            }
+            try (OutputStream out = new FileOutputStream(file)) {
+                wb.write(out);
+            }
+        }
+        Map<String, List<List<String>>> sheets = new HashMap<>();
+        ExcelUtils.readExcelSheets(file, row -> sheets.computeIfAbsent(row[0], k -> new ArrayList<>()).add(Arrays.asList(row)));
+        TestChecks.check(sheets.equals(expected), "sheets " + sheets.keySet());
+
+        sheets.clear();
+        ExcelUtils.readExcelSheets(file, Collections.singleton("b"), 2, row -> sheets.computeIfAbsent(row[0], k -> new ArrayList<>()).add(Arrays.asList(row)));
+        TestChecks.check(sheets.size() == 1 && sheets.get("b").equals(expected.get("b")), "selected sheets " + sheets.keySet());
+
+        int[] consumed = new int[1];
+        try {
+            ExcelUtils.readExcelSheets(file, null, 3, row -> {
+                if (++consumed[0] == 100) {
+                    throw new IllegalStateException("stop");
+                }
+            });
+            TestChecks.check(false, "consumer exception is swallowed");
+        } catch (IllegalStateException e) {
+            TestChecks.check("stop".equals(e.getMessage()), "consumer exception " + e);
+        }
+
+        File xls = tempFile(".xls");
+        ArrayList<ArrayList<Object>> written = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            written.add(new ArrayList<>(Arrays.asList("x" + i, "y" + i)));
+        }
+        ExcelUtils.writeExcel(written, xls.getPath());
+        List<List<String>> rows = new ArrayList<>();
+        ExcelUtils.readExcelSheets(xls, row -> rows.add(Arrays.asList(row)));
+        TestChecks.check(rows.size() == written.size() && rows.get(99).equals(Arrays.asList("sheet1", "x99", "y99")), "xls sheets " + rows.size());
+
+        try {
+            ExcelUtils.readExcelSheets(new File(file.getPath() + ".missing.xls"), row -> {
+            });
+            TestChecks.check(false, "missing file is not reported");
+        } catch (UncheckedIOException e) {
+            System.out.println("missing file: " + e.getMessage());
+        }
+    }
+
+    private static File tempFile(String suffix) throws IOException {
+        File file = File.createTempFile("test-excel-", suffix);
+        file.deleteOnExit();
+        return file;
+    }
+
+}
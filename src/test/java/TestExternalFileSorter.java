@@ -0,0 +1,121 @@
+import com.payegis.tools.algorithm.ExternalFileSorter;
+import com.payegis.tools.file.FileUtils;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/6
+ * time: 15:00
+ * description: 测试大文件外部排序ExternalFileSorter：多批溢写、多轮归并、压缩溢写与压缩输入输出的结果都与内存中的稳定排序一致，出错时异常抛给调用方且不留临时文件
+ */
+public class TestExternalFileSorter {
+    private static Logger logger = Logger.getLogger(TestExternalFileSorter.class);
+
+    public static void main(String[] args) throws IOException {
+        File tmpDir = Files.createTempDirectory("test-sort-").toFile();
+        tmpDir.deleteOnExit();
+        List<String> lines = new ArrayList<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 100000; i++) {
+            lines.add(random.nextInt(1000) + "|" + i + "|" + Long.toHexString(random.nextLong()));
+        }
+        t1(lines, tmpDir);
+        t2(tmpDir);
+        TestChecks.check(tmpDir.list().length == 0, "temp files left " + tmpDir.list().length);
+        System.out.println("external file sorter ok");
+    }
+
+    /**
+     * description: 各种配置下排序结果与内存中的稳定排序一致
+     * param: [lines, tmpDir]
+     * return: void
+     * time: 2018/8/6 15:05
+     */
+    private static void t1(List<String> lines, File tmpDir) throws IOException {
+        Comparator<String> byFirst = ExternalFileSorter.byColumns("|", 0);
+        Comparator<String> byNumber = ExternalFileSorter.byKey(line -> Integer.parseInt(line.substring(0, line.indexOf('|'))), Comparator.naturalOrder());
+        for (String suffix : new String[]{".txt", ".gz"}) {
+            File input = tempFile(suffix);
+            write(input, lines);
+            for (Comparator<String> comparator : Arrays.asList(byFirst, byNumber)) {
+                List<String> expected = new ArrayList<>(lines);
+                expected.sort(comparator); // List.sort是稳定排序
+                sort(new ExternalFileSorter(comparator).setTmpDir(tmpDir), input, suffix, expected, "in memory");
+                sort(new ExternalFileSorter(comparator).setTmpDir(tmpDir).setMemoryBudget(2 << 20).setParallelism(3), input, suffix, expected, "spill");
+                sort(new ExternalFileSorter(comparator).setTmpDir(tmpDir).setMemoryBudget(2 << 20).setParallelism(2).setMaxMergeFiles(2)
+                        .setCompressSpill(true), input, suffix, expected, "multi-round compressed spill");
+            }
+        }
+    }
+
+    private static void sort(ExternalFileSorter sorter, File input, String suffix, List<String> expected, String message) throws IOException {
+        File output = tempFile(suffix);
+        sorter.sort(input.getPath(), output.getPath());
+        List<String> sorted = new ArrayList<>();
+        FileUtils.readFile(output.getPath(), StandardCharsets.UTF_8, sorted::add);
+        TestChecks.check(sorted.equals(expected), message + " " + suffix + ": " + sorted.size() + " lines");
+    }
+
+    /**
+     * description: 输入不存在、比较器抛出异常时抛出IOException
+     * param: [tmpDir]
+     * return: void
+     * time: 2018/8/6 15:10
+     */
+    private static void t2(File tmpDir) throws IOException {
+        File output = tempFile(".txt");
+        try {
+            new ExternalFileSorter(Comparator.naturalOrder()).setTmpDir(tmpDir).sort(output.getPath() + ".missing", output.getPath());
+            TestChecks.check(false, "missing input is not reported");
+        } catch (IOException e) {
+            System.out.println("missing input: " + e);
+        }
+        File input = tempFile(".txt");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            lines.add(i % 50000 == 49999 ? "bad" : "line" + i);
+        }
+        write(input, lines);
+        Comparator<String> failing = (a, b) -> {
+            if ("bad".equals(a) || "bad".equals(b)) {
+                throw new IllegalArgumentException("bad line");
+            }
+            return a.compareTo(b);
+        };
+        try {
+            new ExternalFileSorter(failing).setTmpDir(tmpDir).setMemoryBudget(2 << 20).setParallelism(2).sort(input.getPath(), output.getPath());
+            TestChecks.check(false, "comparator exception is not reported");
+        } catch (IOException e) {
+            TestChecks.check(e.getCause() instanceof IllegalArgumentException, "comparator exception " + e);
+        }
+    }
+
+    private static void write(File file, List<String> lines) throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(FileUtils.openOutputStream(file.getPath()), StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                bw.write(line);
+                bw.write('\n');
+            }
+        }
+    }
+
+    private static File tempFile(String suffix) throws IOException {
+        File file = File.createTempFile("test-sort-", suffix);
+        file.deleteOnExit();
+        return file;
+    }
+
+}
@@ -0,0 +1,128 @@
+import com.payegis.tools.file.FileAppender;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/31
+ * time: 15:10
+ * description: 测试组提交文件追加器FileAppender：各持久化级别返回时内容已在缓冲区/文件中，多线程追加的内容不交错，关闭后写出全部内容
+ */
+public class TestFileAppender {
+    private static Logger logger = Logger.getLogger(TestFileAppender.class);
+
+    public static void main(String[] args) throws Exception {
+        for (FileAppender.Durability durability : FileAppender.Durability.values()) {
+            t1(durability);
+            t2(durability);
+        }
+        t3();
+        System.out.println("file appender ok");
+    }
+
+    /**
+     * description: OS与DISK级别append返回时内容已写入文件，不等待刷新间隔；MEMORY级别sync返回时已写入文件
+     * param: [durability]
+     * return: void
+     * time: 2018/7/31 15:15
+     */
+    private static void t1(FileAppender.Durability durability) throws IOException {
+        File file = tempFile();
+        long begin = System.currentTimeMillis();
+        try (FileAppender appender = new FileAppender(file.getPath(), 1024, 60000, durability)) {
+            long length = 0;
+            for (int i = 0; i < 100; i++) {
+                byte[] bytes = ("line" + i + "\n").getBytes(StandardCharsets.UTF_8);
+                appender.append(bytes);
+                length += bytes.length;
+                if (durability == FileAppender.Durability.MEMORY && i % 10 == 9) {
+                    appender.sync();
+                }
+                if (durability != FileAppender.Durability.MEMORY || i % 10 == 9) {
+                    TestChecks.check(file.length() == length, durability + " length " + file.length() + " != " + length);
+                }
+            }
+        }
+        TestChecks.check(System.currentTimeMillis() - begin < 10000, durability + " waits for the flush interval");
+    }
+
+    /**
+     * description: 多线程并发追加，包括超过缓冲区大小的内容，关闭后每条内容完整且不与其他内容交错
+     * param: [durability]
+     * return: void
+     * time: 2018/7/31 15:20
+     */
+    private static void t2(FileAppender.Durability durability) throws Exception {
+        File file = tempFile();
+        int threads = 4;
+        int perThread = durability == FileAppender.Durability.DISK ? 200 : 5000;
+        char[] big = new char[3000]; // 大于缓冲区，分段放入
+        Arrays.fill(big, 'x');
+        Set<String> expected = new HashSet<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileAppender appender = new FileAppender(file.getPath(), 1024, 5, durability)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        String line = thread + "_" + i + (i % 100 == 0 ? new String(big) : "");
+                        appender.append(line + "\n");
+                    }
+                    return null;
+                }));
+                for (int i = 0; i < perThread; i++) {
+                    expected.add(thread + "_" + i + (i % 100 == 0 ? new String(big) : ""));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        TestChecks.check(lines.size() == threads * perThread && new HashSet<>(lines).equals(expected), durability + " lines " + lines.size());
+    }
+
+    /**
+     * description: 关闭后追加抛出IOException，重复关闭无影响
+     * param: []
+     * return: void
+     * time: 2018/7/31 15:25
+     */
+    private static void t3() throws IOException {
+        File file = tempFile();
+        FileAppender appender = new FileAppender(file.getPath());
+        appender.append("a\n");
+        appender.close();
+        appender.close();
+        TestChecks.check(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).equals("a\n"), "content after close");
+        try {
+            appender.append("b\n");
+            TestChecks.check(false, "append after close");
+        } catch (IOException e) {
+            System.out.println("append after close: " + e.getMessage());
+        }
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("test-appender-", ".txt");
+        file.deleteOnExit();
+        return file;
+    }
+
+}
@@ -0,0 +1,126 @@
+import com.payegis.tools.file.FileCodec;
+import com.payegis.tools.file.FileUtils;
+import org.apache.commons.compress.compressors.snappy.FramedSnappyCompressorOutputStream;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/8
+ * time: 15:00
+ * description: 测试文件压缩格式FileCodec：各格式写出后读回一致，按文件头识别格式，gzip与lz4追加写出的多段文件连续读取，兼容snappy framing格式
+ */
+public class TestFileCodec {
+    private static Logger logger = Logger.getLogger(TestFileCodec.class);
+
+    public static void main(String[] args) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            lines.add(i + ",name" + (i % 100) + ",中文" + i);
+        }
+        for (FileCodec codec : FileCodec.values()) {
+            t1(codec, lines);
+        }
+        t2(lines);
+        t3(lines);
+        System.out.println("file codec ok");
+    }
+
+    /**
+     * description: 按扩展名压缩写出，按文件头识别读回；扩展名与内容不符时以文件头为准
+     * param: [codec, lines]
+     * return: void
+     * time: 2018/8/8 15:05
+     */
+    private static void t1(FileCodec codec, List<String> lines) throws IOException {
+        File file = tempFile(codec.getExtension().isEmpty() ? ".txt" : codec.getExtension());
+        write(FileUtils.openOutputStream(file.getPath()), lines);
+        TestChecks.check(FileCodec.detect(file.getPath()) == codec, "detect " + codec);
+        TestChecks.check(read(file).equals(lines), "read " + codec);
+        List<String> streamed = new ArrayList<>();
+        FileUtils.readFile(file.getPath(), StandardCharsets.UTF_8, streamed::add);
+        TestChecks.check(streamed.equals(lines), "stream read " + codec);
+        if (codec != FileCodec.NONE) {
+            try {
+                FileUtils.readFileRange(file.getPath(), StandardCharsets.UTF_8, 10, file.length(), line -> {
+                });
+                TestChecks.check(false, "read " + codec + " from offset");
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+
+        File renamed = tempFile(".dat");
+        write(FileUtils.openOutputStream(renamed.getPath(), codec), lines);
+        TestChecks.check(FileCodec.detect(renamed.getPath()) == codec, "detect by magic " + codec);
+        TestChecks.check(read(renamed).equals(lines), "read by magic " + codec);
+    }
+
+    /**
+     * description: snappy framing格式（如其他工具写出的.sz文件）同样可以读取
+     * param: [lines]
+     * return: void
+     * time: 2018/8/8 15:15
+     */
+    private static void t2(List<String> lines) throws IOException {
+        File file = tempFile(".sz");
+        write(new FramedSnappyCompressorOutputStream(new FileOutputStream(file)), lines);
+        TestChecks.check(FileCodec.detect(file.getPath()) == FileCodec.SNAPPY, "detect snappy framed");
+        TestChecks.check(read(file).equals(lines), "read snappy framed");
+    }
+
+    /**
+     * description: gzip、lz4追加写出为新的压缩段，读取时连续解压
+     * param: [lines]
+     * return: void
+     * time: 2018/8/15 15:10
+     */
+    private static void t3(List<String> lines) throws IOException {
+        for (FileCodec codec : new FileCodec[]{FileCodec.GZIP, FileCodec.LZ4}) {
+            File file = tempFile(codec.getExtension());
+            int half = lines.size() / 2;
+            write(FileUtils.openOutputStream(file.getPath(), codec, true), lines.subList(0, half));
+            write(FileUtils.openOutputStream(file.getPath(), codec, true), lines.subList(half, lines.size()));
+            TestChecks.check(read(file).equals(lines), "append " + codec);
+        }
+    }
+
+    private static void write(OutputStream out, List<String> lines) throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                bw.write(line);
+                bw.write('\n');
+            }
+        }
+    }
+
+    private static List<String> read(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(FileUtils.openInputStream(file.getPath()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static File tempFile(String suffix) throws IOException {
+        File file = File.createTempFile("test-codec-", suffix);
+        file.deleteOnExit();
+        return file;
+    }
+
+}
@@ -1,8 +1,19 @@
 import com.payegis.tools.file.FileDivisionETL;
+import com.payegis.tools.file.FileUtils;
+import com.payegis.tools.sink.AsyncRowSink;
+import com.payegis.tools.sink.DelimitedFileSink;
+import com.payegis.tools.sink.RowSink;
 import com.payegis.tools.string.StringUtils;
 import org.apache.log4j.Logger;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * company:
@@ -15,9 +26,18 @@ import java.util.ArrayList;
 public class TestFileDivision {
     private static Logger logger = Logger.getLogger(TestFileDivision.class);
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        parallel();
+        sinkCheck();
         StringUtils.init(args, 1, "please enter one data file path!");
-        ArrayList<String[]> etled = FileDivisionETL.etl(args[0], ",", new String[]{"int", "name", "phone", "idCard", "default", "phone", "default", "dateTime", "dateTime"});
+        collect(args[0]);
+        streaming(args[0]);
+        sink(args[0], args[0] + ".etl");
+        System.out.println("etl result written to " + args[0] + ".etl.gz");
+    }
+
+    private static void collect(String filePath) {
+        ArrayList<String[]> etled = FileDivisionETL.etl(filePath, ",", new String[]{"int", "name", "phone", "idCard", "default", "phone", "default", "dateTime", "dateTime"});
         etled.forEach(line -> {
             for (String column : line) {
                 System.out.println(column);
@@ -26,4 +46,95 @@ public class TestFileDivision {
         });
     }
 
+    /**
+     * description: 流式切分清洗，每行清洗完即输出，不在内存中保留结果
+     * param: [filePath]
+     * return: void
+     * time: 2018/7/19 11:02
+     */
+    private static void streaming(String filePath) {
+        FileDivisionETL.etl(filePath, ",", line -> System.out.println(String.join("\t", line)),
+                "int", "name", "phone", "idCard", "default", "phone", "default", "dateTime", "dateTime");
+    }
+
+    /**
+     * description: 清洗结果经异步输出端写入gzip压缩的分隔符文件，写入跟不上时读取自动放慢
+     * param: [filePath, outputPath]
+     * return: void
+     * time: 2018/8/10 15:20
+     */
+    private static void sink(String filePath, String outputPath) throws IOException {
+        try (RowSink sink = new AsyncRowSink(new DelimitedFileSink(outputPath + ".gz", "\t"))) {
+            FileDivisionETL.etl(filePath, ",", sink, "int", "name", "phone", "idCard", "default", "phone", "default", "dateTime", "dateTime");
+        }
+    }
+
+    /**
+     * description: 并行切分清洗：保序时与单线程结果一致，集合版本不去重，rowConsumer的异常抛给调用方
+     * param: []
+     * return: void
+     * time: 2018/7/20 11:20
+     */
+    private static void parallel() throws IOException {
+        File file = File.createTempFile("test-division-", ".csv");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            for (int i = 0; i < 200000; i++) {
+                writer.println(i + ".0,name" + (i % 100) + ",2018/8/" + (i % 28 + 1));
+            }
+        }
+        List<String[]> expected = new ArrayList<>();
+        FileDivisionETL.etl(file.getPath(), ",", expected::add, "int", "name", "dateTime");
+        List<String[]> actual = new ArrayList<>();
+        FileDivisionETL.etlParallel(file.getPath(), ",", true, 4, actual::add, "int", "name", "dateTime");
+        TestChecks.check(actual.size() == expected.size(), "parallel rows " + actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            TestChecks.check(String.join(",", actual.get(i)).equals(String.join(",", expected.get(i))), "parallel row " + i);
+        }
+        try {
+            FileDivisionETL.etlParallel(file.getPath(), ",", false, 4, row -> {
+                if (row[0].equals("100000")) {
+                    throw new IllegalStateException("stop at row " + row[0]);
+                }
+            }, "int");
+            TestChecks.check(false, "consumer exception is swallowed");
+        } catch (IllegalStateException e) {
+            System.out.println("parallel etl aborted: " + e.getMessage());
+        }
+
+        File duplicated = File.createTempFile("test-division-dup-", ".csv");
+        duplicated.deleteOnExit();
+        Files.write(duplicated.toPath(), Arrays.asList("1,a", "1,a", "2,b"));
+        TestChecks.check(FileDivisionETL.etl(duplicated.getPath(), ",").size() == 2, "etl list deduplicates");
+        TestChecks.check(FileDivisionETL.etlParallel(duplicated.getPath(), ",", true).size() == 3, "etlParallel list keeps duplicates");
+        System.out.println("parallel etl ok, " + actual.size() + " rows");
+    }
+
+    /**
+     * description: 经异步输出端写入的gzip文件读回后与流式清洗的结果一致
+     * param: []
+     * return: void
+     * time: 2018/8/10 15:30
+     */
+    private static void sinkCheck() throws IOException {
+        File file = File.createTempFile("test-division-sink-", ".csv");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            for (int i = 0; i < 20000; i++) {
+                writer.println(i + ".0,张三" + (i % 10) + ",138001380" + String.format("%02d", i % 100) + ",11010519491231002X,a" + i
+                        + ",+86 13800138000,{\"b\":" + i + "},2018/8/" + (i % 28 + 1) + ",2018-08-01 10:00:" + String.format("%02d", i % 60));
+            }
+        }
+        List<String> expected = new ArrayList<>();
+        FileDivisionETL.etl(file.getPath(), ",", row -> expected.add(String.join("\t", row)),
+                "int", "name", "phone", "idCard", "default", "phone", "default", "dateTime", "dateTime");
+        File output = new File(file.getPath() + ".etl.gz");
+        output.deleteOnExit();
+        sink(file.getPath(), file.getPath() + ".etl");
+        List<String> actual = new ArrayList<>();
+        FileUtils.readFile(output.getPath(), Charset.defaultCharset(), actual::add); // DelimitedFileSink默认使用系统字符集
+        TestChecks.check(actual.equals(expected), "sink rows " + actual.size() + ", expected " + expected.size());
+        System.out.println("sink etl ok, " + actual.size() + " rows");
+    }
+
 }
@@ -0,0 +1,65 @@
+import com.payegis.tools.file.FileUtils;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/19
+ * time: 11:08
+ * description: 测试FileUtils流式读取
+ */
+public class TestFileUtilsStreaming {
+    private static Logger logger = Logger.getLogger(TestFileUtilsStreaming.class);
+
+    public static void main(String[] args) throws IOException {
+        t1();
+    }
+
+    /**
+     * description: 流式读取：逐行交给消费者；读取失败抛出UncheckedIOException，消费者的异常原样抛出
+     * param: []
+     * return: void
+     * time: 2018/7/19 11:10
+     */
+    private static void t1() throws IOException {
+        File file = File.createTempFile("test-file-utils-", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), Arrays.asList("a", "b", "c"));
+        List<String> lines = new ArrayList<>();
+        FileUtils.readFile(file.getPath(), lines::add);
+        TestChecks.check(lines.equals(Arrays.asList("a", "b", "c")), "streaming read " + lines);
+
+        List<String> consumed = new ArrayList<>();
+        try {
+            FileUtils.readFile(file.getPath(), line -> {
+                if ("b".equals(line)) {
+                    throw new IllegalStateException("stop at " + line);
+                }
+                consumed.add(line);
+            });
+            TestChecks.check(false, "consumer exception is swallowed");
+        } catch (IllegalStateException e) {
+            TestChecks.check(consumed.equals(Arrays.asList("a")), "read after consumer exception " + consumed);
+        }
+
+        try {
+            FileUtils.readFile(file.getPath() + ".missing", line -> {
+            });
+            TestChecks.check(false, "missing file is not reported");
+        } catch (UncheckedIOException e) {
+            System.out.println("missing file: " + e.getMessage());
+        }
+        TestChecks.check(FileUtils.readFile(file.getPath() + ".missing").isEmpty(), "list read of missing file");
+        System.out.println("streaming read ok");
+    }
+
+}
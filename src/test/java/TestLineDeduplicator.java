@@ -0,0 +1,55 @@
+import com.payegis.tools.file.FileUtils;
+import com.payegis.tools.file.LineDeduplicator;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/23
+ * time: 14:30
+ * description: 测试行去重LineDeduplicator：内存预算内单遍去重，以及超出预算溢写磁盘、多路归并后的结果都与LinkedHashSet一致
+ */
+public class TestLineDeduplicator {
+    private static Logger logger = Logger.getLogger(TestLineDeduplicator.class);
+    private static final Charset UTF_8 = StandardCharsets.UTF_8;
+
+    public static void main(String[] args) throws IOException {
+        List<String> lines = new ArrayList<>();
+        Random random = new Random(4);
+        for (int i = 0; i < 100000; i++) {
+            lines.add("row-" + random.nextInt(30000) + (i % 7 == 0 ? ",中文" : ""));
+        }
+        List<String> expected = new ArrayList<>(new LinkedHashSet<>(lines));
+        for (String suffix : new String[]{".txt", ".gz"}) { // 压缩文件溢写后从头重新解压
+            File file = File.createTempFile("test-dedup-", suffix);
+            file.deleteOnExit();
+            try (Writer writer = new OutputStreamWriter(FileUtils.openOutputStream(file.getPath()), UTF_8)) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+            TestChecks.check(deduplicate(file, 64L * 1024 * 1024).equals(expected), suffix + " in memory");
+            TestChecks.check(deduplicate(file, 16 * 1024).equals(expected), suffix + " spilled"); // 预算很小，多次溢写
+        }
+        System.out.println("deduplicate ok, " + lines.size() + " lines, " + expected.size() + " distinct");
+    }
+
+    private static List<String> deduplicate(File file, long memoryBudget) {
+        List<String> result = new ArrayList<>();
+        LineDeduplicator.deduplicate(file.getPath(), UTF_8, memoryBudget, file.getParentFile(), result::add);
+        return result;
+    }
+
+}
@@ -0,0 +1,70 @@
+import com.payegis.tools.file.FileUtils;
+import com.payegis.tools.file.MappedLineReader;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/20
+ * time: 16:30
+ * description: 测试内存映射按行读取MappedLineReader：与BufferedReader.readLine结果一致，包括跨窗口的行与\r\n
+ */
+public class TestMappedLineReader {
+    private static Logger logger = Logger.getLogger(TestMappedLineReader.class);
+    private static final Charset UTF_8 = StandardCharsets.UTF_8;
+
+    public static void main(String[] args) throws IOException {
+        String content = "第一行\r\nline2\n\nline4\rline5\r\n中文，行6\n\r\nlast";
+        File file = File.createTempFile("test-mapped-", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(UTF_8));
+        List<String> expected = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new StringReader(content))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                expected.add(line);
+            }
+        }
+        for (long windowSize = 1; windowSize <= 16; windowSize++) { // 窗口很小时行与\r\n都会跨窗口
+            List<String> lines = new ArrayList<>();
+            try (MappedLineReader reader = new MappedLineReader(file.getPath(), UTF_8, 0, Long.MAX_VALUE, windowSize)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+            }
+            TestChecks.check(lines.equals(expected), "window " + windowSize + ": " + lines);
+        }
+        t2(file, expected);
+        System.out.println("mapped line reader ok, " + expected.size() + " lines");
+    }
+
+    /**
+     * description: 按splitFileRanges切分的区间分别读取，拼起来与整个读取一致
+     */
+    private static void t2(File file, List<String> expected) throws IOException {
+        for (long chunkSize = 1; chunkSize <= 12; chunkSize++) {
+            List<String> lines = new ArrayList<>();
+            for (long[] range : FileUtils.splitFileRanges(file.getPath(), chunkSize)) {
+                try (MappedLineReader reader = new MappedLineReader(file.getPath(), UTF_8, range[0], range[1], 4)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        lines.add(line);
+                    }
+                }
+            }
+            TestChecks.check(lines.equals(expected), "chunk " + chunkSize + ": " + lines);
+        }
+    }
+
+}
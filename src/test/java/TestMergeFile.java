@@ -0,0 +1,137 @@
+import com.payegis.tools.file.MergeFile;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/7/30
+ * time: 14:20
+ * description: 测试文件合并MergeFile：按文件名顺序拼接part文件、并发合并多个文件夹、多路归并有序part文件
+ */
+public class TestMergeFile {
+    private static Logger logger = Logger.getLogger(TestMergeFile.class);
+
+    public static void main(String[] args) throws IOException {
+        t1();
+        t2();
+        t3();
+        System.out.println("merge file ok");
+    }
+
+    /**
+     * description: 合并结果为各part文件按文件名顺序拼接，非part开头的文件不参与合并
+     * param: []
+     * return: void
+     * time: 2018/7/30 14:25
+     */
+    private static void t1() throws IOException {
+        List<String> dirs = new ArrayList<>();
+        List<List<String>> expected = new ArrayList<>();
+        for (int d = 0; d < 3; d++) {
+            File dir = tempDir();
+            List<String> lines = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                List<String> part = new ArrayList<>();
+                for (int i = 0; i < 10000 * p; i++) {
+                    part.add(d + "," + p + "," + i);
+                }
+                Files.write(new File(dir, "part-0000" + p).toPath(), part, StandardCharsets.UTF_8);
+                lines.addAll(part);
+            }
+            Files.write(new File(dir, "_SUCCESS").toPath(), Collections.singletonList("skip"), StandardCharsets.UTF_8);
+            dirs.add(dir.getPath());
+            expected.add(lines);
+        }
+        MergeFile.mergeDirFiles(dirs.get(0));
+        MergeFile.mergeDirFiles(dirs.subList(1, dirs.size()), 2);
+        for (int d = 0; d < dirs.size(); d++) {
+            List<String> merged = Files.readAllLines(new File(dirs.get(d), "merged").toPath(), StandardCharsets.UTF_8);
+            TestChecks.check(merged.equals(expected.get(d)), "merged directory " + dirs.get(d));
+            deleteOnExit(new File(dirs.get(d)));
+        }
+    }
+
+    /**
+     * description: 多路归并后按key列全局有序，key相同时按文件名顺序输出
+     * param: []
+     * return: void
+     * time: 2018/7/30 14:30
+     */
+    private static void t2() throws IOException {
+        File dir = tempDir();
+        Random random = new Random(7);
+        List<String> expected = new ArrayList<>();
+        for (int p = 0; p < 5; p++) {
+            List<String> part = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                part.add("row" + p + "_" + i + "|" + String.format("%05d", random.nextInt(3000)));
+            }
+            part.sort(Comparator.comparing(line -> line.substring(line.indexOf('|') + 1)));
+            Files.write(new File(dir, "part-" + p).toPath(), part, StandardCharsets.UTF_8);
+            expected.addAll(part);
+        }
+        expected.sort(Comparator.comparing(line -> line.substring(line.indexOf('|') + 1))); // 稳定排序，key相同时保持文件顺序
+        MergeFile.mergeSortedDirFiles(dir.getPath(), "|", 1);
+        List<String> merged = Files.readAllLines(new File(dir, "merged").toPath(), StandardCharsets.UTF_8);
+        TestChecks.check(merged.equals(expected), "sorted merge " + merged.size() + " lines");
+        deleteOnExit(dir);
+    }
+
+    /**
+     * description: part文件数超过单轮上限时分多轮归并，结果与单轮一致且不留临时文件；按指定字符集读写
+     * param: []
+     * return: void
+     * time: 2018/7/31 14:40
+     */
+    private static void t3() throws IOException {
+        File dir = tempDir();
+        Random random = new Random(9);
+        List<String> expected = new ArrayList<>();
+        for (int p = 0; p < 600; p++) {
+            List<String> part = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                part.add("行" + p + "_" + i + "|" + String.format("%04d", random.nextInt(500)));
+            }
+            part.sort(Comparator.comparing(line -> line.substring(line.indexOf('|') + 1)));
+            Files.write(new File(dir, String.format("part-%04d", p)).toPath(), part, StandardCharsets.UTF_16LE);
+            expected.addAll(part);
+        }
+        expected.sort(Comparator.comparing(line -> line.substring(line.indexOf('|') + 1)));
+        MergeFile.mergeSortedDirFiles(dir.getPath(), "|", 1, Comparator.naturalOrder(), StandardCharsets.UTF_16LE);
+        List<String> merged = Files.readAllLines(new File(dir, "merged").toPath(), StandardCharsets.UTF_16LE);
+        TestChecks.check(merged.equals(expected), "multi-round sorted merge " + merged.size() + " lines");
+        String[] names = dir.list();
+        TestChecks.check(names != null && names.length == 601, "temporary files left " + (names == null ? 0 : names.length - 601));
+        deleteOnExit(dir);
+    }
+
+    private static File tempDir() throws IOException {
+        File dir = Files.createTempDirectory("test-merge-").toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    /**
+     * description: 文件夹先于其中的文件注册，退出时先删文件再删文件夹
+     */
+    private static void deleteOnExit(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+}
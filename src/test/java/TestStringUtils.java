@@ -1,7 +1,19 @@
+import com.payegis.tools.string.CharacterUtils;
+import com.payegis.tools.string.JsonFlattener;
+import com.payegis.tools.string.JsonKeyRewriter;
+import com.payegis.tools.string.JsonNormalizer;
+import com.payegis.tools.string.JsonPath;
 import com.payegis.tools.string.StringUtils;
+import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 import org.apache.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
 /**
  * company:
  * user: chenzuoli
@@ -14,6 +26,12 @@ public class TestStringUtils {
 
     public static void main(String[] args) {
         t1();
+        t3();
+        t4();
+        t5();
+        t6();
+        t7();
+        t8();
     }
 
     private static void t1(){
@@ -43,4 +61,292 @@ public class TestStringUtils {
         System.out.println(jsonObject2);
     }
 
+    /**
+     * description: etlJsonStr与原json-lib实现的结果一致（固定用例和随机文档），并统计不需要json-lib的文档数
+     * param: []
+     * return: void
+     * time: 2018/8/21 10:00
+     */
+    private static void t3() {
+        String[] cases = {
+                "{\"ｕｓｅｒ_ｉｄ\": null, \"tags\": [1, null, \"ａｂｃ\"], \"detail\": {\"ok\": true}}",
+                "[null, {\"a\": \"ｘ\"}]",
+                "{\"a\": 1,}",
+                "{\"a\":1.50,\"b\":1e3,\"c\":12345678901234567890,\"d\":-0,\"e\":0.000001,\"f\":9223372036854775807}",
+                "{\"a\":\"null\",\"b\":\"ｎｕｌｌ\",\"c\":[\"null\"]}",
+                "{\"a\":\"\\u0041\\uff41\\/b\",\"b\":\"</x>\",\"c\":\"\\u0001\\t\"}",
+                "{\"a\":\"{\\\"b\\\":null}\",\"c\":\" [1.50]\"}",
+                "{\"a\":{\"b\":1e3,\"c\":1.50,\"d\":-0.0},\"e\":[1e3]}",
+                "{\"a\":1,\"a\":2}",
+                "{\"new\":{},\"arr\":[[1,2],[]]}",
+                "  {\"a\":1}  ",
+                "[1.50,\"x\",[null]]",
+                "ｎｕｌｌ",
+                "plain text",
+        };
+        for (String json : cases) {
+            String expected = etlJsonStrByJsonLib(json);
+            String actual = StringUtils.etlJsonStr(json);
+            TestChecks.check(actual.equals(expected), json + ": " + actual + " != " + expected);
+        }
+        // 没有结束括号的字符串按普通字符串处理，json-lib解析这类字符串时无限递归或耗尽内存
+        String[][] unclosed = {{"[", "["}, {"[,", "[,"}, {" {ａ", " {a"}, {"{\"a\":\"[1,\",\"b\":1}", "{\"a\":\"[1,\",\"b\":\"1\"}"}};
+        for (String[] pair : unclosed) {
+            String actual = StringUtils.etlJsonStr(pair[0]);
+            TestChecks.check(actual.equals(pair[1]), pair[0] + ": " + actual + " != " + pair[1]);
+        }
+        Random random = new Random(20);
+        int streamed = 0;
+        for (int i = 0; i < 5000; i++) {
+            String json = random.nextInt(4) == 0 ? randomArray(random, 0) : randomObject(random, 0);
+            String expected = etlJsonStrByJsonLib(json);
+            String actual = StringUtils.etlJsonStr(json);
+            TestChecks.check(actual.equals(expected), json + ": " + actual + " != " + expected);
+            if (JsonNormalizer.normalize(json) != null) {
+                streamed++;
+            }
+        }
+        System.out.println("etl json str ok, " + streamed + " of 5000 random documents normalized without json-lib");
+    }
+
+    /**
+     * description: getNeedColumn的json字符串版本与先解析为JSONObject的结果一致，并支持嵌套路径
+     * param: []
+     * return: void
+     * time: 2018/8/22 11:40
+     */
+    private static void t8() {
+        String json = "{\"tid\": \"t1\", \"score\": 80, \"ok\": true, \"phone\": null, \"user\": {\"name\": \"a\", \"tags\": [1, 2]}, \"rules\": [{\"name\": \"r1\"}]}";
+        String[] params = {"tid", "score", "ok", "user", "missing"};
+        JSONObject expected = StringUtils.getNeedColumn(JSONObject.fromObject(json), params);
+        JSONObject actual = StringUtils.getNeedColumn(json, params);
+        TestChecks.check(actual.toString().equals(expected.toString()), actual + " != " + expected);
+        JSONObject nested = StringUtils.getNeedColumn(json, "user.name", "rules[0].name", "user.tags[1]");
+        TestChecks.check(nested.toString().equals("{\"user.name\":\"a\",\"rules[0].name\":\"r1\",\"user.tags[1]\":\"2\"}"), "nested paths " + nested);
+        JSONObject illegal = StringUtils.getNeedColumn("{\"tid\" \"t1\"}", "tid");
+        TestChecks.check(illegal.toString().equals("{\"tid\":\"\"}"), "illegal json " + illegal);
+        System.out.println("get need column ok, " + actual);
+    }
+
+    private static final String[] KEYS = {"user_name", "userName", "a_b", "ａ_ｂ", "aB", "Key_Name", "x_y_z", "中文_键", "k\\\"q", "a\\/b", "a\\u0041", "null"};
+    private static final String[] STRINGS = {"Tom", "", "null", "ｎｕｌｌ", "18", "1.50", "{\\\"in_ner\\\":1.50}", "[1,null]", " [1]",
+            "a\\\"b", "\\\"q\\\"", "a\\\\b", "line\\nbreak", "x</y", "a\\/b", "\\u4e2d\\uff41", "\\u0001", "中文", "function(){}",
+            "'s'", "true", "Ａ１", "\u0085€"};
+    private static final String[] NUMBERS = {"0", "-0", "18", "-5", "1.50", "1e3", "1E-7", "-0.0", "123456789012345678",
+            "1234567890123456789", "12345678901234567890", "3.141592653589793238", "0.1", "2147483648", "1e400"};
+
+    private static String randomValue(Random random, int depth) {
+        switch (random.nextInt(depth > 3 ? 3 : 6)) {
+            case 0:
+                return "\"" + STRINGS[random.nextInt(STRINGS.length)] + "\"";
+            case 1:
+                return NUMBERS[random.nextInt(NUMBERS.length)];
+            case 2:
+                return random.nextBoolean() ? "true" : random.nextBoolean() ? "false" : "null";
+            case 3:
+            case 4:
+                return randomObject(random, depth + 1);
+            default:
+                return randomArray(random, depth + 1);
+        }
+    }
+
+    private static String randomObject(Random random, int depth) {
+        StringBuilder sb = new StringBuilder("{");
+        int n = random.nextInt(4);
+        for (int i = 0; i < n; i++) {
+            sb.append(i == 0 ? "" : random.nextInt(5) == 0 ? " , " : ",");
+            sb.append('"').append(random.nextInt(3) == 0 ? KEYS[random.nextInt(KEYS.length)] : "k" + random.nextInt(1000)).append("\":");
+            sb.append(randomValue(random, depth));
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String randomArray(Random random, int depth) {
+        StringBuilder sb = new StringBuilder("[");
+        int n = random.nextInt(4);
+        for (int i = 0; i < n; i++) {
+            sb.append(i == 0 ? "" : ",");
+            sb.append(random.nextInt(3) == 0 ? randomObject(random, depth + 1) : randomValue(random, depth));
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * description: 原来基于json-lib的etlJsonStr，作为对照；数组用set原位替换（原实现的add使顶层数组无限增长），
+     * 对象的key先全部取出再写回（原实现遇到全角key时抛出ConcurrentModificationException），同etlJsonStr
+     */
+    private static String etlJsonStrByJsonLib(String jsonStr) {
+        String returnStr = jsonStr;
+        try {
+            if (StringUtils.checkValidJsonObjectStr(jsonStr)) {
+                JSONObject jsonObject = JSONObject.fromObject(jsonStr);
+                List<String> keys = new ArrayList<>();
+                for (Object key : jsonObject.keySet()) {
+                    keys.add(key.toString());
+                }
+                List<String> values = new ArrayList<>();
+                for (String key : keys) {
+                    values.add(CharacterUtils.qj2bjCharNumber(jsonObject.optString(key)));
+                }
+                jsonObject.clear();
+                for (int k = 0; k < keys.size(); k++) {
+                    String key = CharacterUtils.qj2bjCharNumber(keys.get(k));
+                    String value = values.get(k);
+                    if ("null".equals(value)) {
+                        jsonObject.put(key, "");
+                    } else if (StringUtils.checkValidJsonObjectStr(value)) {
+                        jsonObject.put(key, etlJsonStrByJsonLib(value));
+                    } else if (StringUtils.checkValidJsonArrayStr(value)) {
+                        JSONArray jsonArray = JSONArray.fromObject(value);
+                        for (int i = 0; i < jsonArray.size(); i++) {
+                            jsonArray.set(i, etlJsonStrByJsonLib(jsonArray.optString(i)));
+                        }
+                        jsonObject.put(key, jsonArray);
+                    } else {
+                        jsonObject.put(key, value);
+                    }
+                }
+                returnStr = jsonObject.toString();
+            } else if (StringUtils.checkValidJsonArrayStr(jsonStr)) {
+                JSONArray jsonArray = JSONArray.fromObject(jsonStr);
+                for (int i = 0; i < jsonArray.size(); i++) {
+                    jsonArray.set(i, etlJsonStrByJsonLib(jsonArray.optString(i)));
+                }
+                returnStr = jsonArray.toString();
+            } else {
+                returnStr = CharacterUtils.qj2bjCharNumber(jsonStr);
+            }
+            if ("null".equals(returnStr)) returnStr = "";
+        } catch (Exception | StackOverflowError e) {
+            // 同原实现，失败时原样返回；原实现不捕获json-lib解析"["时的StackOverflowError
+        }
+        return returnStr;
+    }
+
+    private static void t4() {
+        String str = "{\"user_id\": 1, \"risk_info\": {\"hit_rules\": [{\"rule_name\": \"a_b\"}]}}";
+        System.out.println(StringUtils.jsonStrKeyCamelNamed(str));
+    }
+
+    /**
+     * description: jsonStrKeyCamelNamed与原json-lib实现的结果一致（数值、true、false转为字符串，重复的key合并），
+     * JsonKeyRewriter.rewrite的value原样保留
+     * param: []
+     * return: void
+     * time: 2018/8/21 11:00
+     */
+    private static void t7() {
+        String[] cases = {
+                "{\"user_name\":\"Tom\",\"age\":18,\"score\":1.50,\"ok\":true,\"none\":null}",
+                "{\"a_b\":{\"c_d\":1,\"e\":[1,\"x\",null,true]},\"arr\":[{\"x_y\":2},{\"x_y\":3}]}",
+                "{\"o\":{\"a\":{\"b\":1},\"a\":{\"c\":2}}}",
+                "{\"a_b\":1,\"aB\":2}",
+                "{\"s\":\"{\\\"in_ner\\\":1}\",\"t\":\"null\",\"u\":[\"null\"]}",
+                "{\"big\":12345678901234567890,\"exp\":1e3,\"neg\":-0}",
+                "[{\"a_b\":1},{\"c_d\":null}]",
+                "[1,2]",
+                "{\"n\":[[1,2],[3]]}",
+                "{'single_quote':1}",
+                "not json",
+        };
+        for (String json : cases) {
+            String expected = camelNamedByJsonLib(json);
+            String actual = StringUtils.jsonStrKeyCamelNamed(json);
+            TestChecks.check(actual.equals(expected), json + ": " + actual + " != " + expected);
+        }
+        String[][] unclosed = {{"[", "["}, {"[,", "[,"}, {"{\"a_b\":\"[1,\"}", "{\"aB\":\"[1,\"}"}, {"[{\"a_b\":\"[\"}]", "[{\"aB\":\"[\"}]"}};
+        for (String[] pair : unclosed) {
+            String actual = StringUtils.jsonStrKeyCamelNamed(pair[0]);
+            TestChecks.check(actual.equals(pair[1]), pair[0] + ": " + actual + " != " + pair[1]);
+        }
+        TestChecks.check(JsonKeyRewriter.CAMEL_NAMED.rewrite(cases[0]).equals("{\"userName\":\"Tom\",\"age\":18,\"score\":1.50,\"ok\":true,\"none\":null}"),
+                "verbatim values");
+        Random random = new Random(7);
+        int rewritten = 0;
+        for (int i = 0; i < 5000; i++) {
+            String json = random.nextInt(4) == 0 ? randomArray(random, 0) : randomObject(random, 0);
+            String expected = camelNamedByJsonLib(json);
+            String actual = StringUtils.jsonStrKeyCamelNamed(json);
+            TestChecks.check(actual.equals(expected), json + ": " + actual + " != " + expected);
+            if (JsonKeyRewriter.CAMEL_NAMED.rewriteStringified(json) != null) {
+                rewritten++;
+            }
+        }
+        System.out.println("json key camel named ok, " + rewritten + " of 5000 random documents rewritten without json-lib");
+    }
+
+    /**
+     * description: 原来基于json-lib的jsonStrKeyCamelNamed，作为对照
+     */
+    @SuppressWarnings("unchecked")
+    private static String camelNamedByJsonLib(String jsonStr) {
+        try {
+            if (StringUtils.checkValidJsonObjectStr(jsonStr)) {
+                JSONObject jsonObject = JSONObject.fromObject(jsonStr);
+                JSONObject returnJson = new JSONObject();
+                Iterator<String> keys = jsonObject.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    String value = jsonObject.optString(key);
+                    String camelNamedKey = StringUtils.camelNamed(key);
+                    if (StringUtils.checkValidJsonObjectStr(value)) {
+                        returnJson.put(camelNamedKey, camelNamedByJsonLib(value));
+                    } else if (StringUtils.checkValidJsonArrayStr(value)) {
+                        JSONArray jsonArray = JSONArray.fromObject(value);
+                        for (int i = 0; i < jsonArray.size(); i++) {
+                            jsonArray.set(i, camelNamedByJsonLib(jsonArray.optString(i)));
+                        }
+                        returnJson.put(camelNamedKey, jsonArray);
+                    } else {
+                        returnJson.put(camelNamedKey, value);
+                    }
+                }
+                return returnJson.toString();
+            } else if (StringUtils.checkValidJsonArrayStr(jsonStr)) {
+                JSONArray jsonArray = JSONArray.fromObject(jsonStr);
+                for (int i = 0; i < jsonArray.size(); i++) {
+                    jsonArray.set(i, camelNamedByJsonLib(JSONObject.fromObject(jsonArray.optString(i)).toString()));
+                }
+                return jsonArray.toString();
+            }
+        } catch (Exception e) {
+            // 同原实现，失败时原样返回
+        }
+        return jsonStr;
+    }
+
+    private static void t5() {
+        String str = "{\"report\": {\"rules\": [{\"name\": \"r1\", \"score\": 80}]}, \"user\": {\"tid\": \"t1\", \"phone\": null}}";
+        JsonPath jsonPath = JsonPath.compile("user.tid", "user.phone", "report.rules[0].score", "user.missing");
+        System.out.println(Arrays.toString(jsonPath.evaluate(str)));
+        System.out.println(StringUtils.getKeyOfJson(2, str, "tid"));
+    }
+
+    /**
+     * description: JsonFlattener按推断的列展开，未知路径与空对象进入溢出列，带'.'的key与嵌套路径不冲突
+     * param: []
+     * return: void
+     * time: 2018/8/23 15:30
+     */
+    private static void t6() {
+        JsonFlattener flattener = JsonFlattener.infer(Arrays.asList(
+                "{\"id\": 1, \"user\": {\"name\": \"a\", \"addr\": {\"city\": \"sh\"}}, \"tags\": [1, 2]}",
+                "{\"id\": 2, \"score\": null, \"a.b\": 1, \"a\": {\"b\": 2}}"));
+        String[] columns = flattener.getColumnNames();
+        TestChecks.check(Arrays.asList(columns).equals(Arrays.asList("id", "user.name", "user.addr.city", "tags", "score", "a\\.b", "a.b",
+                JsonFlattener.OVERFLOW_COLUMN)), Arrays.toString(columns));
+        String[] row = flattener.newRow();
+        int overflowCount = flattener.flatten("{\"id\": 3, \"user\": {\"name\": null, \"age\": 20}, \"new\": {\"k\": \"v\"}, \"tags\": [], "
+                + "\"empty\": {}, \"a\": {\"b\": \"x\\\"y\"}, \"a.b\": true}", row);
+        TestChecks.check(Arrays.asList(row).equals(Arrays.asList("3", "", null, "[]", null, "true", "x\"y",
+                "{\"user.age\":20,\"new.k\":\"v\",\"empty\":{}}")), Arrays.toString(row));
+        TestChecks.check(overflowCount == 3, "overflow count " + overflowCount);
+        TestChecks.check(flattener.flatten("{\"user\": {}}", row) == 0 && row[columns.length - 1] == null, "known empty object " + Arrays.toString(row));
+        JsonFlattener of = JsonFlattener.of("a\\.b", "a.b");
+        of.flatten("{\"a.b\": 1, \"a\": {\"b\": 2}}", row);
+        TestChecks.check(row[0].equals("1") && row[1].equals("2") && row[2] == null, "escaped paths " + Arrays.toString(row));
+        System.out.println("json flattener ok, " + Arrays.toString(columns));
+    }
+
 }
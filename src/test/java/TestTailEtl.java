@@ -0,0 +1,187 @@
+import com.payegis.tools.file.DelimiterSplitter;
+import com.payegis.tools.pipeline.TailEtl;
+import com.payegis.tools.sink.RowSink;
+import com.payegis.tools.util.ColumnEtlPlan;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * company:
+ * user: chenzuoli
+ * date: 2018/8/18
+ * time: 9:40
+ * description: 测试增量清洗TailEtl：只处理完整的新增行，重启后从保存的偏移继续，已删除文件的偏移被清除，
+ * watch时单个文件失败不影响其他文件，连续失败的文件按退避间隔重试，超过重试次数后直到文件变化才再处理
+ */
+public class TestTailEtl {
+    private static Logger logger = Logger.getLogger(TestTailEtl.class);
+    private static final String[] METHODS = {"int", "name"};
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("test-tail-");
+        try {
+            t1(dir);
+            t2(dir);
+            t3(dir);
+        } finally {
+            for (File file : dir.toFile().listFiles()) {
+                file.delete();
+            }
+            dir.toFile().delete();
+        }
+        System.out.println("tail etl ok");
+    }
+
+    /**
+     * description: 未以\n结尾的行留到下次处理；重启后不重复处理；删除文件后偏移文件不再包含该文件
+     * param: [dir]
+     * return: void
+     * time: 2018/8/18 9:50
+     */
+    private static void t1(Path dir) throws IOException {
+        String offsetPath = dir.resolve(".offsets").toString();
+        Path a = dir.resolve("a.log");
+        Path b = dir.resolve("b.log");
+        append(a, "1.0,张三\n2.0,李");
+        append(b, "3.0,王五\n");
+        CollectSink sink = new CollectSink();
+        TailEtl tail = new TailEtl(dir.toString(), DelimiterSplitter.compile(","), ColumnEtlPlan.compile(METHODS), sink, offsetPath)
+                .setCharset(StandardCharsets.UTF_8);
+        TestChecks.check(tail.poll() == 2, "first poll " + sink.rows);
+        append(a, "四\n");
+        TestChecks.check(tail.poll() == 1 && sink.rows.get(2).equals("2,李四"), "appended line " + sink.rows);
+
+        CollectSink restarted = new CollectSink();
+        tail = new TailEtl(dir.toString(), DelimiterSplitter.compile(","), ColumnEtlPlan.compile(METHODS), restarted, offsetPath)
+                .setCharset(StandardCharsets.UTF_8);
+        append(b, "5.0,赵六\n");
+        TestChecks.check(tail.poll() == 1 && restarted.rows.equals(Collections.singletonList("5,赵六")), "after restart " + restarted.rows);
+
+        Files.delete(a);
+        append(b, "6.0,孙七\n");
+        tail.poll();
+        Properties offsets = new Properties();
+        try (Reader reader = Files.newBufferedReader(dir.resolve(".offsets"), StandardCharsets.UTF_8)) {
+            offsets.load(reader);
+        }
+        TestChecks.check(offsets.stringPropertyNames().equals(Collections.singleton("b.log")), "offsets of deleted file " + offsets);
+        Files.delete(b);
+    }
+
+    /**
+     * description: watch时某个文件的输出失败只记录日志，其他文件照常处理，watch不退出
+     * param: [dir]
+     * return: void
+     * time: 2018/8/18 10:05
+     */
+    private static void t2(Path dir) throws Exception {
+        CollectSink sink = new CollectSink();
+        TailEtl tail = new TailEtl(dir.toString(), DelimiterSplitter.compile(","), ColumnEtlPlan.compile(METHODS), sink, dir.resolve(".watch").toString())
+                .setCharset(StandardCharsets.UTF_8).setGlob("*.log").setPollMillis(50);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        Thread thread = startWatch(tail, failures);
+        append(dir.resolve("bad.log"), "7.0,bad\n");
+        Thread.sleep(200);
+        append(dir.resolve("good.log"), "8.0,周八\n");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!sink.contains("8,周八") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        TestChecks.check(thread.isAlive() && failures.isEmpty(), "watch stopped " + failures);
+        TestChecks.check(sink.contains("8,周八"), "good file after bad file " + sink.rows);
+        tail.stop();
+        thread.join(10000);
+        TestChecks.check(!thread.isAlive() && failures.isEmpty(), "stop watch " + failures);
+        Files.delete(dir.resolve("bad.log"));
+        Files.delete(dir.resolve("good.log"));
+    }
+
+    /**
+     * description: 一直失败的文件重试maxRetries次后不再处理，文件追加内容后重新开始重试
+     * param: [dir]
+     * return: void
+     * time: 2018/8/18 10:20
+     */
+    private static void t3(Path dir) throws Exception {
+        CollectSink sink = new CollectSink();
+        TailEtl tail = new TailEtl(dir.toString(), DelimiterSplitter.compile(","), ColumnEtlPlan.compile(METHODS), sink, dir.resolve(".retry").toString())
+                .setCharset(StandardCharsets.UTF_8).setGlob("*.log").setPollMillis(10).setMaxRetries(2);
+        append(dir.resolve("stuck.log"), "7.0,bad\n");
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        Thread thread = startWatch(tail, failures);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (sink.badWrites.get() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Thread.sleep(500);
+        TestChecks.check(sink.badWrites.get() == 3, "retries of failing file " + sink.badWrites);
+        append(dir.resolve("stuck.log"), "9.0,吴九\n");
+        deadline = System.currentTimeMillis() + 10000;
+        while (sink.badWrites.get() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        TestChecks.check(sink.badWrites.get() >= 4, "retry after file changed " + sink.badWrites);
+        tail.stop();
+        thread.join(10000);
+        TestChecks.check(!thread.isAlive() && failures.isEmpty(), "stop watch " + failures);
+        Files.delete(dir.resolve("stuck.log"));
+    }
+
+    private static Thread startWatch(TailEtl tail, List<Throwable> failures) {
+        Thread thread = new Thread(() -> {
+            try {
+                tail.watch();
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void append(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 收集写入的行，第一列为7的行写入失败
+     */
+    private static class CollectSink implements RowSink {
+        private final List<String> rows = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger badWrites = new AtomicInteger();
+
+        @Override
+        public void write(String[] row) throws IOException {
+            if ("7".equals(row[0])) {
+                badWrites.incrementAndGet();
+                throw new IOException("bad row " + String.join(",", row));
+            }
+            rows.add(String.join(",", row));
+        }
+
+        boolean contains(String row) {
+            return rows.contains(row);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}